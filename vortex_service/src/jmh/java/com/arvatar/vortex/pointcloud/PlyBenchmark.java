@@ -0,0 +1,129 @@
+package com.arvatar.vortex.pointcloud;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes a point cloud of COLMAP's fused.ply layout ({@code float x, y, z, nx, ny, nz} and
+ * {@code uchar red, green, blue}) on a small heap. Run with {@code mvn -Pjmh test-compile exec:exec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class PlyBenchmark {
+
+    @Param({"1000000", "5000000"})
+    public int points;
+
+    private Path directory;
+    private Path binary;
+    private Path ascii;
+    private Path written;
+    private PointCloud cloud;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("ply-benchmark");
+        binary = directory.resolve("fused.ply");
+        ascii = directory.resolve("fused-ascii.ply");
+        written = directory.resolve("written.ply");
+        Random random = new Random(42);
+        cloud = new PointCloud(points, true);
+        for (int i = 0; i < points; i++) {
+            cloud.x[i] = (float) random.nextGaussian();
+            cloud.y[i] = (float) random.nextGaussian();
+            cloud.z[i] = (float) random.nextGaussian();
+            cloud.red[i] = (byte) random.nextInt(256);
+            cloud.green[i] = (byte) random.nextInt(256);
+            cloud.blue[i] = (byte) random.nextInt(256);
+        }
+        writeColmapBinary(cloud, binary);
+        writeAscii(cloud, ascii);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public PointCloud readBinary() throws IOException {
+        return PlyReader.read(binary);
+    }
+
+    @Benchmark
+    public PointCloud readAscii() throws IOException {
+        return PlyReader.read(ascii);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        PlyWriter.write(cloud, written);
+    }
+
+    private static String header(String format, int points, boolean normals) {
+        StringBuilder header = new StringBuilder("ply\nformat ").append(format).append(" 1.0\n")
+                .append("element vertex ").append(points).append('\n')
+                .append("property float x\nproperty float y\nproperty float z\n");
+        if (normals) {
+            header.append("property float nx\nproperty float ny\nproperty float nz\n");
+        }
+        return header.append("property uchar red\nproperty uchar green\nproperty uchar blue\nend_header\n").toString();
+    }
+
+    private static void writeColmapBinary(PointCloud cloud, Path file) throws IOException {
+        ByteBuffer vertex = ByteBuffer.allocate(27).order(ByteOrder.LITTLE_ENDIAN);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            out.write(header("binary_little_endian", cloud.size(), true).getBytes(StandardCharsets.US_ASCII));
+            for (int i = 0; i < cloud.size(); i++) {
+                vertex.clear();
+                vertex.putFloat(cloud.x[i]).putFloat(cloud.y[i]).putFloat(cloud.z[i])
+                        .putFloat(0f).putFloat(0f).putFloat(1f)
+                        .put(cloud.red[i]).put(cloud.green[i]).put(cloud.blue[i]);
+                out.write(vertex.array());
+            }
+        }
+    }
+
+    private static void writeAscii(PointCloud cloud, Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            out.write(header("ascii", cloud.size(), false));
+            for (int i = 0; i < cloud.size(); i++) {
+                out.write(cloud.x[i] + " " + cloud.y[i] + " " + cloud.z[i] + " "
+                        + (cloud.red[i] & 0xff) + " " + (cloud.green[i] & 0xff) + " " + (cloud.blue[i] & 0xff) + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.arvatar.vortex.service.lipsync;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per word of the lip-sync stage on an answer streamed in small deltas, the way the LLM produces it. The
+ * lexicon is the seed lexicon plus {@code syntheticWords} generated entries, standing in for a full cmudict; the
+ * answer mixes lexicon words with words left to the letter-to-sound rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LipSyncBenchmark {
+
+    private static final String SENTENCE = "Well, the thing about breathing exercises is that you should practise them "
+            + "every morning; www dot example dot com helps. ";
+    private static final int WORDS_PER_SENTENCE = 20;
+    private static final int SENTENCES = 10;
+    private static final int DELTA_LENGTH = 4;
+
+    @Param({"0", "130000"})
+    public int syntheticWords;
+
+    private PhonemeLexicon lexicon;
+    private List<String> deltas;
+
+    @Setup
+    public void setUp() throws IOException {
+        lexicon = new PhonemeLexicon();
+        try (InputStream seed = LipSyncBenchmark.class.getResourceAsStream("/lipsync/seed-lexicon.dict")) {
+            lexicon.load(new BufferedReader(new InputStreamReader(seed, StandardCharsets.UTF_8)));
+        }
+        // cmudict's longest entries are far longer than their spelling.
+        StringBuilder entries = new StringBuilder("WWW  D AH1 B AH0 L Y UW0 D AH1 B AH0 L Y UW0 D AH1 B AH0 L Y UW0\n");
+        Random random = new Random(42);
+        String[] symbols = PhonemeLexicon.SYMBOLS;
+        for (int i = 0; i < syntheticWords; i++) {
+            int length = 3 + random.nextInt(8);
+            StringBuilder word = new StringBuilder();
+            for (int c = 0; c < length; c++) {
+                word.append((char) ('A' + random.nextInt(26)));
+            }
+            entries.append(word).append(' ');
+            for (int p = 0; p < length; p++) {
+                entries.append(' ').append(symbols[random.nextInt(symbols.length)]);
+            }
+            entries.append('\n');
+        }
+        lexicon.load(new BufferedReader(new StringReader(entries.toString())));
+
+        String answer = SENTENCE.repeat(SENTENCES);
+        deltas = new ArrayList<>();
+        for (int i = 0; i < answer.length(); i += DELTA_LENGTH) {
+            deltas.add(answer.substring(i, Math.min(answer.length(), i + DELTA_LENGTH)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS_PER_SENTENCE * SENTENCES)
+    public void perWord(Blackhole blackhole) {
+        LipSyncStage stage = new LipSyncStage(lexicon);
+        for (String delta : deltas) {
+            blackhole.consume(stage.accept(delta));
+        }
+        blackhole.consume(stage.flush());
+    }
+}
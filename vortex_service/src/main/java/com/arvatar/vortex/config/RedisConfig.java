@@ -0,0 +1,24 @@
+package com.arvatar.vortex.config;
+
+import io.lettuce.core.RedisClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * One Lettuce client per node. Components open their own connections on it through {@link RedisConnector} and close
+ * only those; the client, with its event loops, is shut down once after them.
+ */
+@Configuration
+public class RedisConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public RedisClient redisClient(@Value("${redis.uri:redis://localhost:6379}") String redisUri) {
+        return RedisClient.create(redisUri);
+    }
+
+    @Bean
+    public RedisConnector redisConnector(RedisClient redisClient) {
+        return new RedisConnector(redisClient);
+    }
+}
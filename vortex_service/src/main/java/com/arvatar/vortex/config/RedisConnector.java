@@ -0,0 +1,57 @@
+package com.arvatar.vortex.config;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Supplier;
+
+/**
+ * Opens connections on the shared {@link RedisClient}, retrying while Redis is still starting up (10 attempts, backing
+ * off by one more second each time).
+ */
+public class RedisConnector {
+
+    private static final int MAX_RETRIES = 10;
+    private static final long INITIAL_DELAY_MS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(RedisConnector.class);
+    private final RedisClient redisClient;
+
+    public RedisConnector(RedisClient redisClient) {
+        this.redisClient = redisClient;
+    }
+
+    public StatefulRedisConnection<String, String> connect() {
+        return connectWithRetry(redisClient::connect);
+    }
+
+    public StatefulRedisPubSubConnection<String, String> connectPubSub() {
+        return connectWithRetry(redisClient::connectPubSub);
+    }
+
+    private <T> T connectWithRetry(Supplier<T> connect) {
+        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
+            try {
+                logger.info("Attempting to connect to Redis (attempt {}/{})", attempt, MAX_RETRIES);
+                return connect.get();
+            } catch (Exception e) {
+                if (attempt == MAX_RETRIES) {
+                    logger.error("Failed to connect to Redis after {} attempts", MAX_RETRIES, e);
+                    throw new RuntimeException("Unable to connect to Redis after " + MAX_RETRIES + " attempts", e);
+                }
+                long delayMs = INITIAL_DELAY_MS * attempt;
+                logger.warn("Redis connection failed (attempt {}/{}), retrying in {} ms...", attempt, MAX_RETRIES, delayMs, e);
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting to retry Redis connection", ie);
+                }
+            }
+        }
+        throw new RuntimeException("Failed to connect to Redis");
+    }
+}
@@ -0,0 +1,9 @@
+package com.arvatar.vortex.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(RedisStreamProperties.class)
+public class RedisStreamConfig {
+}
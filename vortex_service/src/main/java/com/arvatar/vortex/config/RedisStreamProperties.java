@@ -0,0 +1,67 @@
+package com.arvatar.vortex.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "redis.streams")
+public class RedisStreamProperties {
+
+    /** Maximum number of entries read by a single {@code XREADGROUP}. */
+    private int batchSize = 32;
+
+    /** Workflow starts in flight at once per stream. */
+    private int startConcurrency = 8;
+
+    /** How often pending entries of dead or stuck consumers are swept. */
+    private Duration reclaimInterval = Duration.ofSeconds(30);
+
+    /**
+     * How long an entry must sit unacknowledged before another consumer may claim it. Must comfortably exceed the
+     * time it takes to start a workflow.
+     */
+    private Duration reclaimMinIdle = Duration.ofSeconds(60);
+
+    /** Deliveries after which an entry is moved to the stream's dead-letter stream instead of being retried. */
+    private int maxDeliveries = 5;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getStartConcurrency() {
+        return startConcurrency;
+    }
+
+    public void setStartConcurrency(int startConcurrency) {
+        this.startConcurrency = startConcurrency;
+    }
+
+    public Duration getReclaimInterval() {
+        return reclaimInterval;
+    }
+
+    public void setReclaimInterval(Duration reclaimInterval) {
+        this.reclaimInterval = reclaimInterval;
+    }
+
+    public Duration getReclaimMinIdle() {
+        return reclaimMinIdle;
+    }
+
+    public void setReclaimMinIdle(Duration reclaimMinIdle) {
+        this.reclaimMinIdle = reclaimMinIdle;
+    }
+
+    public int getMaxDeliveries() {
+        return maxDeliveries;
+    }
+
+    public void setMaxDeliveries(int maxDeliveries) {
+        this.maxDeliveries = maxDeliveries;
+    }
+}
@@ -4,10 +4,17 @@ import com.arvatar.vortex.service.AssetService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import voxel.assets.v1.AssetServiceOuterClass.*;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/v1/assets")
 @CrossOrigin(origins = "*")
@@ -18,6 +25,9 @@ public class AssetController {
     @Autowired
     private AssetService assetService;
 
+    @Value("${vortex.jobs.watch-timeout:30m}")
+    private Duration watchTimeout;
+
     /**
      * List all available point clouds
      */
@@ -39,27 +49,102 @@ public class AssetController {
     public ResponseEntity<GetPointCloudResponse> getPointCloud(
             @PathVariable String guruId,
             @RequestParam(required = false) String variant,
-            @RequestParam(required = false) Boolean includeMesh) {
+            @RequestParam(required = false) Boolean includeMesh,
+            @RequestParam(required = false) Integer maxPoints) {
         
         GetPointCloudRequest request = GetPointCloudRequest.newBuilder()
                 .setGuruId(guruId)
                 .setVariant(variant != null ? variant : "neutral")
                 .setIncludeMesh(includeMesh != null ? includeMesh : false)
+                .setMaxPoints(maxPoints != null ? Math.max(0, maxPoints) : 0)
                 .build();
         
-        GetPointCloudResponse response = assetService.getPointCloud(request);
-        return ResponseEntity.ok(response);
+        try {
+            return ResponseEntity.ok(assetService.getPointCloud(request));
+        } catch (AssetService.PointCloudNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
     }
 
     @PostMapping("/point-clouds/upload-video")
     public ResponseEntity<UploadGuruVideoResponse> uploadGuruVideo(
             @RequestParam(required = true) String guruId,
+            @RequestParam(required = false) String priority,
             @RequestBody(required = true) voxel.common.v1.Types.Video video){
+        UploadPriority uploadPriority = UploadPriority.UPLOAD_PRIORITY_UNSPECIFIED;
+        if ("interactive".equalsIgnoreCase(priority)) {
+            uploadPriority = UploadPriority.UPLOAD_PRIORITY_INTERACTIVE;
+        } else if ("bulk".equalsIgnoreCase(priority)) {
+            uploadPriority = UploadPriority.UPLOAD_PRIORITY_BULK;
+        }
         UploadGuruVideoRequest request = UploadGuruVideoRequest.newBuilder()
                 .setGuruId(guruId)
                 .setVideo(video)
+                .setPriority(uploadPriority)
                 .build();
         UploadGuruVideoResponse response = assetService.uploadGuruVideo(request);
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Current state of an upload's processing job
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJobStatus(@PathVariable String jobId) {
+        try {
+            GetJobStatusResponse response = assetService.getJobStatus(GetJobStatusRequest.newBuilder()
+                    .setJobId(jobId)
+                    .build());
+            return ResponseEntity.ok(toJson(response.getJob()));
+        } catch (AssetService.JobNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Server-sent "status" events: the job's current state, then every status change. The stream ends once the job
+     * has finished, or after {@code vortex.jobs.watch-timeout}, after which clients reconnect.
+     */
+    @GetMapping("/jobs/{jobId}/events")
+    public ResponseEntity<SseEmitter> watchJob(@PathVariable String jobId) {
+        SseEmitter emitter = new SseEmitter(watchTimeout.toMillis());
+        AutoCloseable watch;
+        try {
+            watch = assetService.watchJob(jobId, state -> {
+                try {
+                    emitter.send(SseEmitter.event().name("status").data(toJson(state)));
+                    if (state.getTerminal()) {
+                        emitter.complete();
+                    }
+                } catch (IOException e) {
+                    logger.debug("Job event stream of {} closed by client", jobId, e);
+                    emitter.completeWithError(e);
+                }
+            });
+        } catch (AssetService.JobNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+        Runnable close = () -> {
+            try {
+                watch.close();
+            } catch (Exception ignored) {
+            }
+        };
+        emitter.onCompletion(close);
+        emitter.onTimeout(close);
+        emitter.onError(error -> close.run());
+        return ResponseEntity.ok(emitter);
+    }
+
+    private static Map<String, Object> toJson(JobState state) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("jobId", state.getJobId());
+        json.put("guruId", state.getGuruId());
+        json.put("status", state.getStatus().name().substring("JOB_STATUS_".length()));
+        json.put("terminal", state.getTerminal());
+        json.put("priority", state.getPriority() == UploadPriority.UPLOAD_PRIORITY_BULK ? "bulk" : "interactive");
+        json.put("createdAt", state.getCreatedAt().getSeconds());
+        json.put("updatedAt", state.getUpdatedAt().getSeconds());
+        return json;
+    }
 }
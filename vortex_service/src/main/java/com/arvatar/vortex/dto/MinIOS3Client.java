@@ -1,6 +1,5 @@
 package com.arvatar.vortex.dto;
 
-import com.arvatar.vortex.models.AsrPcdJob;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.ResponseBytes;
@@ -18,6 +17,9 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 
 public class MinIOS3Client {
+    /** Asset metadata holding the number of points of a published point cloud. */
+    public static final String POINT_COUNT_METADATA = "points";
+
     private final String endpoint = System.getenv().getOrDefault("MINIO_ENDPOINT", "http://localhost:9000");
     private final S3AsyncClient asyncS3Client = S3AsyncClient.builder()
             .endpointOverride(URI.create(endpoint))
@@ -75,17 +77,40 @@ public class MinIOS3Client {
         }
     }
 
-    public void updateJob(AsrPcdJob job){
-        String jobsBucket = "jobs";
-        ensureBucketExists(jobsBucket);
+    /** Streams the upload to {@code destination} instead of holding it in memory. */
+    public void getVideo(String videoKey, Path destination) {
+        String bucket = "videos";
+        ensureBucketExists(bucket);
+        try {
+            GetObjectRequest request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(videoKey)
+                    .build();
+            asyncS3Client.getObject(request, AsyncResponseTransformer.toFile(destination)).join();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to fetch video " + videoKey, e);
+        }
+    }
+
+    public void updateGuruAssetInventory(String guruId, List<String> assetIds){
+        String bucket = "assets";
+        ensureBucketExists(bucket);
+        String key = guruId + "/assetIds.txt";
+        List<String> storedAssetIds = new ArrayList<>();
+        try{
+            storedAssetIds.addAll(this.listAvailableGuruAssets(guruId));
+        }catch (Exception ignored){}
+        storedAssetIds.addAll(assetIds);
+        Set<String> assetIdSet = new HashSet<>(storedAssetIds);
+        assetIds.clear();
+        assetIds.addAll(assetIdSet);
         try{
-            String jobKey = job.jobId.toString();
             CompletableFuture<PutObjectResponse> response = asyncS3Client.putObject(
                     PutObjectRequest.builder()
-                            .bucket(jobsBucket)
-                            .key(jobKey)
+                            .bucket(bucket)
+                            .key(key)
                             .build(),
-                    AsyncRequestBody.fromString(job.toString())
+                    AsyncRequestBody.fromString(String.join("\n", assetIds))
             );
             response.join();
         }catch (Exception e){
@@ -93,50 +118,93 @@ public class MinIOS3Client {
         }
     }
 
-    public void updateGuruAssetInventory(String guruId, Path file){
+    /** Publishes a file in the {@code assets} bucket with user metadata, e.g. the point count of a point cloud. */
+    public void putAsset(String key, Path file, Map<String, String> metadata){
         String bucket = "assets";
         ensureBucketExists(bucket);
-        String key = guruId + "/" + file.getFileName();
         try{
-            CompletableFuture<PutObjectResponse> response = asyncS3Client.putObject(
+            asyncS3Client.putObject(
                     PutObjectRequest.builder()
                             .bucket(bucket)
                             .key(key)
+                            .metadata(metadata)
                             .build(),
                     AsyncRequestBody.fromFile(file)
-            );
-            response.join();
+            ).join();
         }catch (Exception e){
-            throw new RuntimeException(e);
+            throw new RuntimeException("Failed to store asset " + key, e);
         }
     }
 
-    public void updateGuruAssetInventory(String guruId, List<String> assetIds){
+    public byte[] getAsset(String key){
         String bucket = "assets";
         ensureBucketExists(bucket);
-        String key = guruId + "/assetIds.txt";
-        List<String> storedAssetIds = new ArrayList<>();
         try{
-            storedAssetIds.addAll(this.listAvailableGuruAssets(guruId));
-        }catch (Exception ignored){}
-        storedAssetIds.addAll(assetIds);
-        Set<String> assetIdSet = new HashSet<>(storedAssetIds);
-        assetIds.clear();
-        assetIds.addAll(assetIdSet);
+            GetObjectRequest request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build();
+            return asyncS3Client.getObject(request, AsyncResponseTransformer.toBytes()).join().asByteArray();
+        }catch (Exception e){
+            throw new RuntimeException("Failed to fetch asset " + key, e);
+        }
+    }
+
+    /** @return the asset's user metadata, or {@code null} if there is no such asset */
+    public Map<String, String> getAssetMetadata(String key){
+        String bucket = "assets";
+        ensureBucketExists(bucket);
         try{
-            CompletableFuture<PutObjectResponse> response = asyncS3Client.putObject(
-                    PutObjectRequest.builder()
-                            .bucket(bucket)
-                            .key(key)
-                            .build(),
-                    AsyncRequestBody.fromString(String.join("\n", assetIds))
-            );
-            response.join();
+            return asyncS3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build()).join().metadata();
+        }catch (java.util.concurrent.CompletionException e){
+            if (e.getCause() instanceof NoSuchKeyException
+                    || (e.getCause() instanceof S3Exception && ((S3Exception) e.getCause()).statusCode() == 404)) {
+                return null;
+            }
+            throw new RuntimeException("Failed to look up asset " + key, e);
+        }
+    }
+
+    /** Keys of the assets under {@code prefix}. */
+    public List<String> listAssets(String prefix){
+        String bucket = "assets";
+        ensureBucketExists(bucket);
+        try{
+            ListObjectsV2Response listing = asyncS3Client.listObjectsV2(ListObjectsV2Request.builder()
+                    .bucket(bucket)
+                    .prefix(prefix)
+                    .build()).join();
+            List<String> keys = new ArrayList<>();
+            for (S3Object object : listing.contents()) {
+                keys.add(object.key());
+            }
+            return keys;
         }catch (Exception e){
-            throw new RuntimeException(e);
+            throw new RuntimeException("Failed to list assets under " + prefix, e);
         }
     }
 
+    /** Best-effort removal of the assets stored under {@code keys}. */
+    public void deleteAssets(List<String> keys){
+        String bucket = "assets";
+        List<ObjectIdentifier> objects = new ArrayList<>();
+        try{
+            for (String key : keys) {
+                objects.add(ObjectIdentifier.builder().key(key).build());
+            }
+            if (objects.isEmpty()) {
+                return;
+            }
+            asyncS3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(bucket)
+                    .delete(Delete.builder().objects(objects).build())
+                    .build()).join();
+        }catch (Exception ignored){}
+    }
+
     public List<String> listAvailableGuruAssets(String guruId){
         String bucket = "assets";
         ensureBucketExists(bucket);
@@ -152,5 +220,115 @@ public class MinIOS3Client {
             throw new RuntimeException(e);
         }
     }
-}
 
+    /**
+     * Stores an intermediate file of a running job in the {@code artifacts} bucket so that a later activity, possibly
+     * on another worker, can pick it up.
+     */
+    public void putArtifact(String key, Path file){
+        String bucket = "artifacts";
+        ensureBucketExists(bucket);
+        try{
+            asyncS3Client.putObject(
+                    PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .build(),
+                    AsyncRequestBody.fromFile(file)
+            ).join();
+        }catch (Exception e){
+            throw new RuntimeException("Failed to store artifact " + key, e);
+        }
+    }
+
+    public void getArtifact(String key, Path destination){
+        String bucket = "artifacts";
+        ensureBucketExists(bucket);
+        try{
+            GetObjectRequest request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build();
+            asyncS3Client.getObject(request, AsyncResponseTransformer.toFile(destination)).join();
+        }catch (Exception e){
+            throw new RuntimeException("Failed to fetch artifact " + key, e);
+        }
+    }
+
+    public boolean hasArtifact(String key){
+        String bucket = "artifacts";
+        ensureBucketExists(bucket);
+        try{
+            asyncS3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build()).join();
+            return true;
+        }catch (java.util.concurrent.CompletionException e){
+            if (e.getCause() instanceof NoSuchKeyException
+                    || (e.getCause() instanceof S3Exception && ((S3Exception) e.getCause()).statusCode() == 404)) {
+                return false;
+            }
+            throw new RuntimeException("Failed to look up artifact " + key, e);
+        }
+    }
+
+    /**
+     * Has the object store delete the artifacts under {@code prefix} {@code days} after they were stored. The bucket's
+     * lifecycle rules for other prefixes are kept.
+     */
+    public void expireArtifacts(String prefix, int days){
+        String bucket = "artifacts";
+        ensureBucketExists(bucket);
+        String ruleId = "expire-" + prefix;
+        List<LifecycleRule> rules = new ArrayList<>();
+        try{
+            rules.addAll(asyncS3Client.getBucketLifecycleConfiguration(GetBucketLifecycleConfigurationRequest.builder()
+                    .bucket(bucket)
+                    .build()).join().rules());
+        }catch (java.util.concurrent.CompletionException e){
+            // The bucket has no lifecycle configuration yet.
+            if (!(e.getCause() instanceof S3Exception) || ((S3Exception) e.getCause()).statusCode() != 404) {
+                throw new RuntimeException("Failed to read the lifecycle rules of bucket " + bucket, e);
+            }
+        }
+        rules.removeIf(rule -> ruleId.equals(rule.id()));
+        rules.add(LifecycleRule.builder()
+                .id(ruleId)
+                .filter(LifecycleRuleFilter.builder().prefix(prefix).build())
+                .status(ExpirationStatus.ENABLED)
+                .expiration(LifecycleExpiration.builder().days(days).build())
+                .build());
+        try{
+            asyncS3Client.putBucketLifecycleConfiguration(PutBucketLifecycleConfigurationRequest.builder()
+                    .bucket(bucket)
+                    .lifecycleConfiguration(BucketLifecycleConfiguration.builder().rules(rules).build())
+                    .build()).join();
+        }catch (Exception e){
+            throw new RuntimeException("Failed to expire artifacts under " + prefix, e);
+        }
+    }
+
+    /** Best-effort removal of every artifact under {@code prefix}. */
+    public void deleteArtifacts(String prefix){
+        String bucket = "artifacts";
+        ensureBucketExists(bucket);
+        try{
+            ListObjectsV2Response listing = asyncS3Client.listObjectsV2(ListObjectsV2Request.builder()
+                    .bucket(bucket)
+                    .prefix(prefix)
+                    .build()).join();
+            if (listing.contents().isEmpty()) {
+                return;
+            }
+            List<ObjectIdentifier> objects = new ArrayList<>();
+            for (S3Object object : listing.contents()) {
+                objects.add(ObjectIdentifier.builder().key(object.key()).build());
+            }
+            asyncS3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(bucket)
+                    .delete(Delete.builder().objects(objects).build())
+                    .build()).join();
+        }catch (Exception ignored){}
+    }
+}
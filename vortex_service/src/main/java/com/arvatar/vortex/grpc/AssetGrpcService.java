@@ -1,5 +1,7 @@
 package com.arvatar.vortex.grpc;
 
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,6 +9,8 @@ import voxel.assets.v1.AssetServiceGrpc;
 import voxel.assets.v1.AssetServiceOuterClass.*;
 import com.arvatar.vortex.service.AssetService;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 @GrpcService
 public class AssetGrpcService extends AssetServiceGrpc.AssetServiceImplBase {
 
@@ -32,6 +36,8 @@ public class AssetGrpcService extends AssetServiceGrpc.AssetServiceImplBase {
             GetPointCloudResponse response = assetService.getPointCloud(request);
             responseObserver.onNext(response);
             responseObserver.onCompleted();
+        } catch (AssetService.PointCloudNotFoundException e) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
         } catch (Exception e) {
             responseObserver.onError(e);
         }
@@ -49,4 +55,54 @@ public class AssetGrpcService extends AssetServiceGrpc.AssetServiceImplBase {
             responseObserver.onError(e);
         }
     }
+
+    @Override
+    public void getJobStatus(GetJobStatusRequest request,
+                             StreamObserver<GetJobStatusResponse> responseObserver) {
+        try {
+            GetJobStatusResponse response = assetService.getJobStatus(request);
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        } catch (AssetService.JobNotFoundException e) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void watchJob(WatchJobRequest request, StreamObserver<JobState> responseObserver) {
+        ServerCallStreamObserver<JobState> callObserver = (ServerCallStreamObserver<JobState>) responseObserver;
+        AtomicReference<AutoCloseable> watch = new AtomicReference<>();
+        callObserver.setOnCancelHandler(() -> closeQuietly(watch.get()));
+        try {
+            // Updates arrive on a Redis thread until the job finishes; this call returns right away.
+            watch.set(assetService.watchJob(request.getJobId(), state -> {
+                if (callObserver.isCancelled()) {
+                    return;
+                }
+                callObserver.onNext(state);
+                if (state.getTerminal()) {
+                    callObserver.onCompleted();
+                }
+            }));
+            if (callObserver.isCancelled()) {
+                closeQuietly(watch.get());
+            }
+        } catch (AssetService.JobNotFoundException e) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
 }
@@ -1,11 +1,19 @@
 package com.arvatar.vortex.grpc;
 
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.springframework.beans.factory.annotation.Autowired;
 import voxel.dialogue.v1.DialogueServiceGrpc;
 import voxel.dialogue.v1.DialogueServiceOuterClass.*;
+import com.arvatar.vortex.service.AdmissionController;
 import com.arvatar.vortex.service.DialogueService;
+import com.arvatar.vortex.service.RequestScope;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 
 @GrpcService
 public class DialogueGrpcService extends DialogueServiceGrpc.DialogueServiceImplBase {
@@ -27,26 +35,34 @@ public class DialogueGrpcService extends DialogueServiceGrpc.DialogueServiceImpl
 
     @Override
     public void ask(AskRequest request, StreamObserver<AnswerChunk> responseObserver) {
+        RequestScope scope = requestScopeFor(Context.current());
+        Context.CancellationListener cancellationListener = context -> scope.cancel();
+        Context.current().addListener(cancellationListener, Runnable::run);
         try {
-            // For streaming responses, we need to handle the streaming nature
-            // The current DialogueService.askQuestion() returns a single AnswerChunk
-            // but the gRPC service expects to stream multiple chunks
-            
-            // Get the initial response from the business service
-            AnswerChunk initialChunk = dialogueService.askQuestion(request);
-            responseObserver.onNext(initialChunk);
-            // TODO: Implement proper streaming logic here
-            // For now, we'll simulate streaming by sending additional chunks
-            if (!initialChunk.getIsFinal()) {
-                // Send additional chunks if needed
-                AnswerChunk.Builder additionalChunk = AnswerChunk.newBuilder()
-                        .setTranscriptDelta(" (Additional streaming content)")
-                        .setIsFinal(true);
-                responseObserver.onNext(additionalChunk.build());
-            }
+            dialogueService.ask(request, scope, responseObserver::onNext);
             responseObserver.onCompleted();
+        } catch (AdmissionController.AdmissionRejectedException e) {
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).asRuntimeException());
+        } catch (RequestScope.DeadlineExceededException e) {
+            responseObserver.onError(Status.DEADLINE_EXCEEDED.withDescription(e.getMessage()).asRuntimeException());
+        } catch (CancellationException e) {
+            responseObserver.onError(Status.CANCELLED.withDescription(e.getMessage()).asRuntimeException());
         } catch (Exception e) {
             responseObserver.onError(e);
+        } finally {
+            Context.current().removeListener(cancellationListener);
+        }
+    }
+
+    /**
+     * Mirrors the call's deadline into a {@link RequestScope}; cancellation (client disconnect or deadline expiry)
+     * is forwarded by the context listener registered in {@link #ask}.
+     */
+    private RequestScope requestScopeFor(Context context) {
+        Deadline deadline = context.getDeadline();
+        if (deadline == null) {
+            return RequestScope.unbounded();
         }
+        return RequestScope.withTimeout(deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
     }
 }
@@ -3,6 +3,7 @@ package com.arvatar.vortex.models;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -11,9 +12,19 @@ public class AsrPcdJob{
     public UUID jobId;
     public String guruId;
     public String videoKey;
+    /** Artifact key of the rhubarb mouth cues, set once ASR completed. */
+    public String asrResultKey;
+    /** Mouth cues inline; only set on jobs queued before ASR results moved to the object store. */
+    @Deprecated
     public String asrResultJsonString;
     public JobStatus status;
     public LocalDateTime createdAt;
+    /** Instant the upload created the job, used for start-latency metrics. Null for jobs queued by older builds. */
+    public Instant submittedAt;
+    /** Set when the upload started the ASR workflow itself; the ASR workflow then runs PCD as a child workflow. */
+    public boolean directDispatch;
+    /** Lane the job's streams and task queues are chosen by. */
+    public JobPriority priority = JobPriority.HIGH;
 
     public AsrPcdJob() {
     }
@@ -29,15 +40,14 @@ public class AsrPcdJob{
         this.videoKey = video_key;
         this.status = status != null ? status : JobStatus.ASR_QUEUED;
         this.createdAt = createdAt != null ? createdAt : LocalDateTime.now();
-        this.asrResultJsonString = null;
     }
 
     public AsrPcdJob(String guru_id, String video_key) {
         this.jobId = UUID.randomUUID();
         this.guruId = guru_id;
         this.videoKey = video_key;
-        this.asrResultJsonString = null;
         this.status = JobStatus.ASR_QUEUED;
         this.createdAt = LocalDateTime.now();
+        this.submittedAt = Instant.now();
     }
 }
@@ -0,0 +1,25 @@
+package com.arvatar.vortex.models;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.UUID;
+
+public class ConversationTurn {
+    public final String userQuery;
+    public final String answer;
+    public final List<UUID> chunkIds;
+    public final long createdAtMillis;
+
+    @JsonCreator
+    public ConversationTurn(@JsonProperty("userQuery") String userQuery,
+                            @JsonProperty("answer") String answer,
+                            @JsonProperty("chunkIds") List<UUID> chunkIds,
+                            @JsonProperty("createdAtMillis") long createdAtMillis) {
+        this.userQuery = userQuery;
+        this.answer = answer;
+        this.chunkIds = chunkIds != null ? List.copyOf(chunkIds) : List.of();
+        this.createdAtMillis = createdAtMillis;
+    }
+}
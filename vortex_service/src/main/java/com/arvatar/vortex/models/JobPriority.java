@@ -0,0 +1,15 @@
+package com.arvatar.vortex.models;
+
+/**
+ * Processing lane of a job. High priority jobs keep the original stream and task queue names; low priority jobs use
+ * the same names with a low suffix and are served by workers with fewer pollers and slots.
+ */
+public enum JobPriority {
+    HIGH,
+    LOW;
+
+    /** Redis stream of this lane, e.g. {@code asr_jobs} or {@code asr_jobs_low}. */
+    public String stream(String baseStream) {
+        return this == LOW ? baseStream + "_low" : baseStream;
+    }
+}
@@ -13,5 +13,20 @@ public enum JobStatus {
     PCD_COMPLETED,
     PCD_FAILED,
     PCD_CANCELLED,
-    COMPLETED
+    COMPLETED;
+
+    /** Whether the job moves no further from this status. */
+    public boolean isTerminal() {
+        switch (this) {
+            case ASR_FAILED:
+            case ASR_CANCELLED:
+            case PCD_COMPLETED:
+            case PCD_FAILED:
+            case PCD_CANCELLED:
+            case COMPLETED:
+                return true;
+            default:
+                return false;
+        }
+    }
 }
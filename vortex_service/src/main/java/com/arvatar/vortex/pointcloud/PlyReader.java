@@ -0,0 +1,444 @@
+package com.arvatar.vortex.pointcloud;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the vertices of a PLY file, ASCII or binary, into a {@link PointCloud}. The file is memory-mapped and decoded
+ * straight into the cloud's arrays, so the heap holds nothing but the result. Vertex properties other than
+ * {@code x}, {@code y}, {@code z} and {@code red}/{@code green}/{@code blue} (COLMAP also writes normals) are skipped,
+ * as are elements after the vertices.
+ */
+public final class PlyReader {
+
+    /** Largest region mapped at once; a single mapping cannot exceed 2 GiB. */
+    private static final int MAX_WINDOW = Integer.MAX_VALUE - 8;
+
+    private PlyReader() {
+    }
+
+    public static PointCloud read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = Header.parse(channel, file);
+            Element vertices = header.vertexElement();
+            if (vertices.count > Integer.MAX_VALUE - 8) {
+                throw new IOException(file + " has " + vertices.count + " vertices, more than an array holds");
+            }
+            PointCloud cloud = new PointCloud((int) vertices.count, vertices.index("red") >= 0
+                    && vertices.index("green") >= 0 && vertices.index("blue") >= 0);
+            if (header.format == Format.ASCII) {
+                readAscii(channel, header, cloud, file);
+            } else {
+                readBinary(channel, header, cloud, file);
+            }
+            return cloud;
+        }
+    }
+
+    private static void readBinary(FileChannel channel, Header header, PointCloud cloud, Path file) throws IOException {
+        Element vertices = header.vertexElement();
+        long offset = header.dataOffset;
+        for (Element element : header.elements) {
+            if (element == vertices) {
+                break;
+            }
+            if (element.stride() < 0) {
+                throw new IOException(file + ": list property in element " + element.name
+                        + " before the vertices is not supported");
+            }
+            offset += element.count * element.stride();
+        }
+        int stride = vertices.stride();
+        if (stride < 0) {
+            throw new IOException(file + ": list property in the vertex element is not supported");
+        }
+        if (offset + (long) stride * cloud.size() > channel.size()) {
+            throw new IOException(file + " is truncated: " + cloud.size() + " vertices need "
+                    + (offset + (long) stride * cloud.size()) + " bytes, the file has " + channel.size());
+        }
+        Property px = vertices.property("x", file);
+        Property py = vertices.property("y", file);
+        Property pz = vertices.property("z", file);
+        Property pr = cloud.hasColors() ? vertices.property("red", file) : null;
+        Property pg = cloud.hasColors() ? vertices.property("green", file) : null;
+        Property pb = cloud.hasColors() ? vertices.property("blue", file) : null;
+        ByteOrder order = header.format == Format.BINARY_BIG_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        int verticesPerWindow = MAX_WINDOW / stride;
+        for (int first = 0; first < cloud.size(); first += verticesPerWindow) {
+            int count = Math.min(verticesPerWindow, cloud.size() - first);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    offset + (long) first * stride, (long) count * stride);
+            buffer.order(order);
+            for (int i = 0, base = 0; i < count; i++, base += stride) {
+                int point = first + i;
+                cloud.x[point] = (float) px.type.read(buffer, base + px.offset);
+                cloud.y[point] = (float) py.type.read(buffer, base + py.offset);
+                cloud.z[point] = (float) pz.type.read(buffer, base + pz.offset);
+                if (pr != null) {
+                    cloud.red[point] = pr.type.readColor(buffer, base + pr.offset);
+                    cloud.green[point] = pg.type.readColor(buffer, base + pg.offset);
+                    cloud.blue[point] = pb.type.readColor(buffer, base + pb.offset);
+                }
+            }
+        }
+    }
+
+    /** ASCII data is one vertex per line; elements before the vertices are skipped line by line. */
+    private static void readAscii(FileChannel channel, Header header, PointCloud cloud, Path file) throws IOException {
+        long length = channel.size() - header.dataOffset;
+        if (length > MAX_WINDOW) {
+            throw new IOException(file + ": ASCII PLY data larger than 2 GiB is not supported");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, header.dataOffset, length);
+        AsciiScanner scanner = new AsciiScanner(buffer, file);
+        Element vertices = header.vertexElement();
+        for (Element element : header.elements) {
+            if (element == vertices) {
+                break;
+            }
+            for (long i = 0; i < element.count; i++) {
+                scanner.skipLine();
+            }
+        }
+        int ix = vertices.index("x");
+        int iy = vertices.index("y");
+        int iz = vertices.index("z");
+        if (ix < 0 || iy < 0 || iz < 0) {
+            throw new IOException(file + ": vertex element has no x, y and z");
+        }
+        int ir = vertices.index("red");
+        int ig = vertices.index("green");
+        int ib = vertices.index("blue");
+        int properties = vertices.properties.size();
+        for (int point = 0; point < cloud.size(); point++) {
+            for (int p = 0; p < properties; p++) {
+                Property property = vertices.properties.get(p);
+                if (property.listCountType != null) {
+                    int entries = (int) scanner.nextNumber();
+                    for (int e = 0; e < entries; e++) {
+                        scanner.nextNumber();
+                    }
+                    continue;
+                }
+                double value = scanner.nextNumber();
+                if (p == ix) {
+                    cloud.x[point] = (float) value;
+                } else if (p == iy) {
+                    cloud.y[point] = (float) value;
+                } else if (p == iz) {
+                    cloud.z[point] = (float) value;
+                } else if (cloud.hasColors() && (p == ir || p == ig || p == ib)) {
+                    byte color = property.type.toColor(value);
+                    if (p == ir) {
+                        cloud.red[point] = color;
+                    } else if (p == ig) {
+                        cloud.green[point] = color;
+                    } else {
+                        cloud.blue[point] = color;
+                    }
+                }
+            }
+        }
+    }
+
+    enum Format {
+        ASCII, BINARY_LITTLE_ENDIAN, BINARY_BIG_ENDIAN
+    }
+
+    /** PLY scalar types, by both their classic and their sized names. */
+    enum Type {
+        CHAR(1), UCHAR(1), SHORT(2), USHORT(2), INT(4), UINT(4), FLOAT(4), DOUBLE(8);
+
+        final int size;
+
+        Type(int size) {
+            this.size = size;
+        }
+
+        static Type parse(String name, Path file) throws IOException {
+            switch (name) {
+                case "char": case "int8": return CHAR;
+                case "uchar": case "uint8": return UCHAR;
+                case "short": case "int16": return SHORT;
+                case "ushort": case "uint16": return USHORT;
+                case "int": case "int32": return INT;
+                case "uint": case "uint32": return UINT;
+                case "float": case "float32": return FLOAT;
+                case "double": case "float64": return DOUBLE;
+                default: throw new IOException(file + ": unknown PLY property type " + name);
+            }
+        }
+
+        double read(MappedByteBuffer buffer, int index) {
+            switch (this) {
+                case CHAR: return buffer.get(index);
+                case UCHAR: return buffer.get(index) & 0xff;
+                case SHORT: return buffer.getShort(index);
+                case USHORT: return buffer.getShort(index) & 0xffff;
+                case INT: return buffer.getInt(index);
+                case UINT: return buffer.getInt(index) & 0xffffffffL;
+                case FLOAT: return buffer.getFloat(index);
+                default: return buffer.getDouble(index);
+            }
+        }
+
+        byte readColor(MappedByteBuffer buffer, int index) {
+            return this == UCHAR ? buffer.get(index) : toColor(read(buffer, index));
+        }
+
+        /** Floating-point colours are in [0, 1], integer ones in [0, 255]. */
+        byte toColor(double value) {
+            double scaled = this == FLOAT || this == DOUBLE ? value * 255.0 : value;
+            return (byte) Math.max(0, Math.min(255, Math.round(scaled)));
+        }
+    }
+
+    static final class Property {
+        final String name;
+        final Type type;
+        /** Set for list properties, whose values are preceded by a count of this type. */
+        final Type listCountType;
+        int offset;
+
+        Property(String name, Type type, Type listCountType) {
+            this.name = name;
+            this.type = type;
+            this.listCountType = listCountType;
+        }
+    }
+
+    static final class Element {
+        final String name;
+        final long count;
+        final List<Property> properties = new ArrayList<>();
+
+        Element(String name, long count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        int index(String propertyName) {
+            for (int i = 0; i < properties.size(); i++) {
+                if (properties.get(i).name.equals(propertyName)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Property property(String propertyName, Path file) throws IOException {
+            int index = index(propertyName);
+            if (index < 0) {
+                throw new IOException(file + ": element " + name + " has no property " + propertyName);
+            }
+            return properties.get(index);
+        }
+
+        /** Bytes per element in binary data, or -1 if a list makes it variable. */
+        int stride() {
+            int stride = 0;
+            for (Property property : properties) {
+                if (property.listCountType != null) {
+                    return -1;
+                }
+                property.offset = stride;
+                stride += property.type.size;
+            }
+            return stride;
+        }
+    }
+
+    static final class Header {
+        Format format;
+        long dataOffset;
+        final List<Element> elements = new ArrayList<>();
+
+        Element vertexElement() throws IOException {
+            for (Element element : elements) {
+                if (element.name.equals("vertex")) {
+                    return element;
+                }
+            }
+            throw new IOException("PLY file has no vertex element");
+        }
+
+        /** The header is ASCII, terminated by an {@code end_header} line. */
+        static Header parse(FileChannel channel, Path file) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 1 << 16));
+            Header header = new Header();
+            StringBuilder line = new StringBuilder();
+            boolean first = true;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    throw new IOException(file + ": PLY header has no end_header within 64 KiB");
+                }
+                char c = (char) (buffer.get() & 0xff);
+                if (c == '\r') {
+                    continue;
+                }
+                if (c != '\n') {
+                    line.append(c);
+                    continue;
+                }
+                String[] words = line.toString().trim().split("\\s+");
+                line.setLength(0);
+                if (first) {
+                    if (!words[0].equals("ply")) {
+                        throw new IOException(file + " is not a PLY file");
+                    }
+                    first = false;
+                    continue;
+                }
+                switch (words[0]) {
+                    case "format":
+                        switch (words[1]) {
+                            case "ascii": header.format = Format.ASCII; break;
+                            case "binary_little_endian": header.format = Format.BINARY_LITTLE_ENDIAN; break;
+                            case "binary_big_endian": header.format = Format.BINARY_BIG_ENDIAN; break;
+                            default: throw new IOException(file + ": unknown PLY format " + words[1]);
+                        }
+                        break;
+                    case "element":
+                        header.elements.add(new Element(words[1], Long.parseLong(words[2])));
+                        break;
+                    case "property":
+                        if (header.elements.isEmpty()) {
+                            throw new IOException(file + ": PLY property outside of an element");
+                        }
+                        Element element = header.elements.get(header.elements.size() - 1);
+                        if (words[1].equals("list")) {
+                            element.properties.add(new Property(words[4], Type.parse(words[3], file),
+                                    Type.parse(words[2], file)));
+                        } else {
+                            element.properties.add(new Property(words[2], Type.parse(words[1], file), null));
+                        }
+                        break;
+                    case "end_header":
+                        if (header.format == null) {
+                            throw new IOException(file + ": PLY header has no format");
+                        }
+                        header.dataOffset = buffer.position();
+                        return header;
+                    default:
+                        // comment, obj_info
+                        break;
+                }
+            }
+        }
+    }
+
+    /** Whitespace-separated numbers parsed in place, without a String per token. */
+    private static final class AsciiScanner {
+        private static final double[] POWERS_OF_TEN = new double[23];
+
+        static {
+            POWERS_OF_TEN[0] = 1;
+            for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+                POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+            }
+        }
+
+        private final MappedByteBuffer buffer;
+        private final Path file;
+        private int position;
+
+        AsciiScanner(MappedByteBuffer buffer, Path file) {
+            this.buffer = buffer;
+            this.file = file;
+        }
+
+        void skipLine() {
+            while (position < buffer.limit() && buffer.get(position++) != '\n') {
+                // skip
+            }
+        }
+
+        double nextNumber() throws IOException {
+            int limit = buffer.limit();
+            while (position < limit && buffer.get(position) <= ' ') {
+                position++;
+            }
+            if (position >= limit) {
+                throw new IOException(file + ": PLY data ends early");
+            }
+            int start = position;
+            boolean negative = false;
+            byte c = buffer.get(position);
+            if (c == '-' || c == '+') {
+                negative = c == '-';
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean simple = true;
+            while (position < limit && (c = buffer.get(position)) > ' ') {
+                if (c >= '0' && c <= '9') {
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        digits += mantissa > 0 ? 1 : 0;
+                    } else {
+                        exponent++;
+                    }
+                } else if (c == '.') {
+                    position++;
+                    while (position < limit && (c = buffer.get(position)) >= '0' && c <= '9') {
+                        if (digits < 18) {
+                            mantissa = mantissa * 10 + (c - '0');
+                            digits += mantissa > 0 ? 1 : 0;
+                            exponent--;
+                        }
+                        position++;
+                    }
+                    continue;
+                } else if (c == 'e' || c == 'E') {
+                    position++;
+                    boolean negativeExponent = false;
+                    if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                        negativeExponent = buffer.get(position) == '-';
+                        position++;
+                    }
+                    int value = 0;
+                    while (position < limit && (c = buffer.get(position)) >= '0' && c <= '9') {
+                        value = Math.min(1000, value * 10 + (c - '0'));
+                        position++;
+                    }
+                    exponent += negativeExponent ? -value : value;
+                    continue;
+                } else {
+                    simple = false;
+                }
+                position++;
+            }
+            if (!simple || Math.abs(exponent) >= POWERS_OF_TEN.length) {
+                // nan, inf or extreme exponents: rare enough for the general parser.
+                byte[] token = new byte[position - start];
+                for (int i = 0; i < token.length; i++) {
+                    token[i] = buffer.get(start + i);
+                }
+                String text = new String(token, StandardCharsets.US_ASCII).toLowerCase(java.util.Locale.ROOT);
+                // C's printf writes nan and inf, which Java does not parse.
+                if (text.endsWith("nan")) {
+                    return Double.NaN;
+                }
+                if (text.endsWith("inf") || text.endsWith("infinity")) {
+                    return text.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+                }
+                try {
+                    return Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ": invalid number in PLY data", e);
+                }
+            }
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+    }
+}
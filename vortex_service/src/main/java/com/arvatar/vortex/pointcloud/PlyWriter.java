@@ -0,0 +1,65 @@
+package com.arvatar.vortex.pointcloud;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a {@link PointCloud} as binary little-endian PLY: {@code float x, y, z} and, if the cloud has colours,
+ * {@code uchar red, green, blue} per vertex. The file is sized up front and filled through a memory mapping, the same
+ * way {@link PlyReader} reads.
+ */
+public final class PlyWriter {
+
+    private static final int MAX_WINDOW = Integer.MAX_VALUE - 8;
+
+    private PlyWriter() {
+    }
+
+    public static void write(PointCloud cloud, Path file) throws IOException {
+        byte[] header = header(cloud).getBytes(StandardCharsets.US_ASCII);
+        int stride = cloud.hasColors() ? 15 : 12;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer headerBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, header.length);
+            headerBuffer.put(header);
+            int verticesPerWindow = MAX_WINDOW / stride;
+            for (int first = 0; first < cloud.size(); first += verticesPerWindow) {
+                int count = Math.min(verticesPerWindow, cloud.size() - first);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                        header.length + (long) first * stride, (long) count * stride);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                for (int point = first; point < first + count; point++) {
+                    buffer.putFloat(cloud.x[point]);
+                    buffer.putFloat(cloud.y[point]);
+                    buffer.putFloat(cloud.z[point]);
+                    if (stride == 15) {
+                        buffer.put(cloud.red[point]);
+                        buffer.put(cloud.green[point]);
+                        buffer.put(cloud.blue[point]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String header(PointCloud cloud) {
+        StringBuilder header = new StringBuilder()
+                .append("ply\n")
+                .append("format binary_little_endian 1.0\n")
+                .append("element vertex ").append(cloud.size()).append('\n')
+                .append("property float x\n")
+                .append("property float y\n")
+                .append("property float z\n");
+        if (cloud.hasColors()) {
+            header.append("property uchar red\n")
+                    .append("property uchar green\n")
+                    .append("property uchar blue\n");
+        }
+        return header.append("end_header\n").toString();
+    }
+}
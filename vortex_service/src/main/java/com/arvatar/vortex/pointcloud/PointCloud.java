@@ -0,0 +1,33 @@
+package com.arvatar.vortex.pointcloud;
+
+/**
+ * A point cloud as structure of arrays: point {@code i} is {@code (x[i], y[i], z[i])} with colour
+ * {@code (red[i], green[i], blue[i])}. Colours are unsigned bytes ({@code red[i] & 0xff}) and absent when the source
+ * had none. Holding millions of points costs 15 bytes each and no object per point.
+ */
+public final class PointCloud {
+
+    public final float[] x;
+    public final float[] y;
+    public final float[] z;
+    public final byte[] red;
+    public final byte[] green;
+    public final byte[] blue;
+
+    public PointCloud(int size, boolean colored) {
+        this.x = new float[size];
+        this.y = new float[size];
+        this.z = new float[size];
+        this.red = colored ? new byte[size] : null;
+        this.green = colored ? new byte[size] : null;
+        this.blue = colored ? new byte[size] : null;
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public boolean hasColors() {
+        return red != null;
+    }
+}
@@ -0,0 +1,222 @@
+package com.arvatar.vortex.pointcloud;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Post-processing of fused point clouds: voxel-grid downsampling to the resolution the device can show, and
+ * statistical outlier removal of the floating specks stereo fusion leaves around the subject. Both work on the
+ * primitive arrays of a {@link PointCloud} through a {@link SpatialGrid}, spreading the per-point work over the
+ * fork/join common pool.
+ */
+public final class PointCloudFilters {
+
+    /** Share of points ignored at each end of an axis when sizing the grid, so that outliers do not stretch it. */
+    private static final double BOUNDS_QUANTILE = 0.005;
+    private static final int BOUNDS_SAMPLE = 100_000;
+    /** Rings of cells searched for neighbours; points with too few neighbours within them count as far off. */
+    private static final int MAX_SEARCH_RINGS = 3;
+
+    private PointCloudFilters() {
+    }
+
+    /**
+     * Edge length of the voxels that divide the cloud's longest side into {@code resolution} cells. The extent is
+     * measured between the 0.5th and 99.5th percentile of each axis.
+     */
+    public static float voxelSize(PointCloud cloud, int resolution) {
+        if (cloud.size() == 0) {
+            return 1f;
+        }
+        float[] lower = new float[3];
+        float[] upper = new float[3];
+        robustBounds(cloud, lower, upper);
+        float extent = Math.max(upper[0] - lower[0], Math.max(upper[1] - lower[1], upper[2] - lower[2]));
+        return extent > 0 ? extent / resolution : 1f;
+    }
+
+    /** Replaces the points of every occupied voxel by their centroid, with their average colour. */
+    public static PointCloud voxelDownsample(PointCloud cloud, float voxelSize) {
+        if (cloud.size() == 0) {
+            return cloud;
+        }
+        SpatialGrid grid = SpatialGrid.build(cloud, voxelSize);
+        PointCloud downsampled = new PointCloud(grid.cellCount(), cloud.hasColors());
+        IntStream.range(0, grid.cellCount()).parallel().forEach(cell -> {
+            int from = grid.cellStart[cell];
+            int to = grid.cellStart[cell + 1];
+            double x = 0;
+            double y = 0;
+            double z = 0;
+            long red = 0;
+            long green = 0;
+            long blue = 0;
+            for (int i = from; i < to; i++) {
+                int point = grid.points[i];
+                x += cloud.x[point];
+                y += cloud.y[point];
+                z += cloud.z[point];
+                if (cloud.hasColors()) {
+                    red += cloud.red[point] & 0xff;
+                    green += cloud.green[point] & 0xff;
+                    blue += cloud.blue[point] & 0xff;
+                }
+            }
+            int count = to - from;
+            downsampled.x[cell] = (float) (x / count);
+            downsampled.y[cell] = (float) (y / count);
+            downsampled.z[cell] = (float) (z / count);
+            if (cloud.hasColors()) {
+                downsampled.red[cell] = (byte) Math.round((double) red / count);
+                downsampled.green[cell] = (byte) Math.round((double) green / count);
+                downsampled.blue[cell] = (byte) Math.round((double) blue / count);
+            }
+        });
+        return downsampled;
+    }
+
+    /**
+     * Drops the points whose mean distance to their {@code neighbours} nearest neighbours exceeds the mean of that
+     * distance over the cloud by more than {@code stdRatio} standard deviations.
+     *
+     * @param spacing typical distance between neighbouring points, e.g. the voxel size after downsampling
+     */
+    public static PointCloud removeStatisticalOutliers(PointCloud cloud, int neighbours, double stdRatio,
+                                                       float spacing) {
+        int size = cloud.size();
+        if (size <= neighbours) {
+            return cloud;
+        }
+        // Cells of twice the spacing hold most points' neighbours in the adjacent ring, which keeps lookups few.
+        float cellSize = 2 * spacing;
+        SpatialGrid grid = SpatialGrid.build(cloud, cellSize);
+        float[] meanDistance = new float[size];
+        // Neighbours beyond the searched rings are at least this far away.
+        float unreached = (MAX_SEARCH_RINGS + 1) * cellSize;
+        ThreadLocal<float[]> nearest = ThreadLocal.withInitial(() -> new float[neighbours]);
+        IntStream.range(0, size).parallel().forEach(point ->
+                meanDistance[point] = meanNeighbourDistance(cloud, grid, point, nearest.get(), unreached));
+
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (float distance : meanDistance) {
+            sum += distance;
+            sumOfSquares += (double) distance * distance;
+        }
+        double mean = sum / size;
+        double std = Math.sqrt(Math.max(0, sumOfSquares / size - mean * mean));
+        double threshold = mean + stdRatio * std;
+
+        int kept = 0;
+        for (float distance : meanDistance) {
+            if (distance <= threshold) {
+                kept++;
+            }
+        }
+        PointCloud filtered = new PointCloud(kept, cloud.hasColors());
+        for (int point = 0, target = 0; point < size; point++) {
+            if (meanDistance[point] > threshold) {
+                continue;
+            }
+            filtered.x[target] = cloud.x[point];
+            filtered.y[target] = cloud.y[point];
+            filtered.z[target] = cloud.z[point];
+            if (cloud.hasColors()) {
+                filtered.red[target] = cloud.red[point];
+                filtered.green[target] = cloud.green[point];
+                filtered.blue[target] = cloud.blue[point];
+            }
+            target++;
+        }
+        return filtered;
+    }
+
+    /**
+     * Searches the point's cell, then ring after ring of cells around it, until the {@code nearest.length} nearest
+     * points are known: once the k-th distance is within {@code r} cells, nothing in ring {@code r + 1} can be closer.
+     */
+    private static float meanNeighbourDistance(PointCloud cloud, SpatialGrid grid, int point, float[] nearest,
+                                               float unreached) {
+        int k = nearest.length;
+        int found = 0;
+        float px = cloud.x[point];
+        float py = cloud.y[point];
+        float pz = cloud.z[point];
+        int cx = grid.coordinate(px);
+        int cy = grid.coordinate(py);
+        int cz = grid.coordinate(pz);
+        for (int ring = 0; ring <= MAX_SEARCH_RINGS; ring++) {
+            for (int dx = -ring; dx <= ring; dx++) {
+                for (int dy = -ring; dy <= ring; dy++) {
+                    for (int dz = -ring; dz <= ring; dz++) {
+                        if (Math.max(Math.abs(dx), Math.max(Math.abs(dy), Math.abs(dz))) != ring) {
+                            continue;
+                        }
+                        int cell = grid.cellIndex(cx + dx, cy + dy, cz + dz);
+                        if (cell < 0) {
+                            continue;
+                        }
+                        for (int i = grid.cellStart[cell]; i < grid.cellStart[cell + 1]; i++) {
+                            int other = grid.points[i];
+                            if (other == point) {
+                                continue;
+                            }
+                            float ox = cloud.x[other] - px;
+                            float oy = cloud.y[other] - py;
+                            float oz = cloud.z[other] - pz;
+                            found = insertSorted(nearest, found, ox * ox + oy * oy + oz * oz);
+                        }
+                    }
+                }
+            }
+            float reach = ring * grid.cellSize;
+            if (found == k && nearest[k - 1] <= reach * reach) {
+                break;
+            }
+        }
+        double total = 0;
+        for (int i = 0; i < k; i++) {
+            total += i < found ? Math.sqrt(nearest[i]) : unreached;
+        }
+        return (float) (total / k);
+    }
+
+    /** Keeps the {@code nearest.length} smallest squared distances in ascending order. */
+    private static int insertSorted(float[] nearest, int found, float squaredDistance) {
+        int k = nearest.length;
+        if (found == k && squaredDistance >= nearest[k - 1]) {
+            return found;
+        }
+        int i = Math.min(found, k - 1);
+        while (i > 0 && nearest[i - 1] > squaredDistance) {
+            nearest[i] = nearest[i - 1];
+            i--;
+        }
+        nearest[i] = squaredDistance;
+        return Math.min(found + 1, k);
+    }
+
+    private static void robustBounds(PointCloud cloud, float[] lower, float[] upper) {
+        int sampleSize = Math.min(cloud.size(), BOUNDS_SAMPLE);
+        float[][] axes = {cloud.x, cloud.y, cloud.z};
+        float[] sample = new float[sampleSize];
+        for (int axis = 0; axis < 3; axis++) {
+            int count = 0;
+            // Evenly strided, so repeated runs see the same sample.
+            for (int i = 0; i < sampleSize; i++) {
+                float value = axes[axis][(int) ((long) i * cloud.size() / sampleSize)];
+                if (!Float.isNaN(value)) {
+                    sample[count++] = value;
+                }
+            }
+            if (count == 0) {
+                lower[axis] = 0;
+                upper[axis] = 0;
+                continue;
+            }
+            Arrays.sort(sample, 0, count);
+            lower[axis] = sample[(int) (BOUNDS_QUANTILE * (count - 1))];
+            upper[axis] = sample[(int) Math.ceil((1 - BOUNDS_QUANTILE) * (count - 1))];
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.arvatar.vortex.pointcloud;
+
+/**
+ * Levels of detail of a point cloud by octree sampling. The octree's levels are grids whose cell size halves from one
+ * level to the next; a level of detail is the deepest octree level with at most the wanted number of occupied nodes,
+ * each node replaced by the centroid of its points. Coarse levels thus cover the whole shape evenly rather than
+ * dropping arbitrary points.
+ */
+public final class PointCloudLod {
+
+    /** Deeper levels have cells too small to matter, and coordinates outside {@link SpatialGrid}'s range. */
+    private static final int MAX_DEPTH = 16;
+
+    private PointCloudLod() {
+    }
+
+    /** @return the cloud itself if it has at most {@code maxPoints} points, else its octree sample */
+    public static PointCloud sample(PointCloud cloud, int maxPoints) {
+        if (cloud.size() <= maxPoints) {
+            return cloud;
+        }
+        float extent = extent(cloud);
+        if (!(extent > 0)) {
+            return PointCloudFilters.voxelDownsample(cloud, 1f);
+        }
+        // Occupied nodes only grow with depth, so the deepest level within the budget is found by bisection.
+        int low = 0;
+        int high = MAX_DEPTH;
+        while (low < high) {
+            int depth = (low + high + 1) / 2;
+            if (SpatialGrid.build(cloud, cellSize(extent, depth)).cellCount() <= maxPoints) {
+                low = depth;
+            } else {
+                high = depth - 1;
+            }
+        }
+        return PointCloudFilters.voxelDownsample(cloud, cellSize(extent, low));
+    }
+
+    private static float cellSize(float extent, int depth) {
+        return extent / (1 << depth);
+    }
+
+    /** The longest side of the bounding box. */
+    private static float extent(PointCloud cloud) {
+        float[][] axes = {cloud.x, cloud.y, cloud.z};
+        float extent = 0;
+        for (float[] axis : axes) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (float value : axis) {
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+            }
+            extent = Math.max(extent, max - min);
+        }
+        return extent;
+    }
+}
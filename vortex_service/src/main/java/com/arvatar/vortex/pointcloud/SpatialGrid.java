@@ -0,0 +1,91 @@
+package com.arvatar.vortex.pointcloud;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Buckets the points of a cloud into cubic cells, all in primitive arrays: the occupied cells as sorted 63-bit keys,
+ * and the point indices grouped by cell. Building it sorts the keys with {@link Arrays#parallelSort} and assigns
+ * points to cells on the fork/join common pool.
+ */
+final class SpatialGrid {
+
+    /** Cell coordinates are 21-bit signed integers; points further out are clamped into the outermost cells. */
+    private static final int COORDINATE_OFFSET = 1 << 20;
+    private static final int COORDINATE_MAX = COORDINATE_OFFSET - 1;
+
+    final float cellSize;
+    /** Sorted keys of the occupied cells. */
+    final long[] cells;
+    /** Members of cell {@code c} are {@code points[cellStart[c]]} up to {@code points[cellStart[c + 1] - 1]}. */
+    final int[] cellStart;
+    final int[] points;
+
+    private SpatialGrid(float cellSize, long[] cells, int[] cellStart, int[] points) {
+        this.cellSize = cellSize;
+        this.cells = cells;
+        this.cellStart = cellStart;
+        this.points = points;
+    }
+
+    /** Cells are aligned to the origin, so clouds gridded with the same size share their cell boundaries. */
+    static SpatialGrid build(PointCloud cloud, float cellSize) {
+        int size = cloud.size();
+        long[] keys = new long[size];
+        IntStream.range(0, size).parallel().forEach(i -> keys[i] = key(
+                coordinate(cloud.x[i], cellSize), coordinate(cloud.y[i], cellSize), coordinate(cloud.z[i], cellSize)));
+
+        long[] sorted = keys.clone();
+        Arrays.parallelSort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        long[] cells = Arrays.copyOf(sorted, unique);
+
+        int[] cellOfPoint = new int[size];
+        IntStream.range(0, size).parallel().forEach(i -> cellOfPoint[i] = Arrays.binarySearch(cells, keys[i]));
+        // Counting sort of the points by cell; linear and cheap next to the steps above.
+        int[] cellStart = new int[cells.length + 1];
+        for (int cell : cellOfPoint) {
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cells.length; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = Arrays.copyOf(cellStart, cells.length);
+        int[] points = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[next[cellOfPoint[i]]++] = i;
+        }
+        return new SpatialGrid(cellSize, cells, cellStart, points);
+    }
+
+    int cellCount() {
+        return cells.length;
+    }
+
+    /** @return the index of the cell, or a negative number if it holds no point */
+    int cellIndex(int cx, int cy, int cz) {
+        if (Math.abs(cx) > COORDINATE_MAX || Math.abs(cy) > COORDINATE_MAX || Math.abs(cz) > COORDINATE_MAX) {
+            return -1;
+        }
+        return Arrays.binarySearch(cells, key(cx, cy, cz));
+    }
+
+    int coordinate(float value) {
+        return coordinate(value, cellSize);
+    }
+
+    private static int coordinate(float value, float cellSize) {
+        double cell = Math.floor(value / cellSize);
+        // NaN coordinates land in cell 0 rather than poison the key.
+        return cell != cell ? 0 : (int) Math.max(-COORDINATE_OFFSET, Math.min(COORDINATE_MAX, cell));
+    }
+
+    private static long key(int cx, int cy, int cz) {
+        return ((long) (cx + COORDINATE_OFFSET) << 42) | ((long) (cy + COORDINATE_OFFSET) << 21) | (cz + COORDINATE_OFFSET);
+    }
+}
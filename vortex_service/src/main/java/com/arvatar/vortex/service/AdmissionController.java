@@ -0,0 +1,85 @@
+package com.arvatar.vortex.service;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the number of answer generations in flight, both globally and per guru. Requests over the limit are
+ * rejected immediately rather than queued, so a burst cannot build an unbounded backlog in front of the LLM.
+ */
+@Component
+public class AdmissionController {
+
+    private final Logger logger = org.slf4j.LoggerFactory.getLogger(AdmissionController.class);
+    private final Semaphore globalPermits;
+    private final int maxPerGuru;
+    private final ConcurrentMap<String, Integer> inFlightPerGuru = new ConcurrentHashMap<>();
+
+    public AdmissionController(@Value("${vortex.dialogue.max-inflight-generations:8}") int maxInFlight,
+                               @Value("${vortex.dialogue.max-inflight-generations-per-guru:2}") int maxPerGuru) {
+        this.globalPermits = new Semaphore(Math.max(1, maxInFlight));
+        this.maxPerGuru = Math.max(1, maxPerGuru);
+    }
+
+    /**
+     * Admits one generation for the guru or throws {@link AdmissionRejectedException}. The returned permit must be
+     * closed when the generation finishes.
+     */
+    public Permit admit(String guruId) {
+        if (!globalPermits.tryAcquire()) {
+            logger.warn("Rejecting request for guru {}: global generation limit reached", guruId);
+            throw new AdmissionRejectedException("Too many generations in flight, retry later");
+        }
+        boolean[] admitted = {false};
+        inFlightPerGuru.compute(guruId, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxPerGuru) {
+                return count;
+            }
+            admitted[0] = true;
+            return current + 1;
+        });
+        if (!admitted[0]) {
+            globalPermits.release();
+            logger.warn("Rejecting request for guru {}: per-guru generation limit of {} reached", guruId, maxPerGuru);
+            throw new AdmissionRejectedException("Too many generations in flight for guru " + guruId + ", retry later");
+        }
+        return new Permit(guruId);
+    }
+
+    private void release(String guruId) {
+        inFlightPerGuru.computeIfPresent(guruId, (key, count) -> count <= 1 ? null : count - 1);
+        globalPermits.release();
+    }
+
+    public class Permit implements AutoCloseable {
+        private final String guruId;
+        private boolean released;
+
+        private Permit(String guruId) {
+            this.guruId = guruId;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                release(guruId);
+            }
+        }
+    }
+
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public static class AdmissionRejectedException extends RuntimeException {
+        public AdmissionRejectedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,23 +1,22 @@
 package com.arvatar.vortex.service;
 
+import com.arvatar.vortex.config.RedisConnector;
+import com.arvatar.vortex.config.RedisStreamProperties;
 import com.arvatar.vortex.models.AsrPcdJob;
+import com.arvatar.vortex.models.JobPriority;
 import com.arvatar.vortex.temporal.TemporalProperties;
 import com.arvatar.vortex.temporal.workflow.AsrWorkflow;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.temporal.api.common.v1.WorkflowExecution;
+import io.temporal.api.enums.v1.WorkflowIdReusePolicy;
 import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowExecutionAlreadyStarted;
 import io.temporal.client.WorkflowOptions;
-import io.temporal.client.WorkflowServiceException;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import io.lettuce.core.Consumer;
-import io.lettuce.core.RedisClient;
-import io.lettuce.core.StreamMessage;
-import io.lettuce.core.XReadArgs;
-import io.lettuce.core.XGroupCreateArgs;
-import io.lettuce.core.api.StatefulRedisConnection;
-import io.lettuce.core.api.async.RedisAsyncCommands;
-import io.lettuce.core.api.sync.RedisCommands;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -25,162 +24,88 @@ import org.springframework.stereotype.Service;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 @Service
 public class AsrService {
-    private RedisAsyncCommands<String, String> asyncCommands;
-    private final RedisClient redisClient;
-    private StatefulRedisConnection<String, String> connection;
     private final ObjectMapper objectMapper;
     private final Logger logger = org.slf4j.LoggerFactory.getLogger(AsrService.class);
-    private final ExecutorService workerExecutor = Executors.newSingleThreadExecutor();
     private final WorkflowClient workflowClient;
     private final TemporalProperties temporalProperties;
+    private final List<RedisStreamDispatcher> dispatchers = new ArrayList<>();
+    private final Timer directStartLatency;
+    private final Timer streamStartLatency;
 
-    public AsrService(WorkflowClient workflowClient, TemporalProperties temporalProperties, @Value("${redis.uri:redis://localhost:6379}") String redisUri) {
+    public AsrService(WorkflowClient workflowClient, TemporalProperties temporalProperties,
+                      RedisConnector redisConnector,
+                      RedisStreamProperties streamProperties, MeterRegistry meterRegistry) {
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        redisClient = RedisClient.create(redisUri);
-        connection = connectWithRetry(redisClient);
-        asyncCommands = connection.async();
         this.workflowClient = workflowClient;
         this.temporalProperties = temporalProperties;
-    }
-
-    private StatefulRedisConnection<String, String> connectWithRetry(RedisClient client) {
-        int maxRetries = 10;
-        long initialDelayMs = 1000;
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                logger.info("Attempting to connect to Redis (attempt {}/{})", attempt, maxRetries);
-                return client.connect();
-            } catch (Exception e) {
-                if (attempt == maxRetries) {
-                    logger.error("Failed to connect to Redis after {} attempts", maxRetries, e);
-                    throw new RuntimeException("Unable to connect to Redis after " + maxRetries + " attempts", e);
-                }
-                long delayMs = initialDelayMs * attempt;
-                logger.warn("Redis connection failed (attempt {}/{}), retrying in {} ms...", attempt, maxRetries, delayMs, e);
-                try {
-                    Thread.sleep(delayMs);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Interrupted while waiting to retry Redis connection", ie);
-                }
-            }
+        for (JobPriority priority : JobPriority.values()) {
+            dispatchers.add(new RedisStreamDispatcher(redisConnector, priority.stream("asr_jobs"), "asr_jobs_workers",
+                    "asr_jobs_consumer", streamProperties, meterRegistry, this::dispatchJob));
         }
-        throw new RuntimeException("Failed to connect to Redis");
+        this.directStartLatency = startLatencyTimer(meterRegistry, "direct");
+        this.streamStartLatency = startLatencyTimer(meterRegistry, "stream");
     }
 
     @PostConstruct
     public void start() {
-        initializeRedisStreamGroup();
-        workerExecutor.submit(this::run);
+        dispatchers.forEach(RedisStreamDispatcher::start);
+    }
+
+    private static Timer startLatencyTimer(MeterRegistry meterRegistry, String mode) {
+        return Timer.builder("vortex.job.asr.start.latency")
+                .description("Time from job submission at upload to its ASR workflow being started")
+                .tag("mode", mode)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
     }
 
-    private void initializeRedisStreamGroup() {
-        String asrJobRedisStream = "asr_jobs";
-        String asrJobRedisStreamGroup = "asr_jobs_workers";
-        
+    /**
+     * Starts the ASR workflow for a job. The workflow ID is derived from the job ID and duplicates are rejected, so
+     * starting the same job twice (a redelivered stream entry, a retried upload) is a no-op.
+     */
+    public void startWorkflow(AsrPcdJob asrPcdJob) {
+        WorkflowOptions options = WorkflowOptions.newBuilder()
+                .setTaskQueue(temporalProperties.getTaskQueues().asr(asrPcdJob.priority))
+                .setWorkflowId("asr-" + asrPcdJob.jobId)
+                .setWorkflowIdReusePolicy(WorkflowIdReusePolicy.WORKFLOW_ID_REUSE_POLICY_REJECT_DUPLICATE)
+                .build();
+        AsrWorkflow workflow = workflowClient.newWorkflowStub(AsrWorkflow.class, options);
         try {
-            RedisCommands<String, String> syncCommands = connection.sync();
-            syncCommands.xgroupCreate(XReadArgs.StreamOffset.from(asrJobRedisStream, "0"), asrJobRedisStreamGroup, XGroupCreateArgs.Builder.mkstream());
-            logger.info("Created Redis stream group: {} for stream: {}", asrJobRedisStreamGroup, asrJobRedisStream);
-        } catch (Exception e) {
-            if (e.getMessage() != null && e.getMessage().contains("BUSYGROUP")) {
-                logger.info("Redis stream group already exists: {} for stream: {}", asrJobRedisStreamGroup, asrJobRedisStream);
-            } else {
-                logger.warn("Failed to create Redis stream group: {} for stream: {}, error: {}", asrJobRedisStreamGroup, asrJobRedisStream, e.getMessage());
+            WorkflowExecution execution = WorkflowClient.start(workflow::run, asrPcdJob);
+            if (asrPcdJob.submittedAt != null) {
+                Timer latency = asrPcdJob.directDispatch ? directStartLatency : streamStartLatency;
+                latency.record(Duration.between(asrPcdJob.submittedAt, Instant.now()));
             }
+            logger.info("Started ASR workflow for guruId: {} job {} run {}", asrPcdJob.guruId, asrPcdJob.jobId, execution.getRunId());
+        } catch (WorkflowExecutionAlreadyStarted alreadyStarted) {
+            logger.info("ASR workflow for job {} already started", asrPcdJob.jobId);
         }
     }
 
-    private void run(){
-        String asrJobRedisStream = "asr_jobs";
-        String asrJobRedisStreamGroup = "asr_jobs_workers";
-        String asrJobRedisStreamConsumer = "asr_jobs_consumer";
-        while(!Thread.currentThread().isInterrupted()) {
-            try {
-                List<StreamMessage<String, String>> jobs = asyncCommands.xreadgroup(
-                        Consumer.from(asrJobRedisStreamGroup, asrJobRedisStreamConsumer),
-                        XReadArgs.Builder.block(Duration.ofSeconds(5)),
-                        XReadArgs.StreamOffset.lastConsumed(asrJobRedisStream)
-                ).get();
-                if (jobs == null || jobs.isEmpty()) {
-                    continue;
-                }
-                for (StreamMessage<String, String> message : jobs) {
-                    String messageId = message.getId();
-                    Map<String, String> jobEntry = message.getBody();
-                        String job = jobEntry.get("job");
-                    AsrPcdJob asrPcdJob = objectMapper.readValue(job, AsrPcdJob.class);
-                    try {
-                        WorkflowOptions options = WorkflowOptions.newBuilder()
-                                .setTaskQueue(temporalProperties.getTaskQueues().getAsr())
-                                .setWorkflowId("asr-" + asrPcdJob.jobId)
-                                .build();
-                        AsrWorkflow workflow = workflowClient.newWorkflowStub(AsrWorkflow.class, options);
-                        WorkflowExecution execution = WorkflowClient.start(workflow::run, asrPcdJob);
-                        asyncCommands.xack(asrJobRedisStream, asrJobRedisStreamGroup, messageId).get();
-                        asyncCommands.xdel(asrJobRedisStream, messageId).get();
-                        logger.info("Started ASR workflow for guruId: {} job {} run {}", asrPcdJob.guruId, asrPcdJob.jobId, execution.getRunId());
-                    } catch (WorkflowServiceException workflowException) {
-                        logger.error("Failed to start ASR workflow for guruId: {} job {}", asrPcdJob.guruId, asrPcdJob.jobId, workflowException);
-                        try {
-                            asyncCommands.xadd(asrJobRedisStream, Map.of("job", job)).get();
-                            asyncCommands.xack(asrJobRedisStream, asrJobRedisStreamGroup, messageId).get();
-                            asyncCommands.xdel(asrJobRedisStream, messageId).get();
-                        } catch (Exception ackException) {
-                            logger.error("Failed to acknowledge ASR job {} after workflow start failure", messageId, ackException);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                if (e instanceof InterruptedException || e.getCause() instanceof InterruptedException) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-                logger.error("ASR stream processing failed, attempting to recover", e);
-                rebuildRedisConnection();
-            }
+    private void dispatchJob(Map<String, String> jobEntry) {
+        AsrPcdJob asrPcdJob;
+        try {
+            asrPcdJob = objectMapper.readValue(jobEntry.get("job"), AsrPcdJob.class);
+        } catch (JsonProcessingException e) {
+            // Retrying cannot fix a malformed entry, so drop it rather than let it cycle until dead-lettered.
+            logger.error("Discarding malformed job entry {}", jobEntry, e);
+            return;
         }
+        startWorkflow(asrPcdJob);
     }
 
     @PreDestroy
     public void shutdown() {
-        workerExecutor.shutdownNow();
-        if (connection != null) {
-            connection.close();
-        }
-        if (redisClient != null) {
-            redisClient.shutdown();
-        }
-    }
-
-    private synchronized void rebuildRedisConnection() {
-        try {
-            if (connection != null && connection.isOpen()) {
-                connection.close();
-            }
-        } catch (Exception closeException) {
-            logger.warn("Failed to close existing Redis connection during rebuild", closeException);
-        }
-        try {
-            connection = redisClient.connect();
-            asyncCommands = connection.async();
-        } catch (Exception connectionException) {
-            logger.error("Failed to rebuild Redis connection", connectionException);
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-            }
-        }
+        dispatchers.forEach(RedisStreamDispatcher::shutdown);
     }
 
 }
@@ -1,7 +1,10 @@
 package com.arvatar.vortex.service;
 
 import com.arvatar.vortex.models.AsrPcdJob;
+import com.arvatar.vortex.models.JobPriority;
+import com.arvatar.vortex.models.JobStatus;
 import com.arvatar.vortex.dto.MinIOS3Client;
+import com.arvatar.vortex.config.RedisConnector;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -12,17 +15,24 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import voxel.assets.v1.AssetServiceOuterClass.*;
 import voxel.common.v1.Types;
-import io.lettuce.core.RedisClient;
 import io.lettuce.core.api.StatefulRedisConnection;
 
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 public class AssetService {
 
+    private static final String DEFAULT_VARIANT = "neutral";
+    /** Rhubarb's viseme for the mouth at rest. */
+    private static final String NEUTRAL_VISEME = "X";
+
     private final MinIOS3Client objectStoreClient = new MinIOS3Client();
-    private final RedisClient redisClient;
     private final StatefulRedisConnection<String, String> connection;
     private final RedisAsyncCommands<String, String> asyncCommands;
     private final ObjectMapper objectMapper = new ObjectMapper()
@@ -30,39 +40,26 @@ public class AssetService {
             .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
     private final Logger logger = org.slf4j.LoggerFactory.getLogger(AssetService.class);
 
-    public AssetService(@Value("${redis.uri:redis://localhost:6379}") String redisUri) {
-        this.redisClient = RedisClient.create(redisUri);
-        this.connection = connectWithRetry(redisClient);
-        this.asyncCommands = connection.async();
-    }
+    private final AsrService asrService;
+    private final JobStateStore jobStateStore;
+    private final JobStatusNotifier jobStatusNotifier;
+    private final boolean directDispatch;
 
-    private StatefulRedisConnection<String, String> connectWithRetry(RedisClient client) {
-        int maxRetries = 10;
-        long initialDelayMs = 1000;
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                logger.info("Attempting to connect to Redis (attempt {}/{})", attempt, maxRetries);
-                return client.connect();
-            } catch (Exception e) {
-                if (attempt == maxRetries) {
-                    logger.error("Failed to connect to Redis after {} attempts", maxRetries, e);
-                    throw new RuntimeException("Unable to connect to Redis after " + maxRetries + " attempts", e);
-                }
-                long delayMs = initialDelayMs * attempt;
-                logger.warn("Redis connection failed (attempt {}/{}), retrying in {} ms...", attempt, maxRetries, delayMs, e);
-                try {
-                    Thread.sleep(delayMs);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Interrupted while waiting to retry Redis connection", ie);
-                }
-            }
-        }
-        throw new RuntimeException("Failed to connect to Redis");
+    public AssetService(AsrService asrService,
+                        JobStateStore jobStateStore,
+                        JobStatusNotifier jobStatusNotifier,
+                        RedisConnector redisConnector,
+                        @Value("${vortex.jobs.dispatch-mode:stream}") String dispatchMode) {
+        this.asrService = asrService;
+        this.jobStateStore = jobStateStore;
+        this.jobStatusNotifier = jobStatusNotifier;
+        this.directDispatch = "direct".equalsIgnoreCase(dispatchMode);
+        this.connection = redisConnector.connect();
+        this.asyncCommands = connection.async();
     }
 
     private String publishJobToStream(AsrPcdJob job){
-        String asrJobRedisStream = "asr_jobs";
+        String asrJobRedisStream = job.priority.stream("asr_jobs");
         try {
             String payload = objectMapper.writeValueAsString(job);
             return awaitXAdd(asrJobRedisStream, payload);
@@ -103,45 +100,92 @@ public class AssetService {
         return responseBuilder.build();
     }
 
+    /**
+     * Serves a viseme's point cloud at the level of detail the device can take: the full cloud if it fits
+     * {@code max_points}, else the largest published level that does, else the smallest. The variant is the viseme;
+     * {@code neutral}, the default, is Rhubarb's {@code X}, the mouth at rest. No meshes are produced yet, so
+     * {@code include_mesh} is ignored.
+     */
     public GetPointCloudResponse getPointCloud(GetPointCloudRequest request) {
-        // TODO: remove this method all together
-        
-        GetPointCloudResponse.Builder responseBuilder = GetPointCloudResponse.newBuilder();
-        
-        // Add mock point cloud asset
-        PointCloudAsset.Builder pointCloudAsset = PointCloudAsset.newBuilder();
-        
-        // Set metadata
-        voxel.common.v1.Types.PointCloudMetadata.Builder metadata = voxel.common.v1.Types.PointCloudMetadata.newBuilder()
-                .setGuruId(request.getGuruId())
-                .setVariant(request.getVariant())
-                .setDescription("Point cloud for " + request.getVariant() + " expression")
-                .setHasMesh(request.getIncludeMesh())
-                .setUpdatedAt(com.google.protobuf.Timestamp.newBuilder()
-                        .setSeconds(System.currentTimeMillis() / 1000)
-                        .build());
-        
-        pointCloudAsset.setMetadata(metadata.build());
-        
-        // Set point cloud data
-        voxel.common.v1.Types.Pcd.Builder pcd = voxel.common.v1.Types.Pcd.newBuilder()
-                .setFormat("pcd")
-                .setPayload(com.google.protobuf.ByteString.copyFromUtf8("mock_point_cloud_data"))
-                .setUnits("meters");
-        
-        pointCloudAsset.setPointCloud(pcd.build());
-        
-        if (request.getIncludeMesh()) {
-            voxel.common.v1.Types.Mesh.Builder mesh = voxel.common.v1.Types.Mesh.newBuilder()
-                    .setFormat("ply")
-                    .setPayload(com.google.protobuf.ByteString.copyFromUtf8("mock_mesh_data"))
-                    .setUnits("meters");
-            pointCloudAsset.setMesh(mesh.build());
-        }
-        
-        responseBuilder.setAsset(pointCloudAsset.build());
-        
-        return responseBuilder.build();
+        String guruId = request.getGuruId();
+        String variant = request.getVariant().isBlank() ? DEFAULT_VARIANT : request.getVariant();
+        String visemeId = DEFAULT_VARIANT.equals(variant) ? NEUTRAL_VISEME : variant;
+        String key = guruId + "/" + visemeId + ".ply";
+        Map<String, String> metadata = objectStoreClient.getAssetMetadata(key);
+        if (metadata == null) {
+            throw new PointCloudNotFoundException(guruId, variant);
+        }
+        // Clouds published before levels of detail existed carry no point count.
+        long points = parsePointCount(metadata.get(MinIOS3Client.POINT_COUNT_METADATA));
+        long maxPoints = request.getMaxPoints();
+        if (maxPoints > 0 && (points == 0 || points > maxPoints)) {
+            TreeMap<Long, String> levels = new TreeMap<>();
+            String lodPrefix = guruId + "/lod/" + visemeId + "/";
+            for (String levelKey : objectStoreClient.listAssets(lodPrefix)) {
+                long levelPoints = parsePointCount(levelKey.substring(lodPrefix.length()).replace(".ply", ""));
+                if (levelPoints > 0) {
+                    levels.put(levelPoints, levelKey);
+                }
+            }
+            Map.Entry<Long, String> level = levels.floorEntry(maxPoints);
+            if (level == null) {
+                level = levels.firstEntry();
+            }
+            if (level != null) {
+                key = level.getValue();
+                points = level.getKey();
+            }
+        }
+        byte[] payload = objectStoreClient.getAsset(key);
+
+        Types.PointCloudMetadata.Builder pointCloudMetadata = Types.PointCloudMetadata.newBuilder()
+                .setGuruId(guruId)
+                .setVariant(variant)
+                .setDescription("Point cloud of viseme " + visemeId)
+                .setHasMesh(false);
+        // COLMAP reconstructions have no metric scale, so no units are claimed.
+        Types.Pcd.Builder pcd = Types.Pcd.newBuilder()
+                .setFormat("ply")
+                .setPayload(com.google.protobuf.ByteString.copyFrom(payload));
+        PointCloudAsset.Builder pointCloudAsset = PointCloudAsset.newBuilder()
+                .setMetadata(pointCloudMetadata.build())
+                .setPointCloud(pcd.build())
+                .setPointCount(points);
+        logger.info("Serving {} ({} points, {} bytes) for guru {} variant {} with max_points {}",
+                key, points, payload.length, guruId, variant, maxPoints);
+        return GetPointCloudResponse.newBuilder().setAsset(pointCloudAsset.build()).build();
+    }
+
+    private static long parsePointCount(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Unless the client chose a lane, a guru's first upload is interactive, because someone is waiting for their
+     * first avatar, and uploads of gurus that already have assets are bulk.
+     */
+    private JobPriority resolvePriority(String guruId, UploadPriority requested) {
+        switch (requested) {
+            case UPLOAD_PRIORITY_INTERACTIVE:
+                return JobPriority.HIGH;
+            case UPLOAD_PRIORITY_BULK:
+                return JobPriority.LOW;
+            default:
+                try {
+                    return objectStoreClient.listAvailableGuruAssets(guruId).stream().anyMatch(id -> !id.isBlank())
+                            ? JobPriority.LOW : JobPriority.HIGH;
+                } catch (Exception e) {
+                    // No inventory yet
+                    return JobPriority.HIGH;
+                }
+        }
     }
 
     public UploadGuruVideoResponse uploadGuruVideo(UploadGuruVideoRequest request) {
@@ -149,8 +193,14 @@ public class AssetService {
         String guru_id = request.getGuruId();
         String s3VideoKey = objectStoreClient.putVideo(guru_id, video.getPayload().toByteArray());
         AsrPcdJob job = new AsrPcdJob(guru_id, s3VideoKey);
-        objectStoreClient.updateJob(job);
-        publishJobToStream(job);
+        job.directDispatch = directDispatch;
+        job.priority = resolvePriority(guru_id, request.getPriority());
+        jobStateStore.create(job);
+        if (directDispatch) {
+            asrService.startWorkflow(job);
+        } else {
+            publishJobToStream(job);
+        }
         boolean success = s3VideoKey != null;
         UploadGuruVideoResponse.Builder responseBuilder = UploadGuruVideoResponse.newBuilder();
         responseBuilder.setSuccess(success);
@@ -159,6 +209,206 @@ public class AssetService {
         responseBuilder.setProcessedAt(com.google.protobuf.Timestamp.newBuilder()
                 .setSeconds(System.currentTimeMillis() / 1000)
                 .build());
+        responseBuilder.setJobId(job.jobId.toString());
         return responseBuilder.build();
     }
+
+    public GetJobStatusResponse getJobStatus(GetJobStatusRequest request) {
+        UUID jobId = parseJobId(request.getJobId());
+        Map<String, String> state = jobStateStore.find(jobId);
+        if (state.isEmpty()) {
+            throw new JobNotFoundException(request.getJobId());
+        }
+        return GetJobStatusResponse.newBuilder().setJob(toJobState(jobId.toString(), state)).build();
+    }
+
+    /**
+     * Passes the job's current state to {@code listener}, then each status change until the job reaches a terminal
+     * status or the returned handle is closed. Changes are delivered on a Redis event loop thread, one at a time.
+     */
+    public AutoCloseable watchJob(String jobIdValue, Consumer<JobState> listener) {
+        UUID jobId = parseJobId(jobIdValue);
+        JobWatch watch = new JobWatch(jobId.toString(), listener);
+        // Subscribe before reading the state so that no change in between is lost.
+        watch.subscription = jobStatusNotifier.subscribe(jobId, watch::onEvent);
+        Map<String, String> state;
+        try {
+            state = jobStateStore.find(jobId);
+        } catch (RuntimeException e) {
+            watch.close();
+            throw e;
+        }
+        if (state.isEmpty()) {
+            watch.close();
+            throw new JobNotFoundException(jobIdValue);
+        }
+        watch.onSnapshot(state);
+        return watch;
+    }
+
+    private static UUID parseJobId(String jobId) {
+        try {
+            return UUID.fromString(jobId);
+        } catch (IllegalArgumentException e) {
+            throw new JobNotFoundException(jobId);
+        }
+    }
+
+    private static JobState toJobState(String jobId, Map<String, String> state) {
+        JobState.Builder builder = JobState.newBuilder().setJobId(jobId);
+        if (state.containsKey(JobStateStore.GURU_ID)) {
+            builder.setGuruId(state.get(JobStateStore.GURU_ID));
+        }
+        if (state.containsKey(JobStateStore.STATUS)) {
+            JobStatus status = JobStatus.valueOf(state.get(JobStateStore.STATUS));
+            builder.setStatus(voxel.assets.v1.AssetServiceOuterClass.JobStatus.valueOf("JOB_STATUS_" + status.name()));
+            builder.setTerminal(status.isTerminal());
+        }
+        if (state.containsKey(JobStateStore.PRIORITY)) {
+            builder.setPriority(JobPriority.valueOf(state.get(JobStateStore.PRIORITY)) == JobPriority.LOW
+                    ? UploadPriority.UPLOAD_PRIORITY_BULK : UploadPriority.UPLOAD_PRIORITY_INTERACTIVE);
+        }
+        if (state.containsKey(JobStateStore.CREATED_AT)) {
+            java.time.Instant createdAt = java.time.LocalDateTime.parse(state.get(JobStateStore.CREATED_AT))
+                    .atZone(java.time.ZoneId.systemDefault()).toInstant();
+            builder.setCreatedAt(com.google.protobuf.Timestamp.newBuilder().setSeconds(createdAt.getEpochSecond()));
+        }
+        if (state.containsKey(JobStateStore.UPDATED_AT)) {
+            builder.setUpdatedAt(com.google.protobuf.Timestamp.newBuilder()
+                    .setSeconds(Long.parseLong(state.get(JobStateStore.UPDATED_AT)) / 1000));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Merges the status events of one job into its last known state and hands every change to the listener. States
+     * are queued under the watch's monitor but handed over, and the subscription closed, outside it: the listener and
+     * the notifier may take locks of their own, and an event loop thread blocked on this monitor would stall every
+     * other watch on the connection.
+     */
+    private static final class JobWatch implements AutoCloseable {
+        private final String jobId;
+        private final Consumer<JobState> listener;
+        private volatile AutoCloseable subscription;
+        private final ArrayDeque<JobState> outbox = new ArrayDeque<>();
+        private Map<String, String> state;
+        private String pendingEvent;
+        private boolean draining;
+        private boolean closed;
+
+        JobWatch(String jobId, Consumer<JobState> listener) {
+            this.jobId = jobId;
+            this.listener = listener;
+        }
+
+        void onSnapshot(Map<String, String> snapshot) {
+            synchronized (this) {
+                state = new HashMap<>(snapshot);
+                enqueue();
+                if (pendingEvent != null) {
+                    apply(pendingEvent);
+                }
+            }
+            drain();
+        }
+
+        void onEvent(String event) {
+            synchronized (this) {
+                if (state == null) {
+                    // Arrived while the snapshot was read; applied once the snapshot is in.
+                    pendingEvent = event;
+                    return;
+                }
+                apply(event);
+            }
+            drain();
+        }
+
+        /** Called with the monitor held. */
+        private void apply(String event) {
+            String[] parts = event.split(" ", 2);
+            if (parts.length < 2 || parts[0].equals(state.get(JobStateStore.STATUS))) {
+                return;
+            }
+            String updatedAt = state.get(JobStateStore.UPDATED_AT);
+            if (updatedAt != null && Long.parseLong(parts[1]) < Long.parseLong(updatedAt)) {
+                return;
+            }
+            state.put(JobStateStore.STATUS, parts[0]);
+            state.put(JobStateStore.UPDATED_AT, parts[1]);
+            enqueue();
+        }
+
+        /** Called with the monitor held. */
+        private void enqueue() {
+            if (!closed) {
+                outbox.add(toJobState(jobId, state));
+            }
+        }
+
+        /** Hands the queued states to the listener in order, from one thread at a time. */
+        private void drain() {
+            synchronized (this) {
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            boolean drained = false;
+            try {
+                while (true) {
+                    JobState next;
+                    synchronized (this) {
+                        next = closed ? null : outbox.poll();
+                        if (next == null) {
+                            draining = false;
+                            drained = true;
+                            return;
+                        }
+                    }
+                    listener.accept(next);
+                    if (next.getTerminal()) {
+                        close();
+                    }
+                }
+            } finally {
+                if (!drained) {
+                    synchronized (this) {
+                        draining = false;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            AutoCloseable closing;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                outbox.clear();
+                closing = subscription;
+            }
+            if (closing != null) {
+                try {
+                    closing.close();
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    public static class PointCloudNotFoundException extends RuntimeException {
+        public PointCloudNotFoundException(String guruId, String variant) {
+            super("No point cloud " + variant + " for guru " + guruId);
+        }
+    }
+
+    public static class JobNotFoundException extends RuntimeException {
+        public JobNotFoundException(String jobId) {
+            super("Unknown job " + jobId);
+        }
+    }
 }
@@ -0,0 +1,140 @@
+package com.arvatar.vortex.service;
+
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import com.arvatar.vortex.models.PersonaChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the CONTEXT section of the answer prompt within a token budget measured with the generation model's own
+ * tokenizer. Chunks are taken closest-first, near-duplicates are dropped, and a chunk that does not fit is skipped
+ * whole rather than cut mid-word.
+ */
+@Component
+public class ContextAssembler {
+    private static final Logger logger = LoggerFactory.getLogger(ContextAssembler.class);
+    private static final String CHUNK_SEPARATOR = "\n\n";
+    private static final int SHINGLE_SIZE = 3;
+    private static final double DUPLICATE_OVERLAP = 0.8;
+    // Rough characters-per-token ratio for English text, used only when the tokenizer cannot be loaded.
+    private static final double FALLBACK_CHARS_PER_TOKEN = 4.0;
+
+    private final String tokenizerName;
+    private final int maxContextTokens;
+    private HuggingFaceTokenizer tokenizer;
+    private int separatorTokens = 1;
+
+    public ContextAssembler(@Value("${vortex.dialogue.prompt-tokenizer:NousResearch/Meta-Llama-3-8B-Instruct}") String tokenizerName,
+                            @Value("${vortex.dialogue.max-context-length:2048}") int maxContextTokens) {
+        this.tokenizerName = tokenizerName;
+        this.maxContextTokens = maxContextTokens;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        try {
+            logger.info("Loading prompt tokenizer: {}", tokenizerName);
+            tokenizer = HuggingFaceTokenizer.newInstance(tokenizerName, Map.of("truncation", "false", "padding", "false"));
+            separatorTokens = countTokens(CHUNK_SEPARATOR);
+        } catch (Exception e) {
+            logger.warn("Failed to load prompt tokenizer {}, falling back to a character based estimate", tokenizerName, e);
+            tokenizer = null;
+        }
+    }
+
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        if (tokenizer == null) {
+            return (int) Math.ceil(text.length() / FALLBACK_CHARS_PER_TOKEN);
+        }
+        return tokenizer.encode(text, false, false).getIds().length;
+    }
+
+    public String assemble(List<PersonaChunk> chunks) {
+        List<PersonaChunk> ranked = chunks.stream()
+                .filter(chunk -> chunk.transcript != null && !chunk.transcript.isBlank())
+                .sorted(Comparator.comparingDouble(chunk -> chunk.distance))
+                .collect(Collectors.toList());
+        List<Set<String>> acceptedShingles = new ArrayList<>();
+        StringBuilder context = new StringBuilder();
+        int usedTokens = 0;
+        int skippedDuplicates = 0;
+        int skippedOverBudget = 0;
+        for (PersonaChunk chunk : ranked) {
+            String transcript = chunk.transcript.trim();
+            Set<String> shingles = shingles(transcript);
+            if (isDuplicate(shingles, acceptedShingles)) {
+                skippedDuplicates++;
+                continue;
+            }
+            int chunkTokens = countTokens(transcript) + (context.length() > 0 ? separatorTokens : 0);
+            if (usedTokens + chunkTokens > maxContextTokens) {
+                skippedOverBudget++;
+                continue;
+            }
+            if (context.length() > 0) {
+                context.append(CHUNK_SEPARATOR);
+            }
+            context.append(transcript);
+            usedTokens += chunkTokens;
+            acceptedShingles.add(shingles);
+        }
+        logger.debug("Assembled context of {} tokens (budget {}) from {} chunks, skipped {} duplicate(s) and {} over budget",
+                usedTokens, maxContextTokens, acceptedShingles.size(), skippedDuplicates, skippedOverBudget);
+        return context.toString();
+    }
+
+    private boolean isDuplicate(Set<String> candidate, List<Set<String>> accepted) {
+        if (candidate.isEmpty()) {
+            return false;
+        }
+        for (Set<String> existing : accepted) {
+            int shared = 0;
+            for (String shingle : candidate) {
+                if (existing.contains(shingle)) {
+                    shared++;
+                }
+            }
+            int smaller = Math.min(candidate.size(), existing.size());
+            if (smaller > 0 && shared >= DUPLICATE_OVERLAP * smaller) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<String> shingles(String text) {
+        String[] words = text.toLowerCase(Locale.ROOT).split("\\W+");
+        Set<String> shingles = new HashSet<>();
+        if (words.length < SHINGLE_SIZE) {
+            shingles.add(String.join(" ", words));
+            return shingles;
+        }
+        for (int i = 0; i + SHINGLE_SIZE <= words.length; i++) {
+            shingles.add(words[i] + " " + words[i + 1] + " " + words[i + 2]);
+        }
+        return shingles;
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (tokenizer != null) {
+            tokenizer.close();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.arvatar.vortex.service;
+
+import com.arvatar.vortex.models.ConversationTurn;
+import com.arvatar.vortex.config.RedisConnector;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps the last {@code vortex.dialogue.max-conversation-history} turns of every active conversation so that
+ * follow-up questions can reuse the context retrieved for earlier turns.
+ * <p>
+ * Sessions live in a bounded, access-ordered map that evicts the least recently used conversation once
+ * {@code vortex.dialogue.max-conversations} is exceeded and drops sessions idle for longer than the configured TTL.
+ * When {@code vortex.dialogue.conversation-store} is {@code redis} every turn is also written through to a Redis hash
+ * so that a conversation survives a restart or moves between replicas.
+ */
+@Service
+public class ConversationSessionStore {
+
+    private static final String REDIS_KEY_PREFIX = "conversation:";
+    private static final String TURNS_FIELD = "turns";
+
+    private final Logger logger = org.slf4j.LoggerFactory.getLogger(ConversationSessionStore.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int maxTurns;
+    private final long ttlMillis;
+    private final int maxSessions;
+    private final long loadTimeoutMillis;
+    private final Map<String, Session> sessions;
+    private final StatefulRedisConnection<String, String> connection;
+    private final RedisAsyncCommands<String, String> asyncCommands;
+
+    public ConversationSessionStore(@Value("${vortex.dialogue.max-conversation-history:10}") int maxTurns,
+                                    @Value("${vortex.dialogue.conversation-ttl-minutes:30}") long ttlMinutes,
+                                    @Value("${vortex.dialogue.max-conversations:10000}") int maxSessions,
+                                    @Value("${vortex.dialogue.conversation-store:memory}") String storeType,
+                                    @Value("${vortex.dialogue.conversation-load-timeout:500ms}") Duration loadTimeout,
+                                    RedisConnector redisConnector) {
+        this.maxTurns = Math.max(1, maxTurns);
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.maxSessions = Math.max(1, maxSessions);
+        this.loadTimeoutMillis = loadTimeout.toMillis();
+        this.sessions = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > ConversationSessionStore.this.maxSessions;
+            }
+        };
+        if ("redis".equalsIgnoreCase(storeType)) {
+            this.connection = redisConnector.connect();
+            this.asyncCommands = connection.async();
+        } else {
+            this.connection = null;
+            this.asyncCommands = null;
+        }
+    }
+
+    /**
+     * Returns the retained turns of a conversation, oldest first. An empty conversation id means the caller did not
+     * ask for a session, so nothing is returned. Reading the session from Redis waits no longer than the load timeout
+     * or the time {@code scope} has left, whichever is shorter.
+     */
+    public List<ConversationTurn> getHistory(String guruId, String conversationId, RequestScope scope) {
+        if (conversationId == null || conversationId.isBlank()) {
+            return List.of();
+        }
+        String key = sessionKey(guruId, conversationId);
+        long now = System.currentTimeMillis();
+        synchronized (sessions) {
+            Session session = sessions.get(key);
+            if (session != null) {
+                if (now - session.lastAccessMillis <= ttlMillis) {
+                    session.lastAccessMillis = now;
+                    return new ArrayList<>(session.turns);
+                }
+                sessions.remove(key);
+            }
+        }
+        List<ConversationTurn> stored = loadFromRedis(key, scope);
+        if (stored.isEmpty()) {
+            return stored;
+        }
+        synchronized (sessions) {
+            Session session = sessions.computeIfAbsent(key, k -> new Session());
+            if (session.turns.isEmpty()) {
+                session.turns.addAll(stored);
+                trim(session);
+            }
+            session.lastAccessMillis = now;
+            return new ArrayList<>(session.turns);
+        }
+    }
+
+    /**
+     * Distinct chunk ids retrieved across the retained turns, most recent turn first.
+     */
+    public List<UUID> getPriorChunkIds(List<ConversationTurn> history) {
+        Set<UUID> chunkIds = new LinkedHashSet<>();
+        for (int i = history.size() - 1; i >= 0; i--) {
+            chunkIds.addAll(history.get(i).chunkIds);
+        }
+        return new ArrayList<>(chunkIds);
+    }
+
+    public void appendTurn(String guruId, String conversationId, ConversationTurn turn) {
+        if (conversationId == null || conversationId.isBlank()) {
+            return;
+        }
+        String key = sessionKey(guruId, conversationId);
+        List<ConversationTurn> snapshot;
+        synchronized (sessions) {
+            Session session = sessions.computeIfAbsent(key, k -> new Session());
+            session.turns.addLast(turn);
+            trim(session);
+            session.lastAccessMillis = System.currentTimeMillis();
+            snapshot = new ArrayList<>(session.turns);
+        }
+        storeInRedis(key, snapshot);
+    }
+
+    private void trim(Session session) {
+        while (session.turns.size() > maxTurns) {
+            session.turns.removeFirst();
+        }
+    }
+
+    private List<ConversationTurn> loadFromRedis(String key, RequestScope scope) {
+        if (asyncCommands == null) {
+            return List.of();
+        }
+        // Runs on the Ask path, so a stalled Redis costs the request at most the load timeout.
+        long timeoutMillis = scope.remaining()
+                .map(remaining -> Math.min(loadTimeoutMillis, remaining.toMillis()))
+                .orElse(loadTimeoutMillis);
+        try {
+            String turnsJson = asyncCommands.hget(REDIS_KEY_PREFIX + key, TURNS_FIELD)
+                    .get(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (turnsJson == null) {
+                return List.of();
+            }
+            return objectMapper.readValue(turnsJson, new TypeReference<List<ConversationTurn>>() {});
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } catch (TimeoutException e) {
+            logger.warn("Loading conversation {} from Redis took longer than {} ms, starting a fresh session",
+                    key, timeoutMillis);
+            return List.of();
+        } catch (Exception e) {
+            logger.warn("Failed to load conversation {} from Redis, starting a fresh session", key, e);
+            return List.of();
+        }
+    }
+
+    private void storeInRedis(String key, List<ConversationTurn> turns) {
+        if (asyncCommands == null) {
+            return;
+        }
+        try {
+            String redisKey = REDIS_KEY_PREFIX + key;
+            asyncCommands.hset(redisKey, TURNS_FIELD, objectMapper.writeValueAsString(turns));
+            asyncCommands.pexpire(redisKey, ttlMillis);
+        } catch (Exception e) {
+            logger.warn("Failed to write conversation {} to Redis", key, e);
+        }
+    }
+
+    private static String sessionKey(String guruId, String conversationId) {
+        return guruId + ":" + conversationId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private static class Session {
+        private final Deque<ConversationTurn> turns = new ArrayDeque<>();
+        private long lastAccessMillis = System.currentTimeMillis();
+    }
+}
@@ -138,6 +138,39 @@ public class DatabaseWriter {
         return chunkId;
     }
 
+    /** Inserts a video row with a caller-chosen ID; does nothing if that ID already exists. */
+    public void insertVideoIfNotExists(UUID videoId, String guruId, String description, String storageUri) throws SQLException {
+        String sql = "INSERT INTO video (video_id, guru_id, description, storage_uri) " +
+                "VALUES (?, ?, ?, ?) ON CONFLICT (video_id) DO NOTHING";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            initializeSchemaIfNecessary(connection);
+            ps.setObject(1, videoId);
+            ps.setString(2, guruId);
+            ps.setString(3, description);
+            ps.setString(4, storageUri);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Inserts a chunk with a caller-chosen ID; does nothing if that ID already exists. */
+    public void insertChunkIfNotExists(UUID chunkId, String guruId, UUID videoId,
+                                       String transcript, float[] embedding) throws SQLException {
+        String sql = "INSERT INTO persona_chunk " +
+                "(chunk_id, guru_id, video_id, transcript, embedding) " +
+                "VALUES (?, ?, ?, ?,?::vector) ON CONFLICT (chunk_id) DO NOTHING";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            initializeSchemaIfNecessary(connection);
+            ps.setObject(1, chunkId);
+            ps.setString(2, guruId);
+            ps.setObject(3, videoId);
+            ps.setString(4, transcript);
+            ps.setString(5, toPgVectorLiteral(embedding));
+            ps.executeUpdate();
+        }
+    }
+
     public void updateChunk(UUID chunkId, String newTranscript) throws SQLException {
         String sql = "UPDATE persona_chunk " +
                 "SET transcript = ? " +
@@ -180,7 +213,8 @@ public class DatabaseWriter {
         return null;
     }
 
-    public List<PersonaChunk> searchSimilarChunks(String guruId, float[] queryEmbedding, int topK) throws SQLException {
+    public List<PersonaChunk> searchSimilarChunks(String guruId, float[] queryEmbedding, int topK,
+                                                  RequestScope scope) throws SQLException {
         String sql = "SELECT chunk_id, transcript, video_id, embedding <=> ?::vector AS distance " +
                      "FROM persona_chunk WHERE guru_id = ? ORDER BY distance LIMIT ?";
         java.util.List<com.arvatar.vortex.models.PersonaChunk> results = new java.util.ArrayList<>();
@@ -192,7 +226,7 @@ public class DatabaseWriter {
             ps.setString(2, guruId);
             ps.setInt(3, topK);
             
-            try (ResultSet rs = ps.executeQuery()) {
+            try (ResultSet rs = executeQuery(ps, scope)) {
                 while (rs.next()) {
                     results.add(new PersonaChunk(
                         (UUID) rs.getObject("chunk_id"),
@@ -206,6 +240,62 @@ public class DatabaseWriter {
         return results;
     }
 
+    /**
+     * Re-scores previously retrieved chunks against a new query embedding so follow-up turns can rank them
+     * alongside a fresh similarity search.
+     */
+    public List<PersonaChunk> findChunksByIds(String guruId, List<UUID> chunkIds, float[] queryEmbedding,
+                                              RequestScope scope) throws SQLException {
+        List<PersonaChunk> results = new java.util.ArrayList<>();
+        if (chunkIds == null || chunkIds.isEmpty()) {
+            return results;
+        }
+        String sql = "SELECT chunk_id, transcript, video_id, embedding <=> ?::vector AS distance " +
+                     "FROM persona_chunk WHERE guru_id = ? AND chunk_id = ANY(?)";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            initializeSchemaIfNecessary(conn);
+            ps.setString(1, toPgVectorLiteral(queryEmbedding));
+            ps.setString(2, guruId);
+            ps.setArray(3, conn.createArrayOf("uuid", chunkIds.toArray()));
+
+            try (ResultSet rs = executeQuery(ps, scope)) {
+                while (rs.next()) {
+                    results.add(new PersonaChunk(
+                        (UUID) rs.getObject("chunk_id"),
+                        rs.getString("transcript"),
+                        (UUID) rs.getObject("video_id"),
+                        rs.getDouble("distance")
+                    ));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Executes a query bounded by the request deadline and cancels the statement server-side if the request is
+     * cancelled while it runs.
+     */
+    private ResultSet executeQuery(PreparedStatement ps, RequestScope scope) throws SQLException {
+        scope.checkActive();
+        ps.setQueryTimeout(scope.remainingSeconds());
+        Runnable removeHook = scope.onCancel(() -> {
+            try {
+                ps.cancel();
+            } catch (SQLException ignored) {
+            }
+        });
+        try {
+            return ps.executeQuery();
+        } catch (SQLException e) {
+            scope.checkActive();
+            throw e;
+        } finally {
+            removeHook.run();
+        }
+    }
+
     private String toPgVectorLiteral(float[] embedding) {
         StringJoiner joiner = new StringJoiner(",");
         for (float f : embedding) {
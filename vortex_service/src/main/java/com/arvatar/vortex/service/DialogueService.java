@@ -1,13 +1,26 @@
 package com.arvatar.vortex.service;
 
+import com.arvatar.vortex.models.ConversationTurn;
 import com.arvatar.vortex.models.Intention;
 import com.arvatar.vortex.models.PersonaChunk;
 import com.arvatar.vortex.models.PersonProfile;
+import com.arvatar.vortex.service.lipsync.LipSyncService;
+import com.arvatar.vortex.service.lipsync.LipSyncStage;
+import com.arvatar.vortex.service.tts.TtsService;
+import com.arvatar.vortex.service.tts.TtsStage;
+import com.google.protobuf.ByteString;
 import org.springframework.stereotype.Service;
+import voxel.common.v1.Types.LipSync;
 import voxel.dialogue.v1.DialogueServiceOuterClass.*;
 
 import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -15,12 +28,24 @@ public class DialogueService {
 
     private final DatabaseWriter databaseWriter;
     private final LLMService llmService;
+    private final ConversationSessionStore conversationStore;
+    private final AdmissionController admissionController;
+    private final LipSyncService lipSyncService;
+    private final TtsService ttsService;
     private static final int RAG_TOP_K = 5;
 
     public DialogueService(DatabaseWriter databaseWriter,
-                          LLMService llmService) {
+                          LLMService llmService,
+                          ConversationSessionStore conversationStore,
+                          AdmissionController admissionController,
+                          LipSyncService lipSyncService,
+                          TtsService ttsService) {
         this.databaseWriter = databaseWriter;
         this.llmService = llmService;
+        this.conversationStore = conversationStore;
+        this.admissionController = admissionController;
+        this.lipSyncService = lipSyncService;
+        this.ttsService = ttsService;
     }
 
     /**
@@ -54,28 +79,98 @@ public class DialogueService {
     }
     
     public AnswerChunk askQuestion(AskRequest request) {
-        try {
-            Intention userIntention = llmService.getUserIntention(request.getUserQuery(), request.getConversationId(), request.getGuruId());
+        return askQuestion(request, RequestScope.unbounded());
+    }
+
+    /**
+     * Answers a question within the caller's deadline and returns the whole answer as a single final chunk. See
+     * {@link #ask} for the streaming variant.
+     */
+    public AnswerChunk askQuestion(AskRequest request, RequestScope scope) {
+        StringBuilder transcript = new StringBuilder();
+        AnswerChunk.Builder aggregated = AnswerChunk.newBuilder().setIsFinal(true);
+        ask(request, scope, chunk -> {
+            if (chunk.getPayloadCase() == AnswerChunk.PayloadCase.TRANSCRIPT_DELTA) {
+                transcript.append(chunk.getTranscriptDelta());
+            }
+            aggregated.addAllCitations(chunk.getCitationsList());
+        });
+        return aggregated.setTranscriptDelta(transcript.toString()).build();
+    }
+
+    /**
+     * Answers a question within the caller's deadline, streaming the answer to {@code sink} as it is generated:
+     * transcript deltas, interleaved with incremental lip-sync marks when {@code return_lipsync} is set and with
+     * fixed-size PCM audio frames when {@code return_audio} is set, and finally
+     * a chunk carrying the citations with {@code is_final} set. The request must first be admitted by the
+     * {@link AdmissionController}; every downstream call observes {@code scope} so a cancelled or expired request
+     * stops consuming the database and the LLM.
+     */
+    public void ask(AskRequest request, RequestScope scope, Consumer<AnswerChunk> sink) {
+        try (AdmissionController.Permit ignored = admissionController.admit(request.getGuruId())) {
+            Intention userIntention = llmService.getUserIntention(request.getUserQuery(), request.getConversationId(), request.getGuruId(), scope);
             if(userIntention != Intention.CONVERSE) {
-                return AnswerChunk.newBuilder()
+                sink.accept(AnswerChunk.newBuilder()
                     .setTranscriptDelta(Intention.toString(userIntention))
                     .setIsFinal(true)
-                    .build();
+                    .build());
+                return;
             }
+            List<ConversationTurn> history = conversationStore.getHistory(request.getGuruId(), request.getConversationId(),
+                    scope);
+            scope.checkActive();
             float[] queryEmbedding = llmService.embedText(request.getUserQuery());
             List<PersonaChunk> chunks = databaseWriter.searchSimilarChunks(
                     request.getGuruId(),
                     queryEmbedding,
-                    RAG_TOP_K
+                    RAG_TOP_K,
+                    scope
             );
-            String answer = llmService.generateAnswer(request.getUserQuery(), chunks);
-            List<voxel.common.v1.Types.ContextReference> citations = buildCitations(chunks);
-            return AnswerChunk.newBuilder()
-                    .setTranscriptDelta(answer)
-                    .addAllCitations(citations)
+            if (!history.isEmpty()) {
+                chunks = rerankWithPriorContext(request.getGuruId(), queryEmbedding, chunks,
+                        conversationStore.getPriorChunkIds(history), scope);
+            }
+            LipSyncStage lipSync = request.getReturnLipsync() ? lipSyncService.newStage() : null;
+            String answer;
+            try (TtsStage tts = request.getReturnAudio() ? ttsService.newStage(scope) : null) {
+                Consumer<byte[]> audioSink = frame -> sink.accept(AnswerChunk.newBuilder()
+                        .setAudioChunk(ByteString.copyFrom(frame))
+                        .build());
+                answer = llmService.generateAnswer(request.getUserQuery(), chunks, history, scope, delta -> {
+                    sink.accept(AnswerChunk.newBuilder().setTranscriptDelta(delta).build());
+                    if (lipSync != null) {
+                        LipSync marks = lipSync.accept(delta);
+                        if (marks != null) {
+                            sink.accept(AnswerChunk.newBuilder().setLipsync(marks).build());
+                        }
+                    }
+                    if (tts != null) {
+                        tts.accept(delta, audioSink);
+                    }
+                });
+                if (lipSync != null) {
+                    sink.accept(AnswerChunk.newBuilder().setLipsync(lipSync.flush()).build());
+                }
+                if (tts != null) {
+                    tts.finish(audioSink);
+                }
+            }
+            conversationStore.appendTurn(request.getGuruId(), request.getConversationId(), new ConversationTurn(
+                    request.getUserQuery(),
+                    answer,
+                    chunks.stream().map(chunk -> chunk.chunkId).collect(Collectors.toList()),
+                    System.currentTimeMillis()));
+            sink.accept(AnswerChunk.newBuilder()
+                    .addAllCitations(buildCitations(chunks))
                     .setIsFinal(true)
-                    .build();
+                    .build());
 
+        } catch (AdmissionController.AdmissionRejectedException | RequestScope.DeadlineExceededException
+                 | CancellationException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while generating answer");
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve context for question", e);
         } catch (Exception e) {
@@ -85,7 +180,8 @@ public class DialogueService {
 
     public AnswerChunk getIntent(AskRequest request) {
         try{
-            Intention userIntention = llmService.getUserIntention(request.getUserQuery(), request.getConversationId(), request.getGuruId());
+            Intention userIntention = llmService.getUserIntention(request.getUserQuery(), request.getConversationId(),
+                    request.getGuruId(), RequestScope.unbounded());
             return AnswerChunk.newBuilder()
                     .setTranscriptDelta(Intention.toString(userIntention))
                     .setIsFinal(true)
@@ -95,6 +191,30 @@ public class DialogueService {
         }
     }
 
+    /**
+     * Merges the chunks retrieved for earlier turns of the conversation with the fresh search results, scores them
+     * all against the current query and keeps the closest {@code RAG_TOP_K}.
+     */
+    private List<PersonaChunk> rerankWithPriorContext(String guruId, float[] queryEmbedding,
+                                                      List<PersonaChunk> freshChunks,
+                                                      List<UUID> priorChunkIds,
+                                                      RequestScope scope) throws SQLException {
+        Map<UUID, PersonaChunk> candidates = new LinkedHashMap<>();
+        for (PersonaChunk chunk : freshChunks) {
+            candidates.put(chunk.chunkId, chunk);
+        }
+        List<UUID> missing = priorChunkIds.stream()
+                .filter(chunkId -> !candidates.containsKey(chunkId))
+                .collect(Collectors.toList());
+        for (PersonaChunk chunk : databaseWriter.findChunksByIds(guruId, missing, queryEmbedding, scope)) {
+            candidates.putIfAbsent(chunk.chunkId, chunk);
+        }
+        return candidates.values().stream()
+                .sorted(Comparator.comparingDouble(chunk -> chunk.distance))
+                .limit(RAG_TOP_K)
+                .collect(Collectors.toList());
+    }
+
     private List<voxel.common.v1.Types.ContextReference> buildCitations(List<PersonaChunk> chunks) {
         return chunks.stream()
                 .map(chunk -> voxel.common.v1.Types.ContextReference.newBuilder()
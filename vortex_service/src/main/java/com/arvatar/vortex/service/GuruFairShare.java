@@ -0,0 +1,103 @@
+package com.arvatar.vortex.service;
+
+import com.arvatar.vortex.config.RedisConnector;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * Cluster-wide cap on how many viseme reconstructions of one guru run at the same time, so a tenant re-processing a
+ * large archive cannot occupy every PCD worker. Each running reconstruction holds a lease in a per-guru sorted set
+ * scored by its expiry; leases of crashed holders lapse after {@code lease-ttl}.
+ */
+@Component
+public class GuruFairShare {
+
+    // KEYS[1] lease set; ARGV: now, expiry, holder, limit, ttl ms
+    private static final String ACQUIRE_SCRIPT =
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[1]) " +
+            "if redis.call('ZSCORE', KEYS[1], ARGV[3]) or redis.call('ZCARD', KEYS[1]) < tonumber(ARGV[4]) then " +
+            "  redis.call('ZADD', KEYS[1], ARGV[2], ARGV[3]) " +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[5]) " +
+            "  return 1 " +
+            "end " +
+            "return 0";
+    // KEYS[1] lease set; ARGV: expiry, holder, ttl ms
+    private static final String RENEW_SCRIPT =
+            "if redis.call('ZSCORE', KEYS[1], ARGV[2]) then " +
+            "  redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2]) " +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+            "  return 1 " +
+            "end " +
+            "return 0";
+
+    private final Logger logger = org.slf4j.LoggerFactory.getLogger(GuruFairShare.class);
+    private final int maxPerGuru;
+    private final Duration leaseTtl;
+    private final StatefulRedisConnection<String, String> connection;
+
+    public GuruFairShare(RedisConnector redisConnector,
+                         @Value("${vortex.jobs.fair-share.max-reconstructions-per-guru:4}") int maxPerGuru,
+                         @Value("${vortex.jobs.fair-share.lease-ttl:5h}") Duration leaseTtl) {
+        this.maxPerGuru = maxPerGuru;
+        this.leaseTtl = leaseTtl;
+        this.connection = redisConnector.connect();
+    }
+
+    /**
+     * Takes one of the guru's slots for {@code holder}. Re-acquiring a slot already held renews it.
+     *
+     * @return false when the guru is at its limit
+     */
+    public boolean tryAcquire(String guruId, String holder) {
+        if (maxPerGuru <= 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Long acquired = connection.sync().eval(ACQUIRE_SCRIPT, ScriptOutputType.INTEGER, new String[]{key(guruId)},
+                Long.toString(now), Long.toString(now + leaseTtl.toMillis()), holder, Integer.toString(maxPerGuru),
+                Long.toString(leaseTtl.toMillis()));
+        if (acquired == null || acquired == 0) {
+            logger.debug("Guru {} is at its limit of {} concurrent reconstructions", guruId, maxPerGuru);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Extends the lease {@code holder} already has, so that a reconstruction retried for longer than {@code lease-ttl}
+     * keeps its slot. Does nothing for a holder without a lease.
+     *
+     * @return false when the holder has no lease
+     */
+    public boolean renew(String guruId, String holder) {
+        if (maxPerGuru <= 0) {
+            return true;
+        }
+        Long renewed = connection.sync().eval(RENEW_SCRIPT, ScriptOutputType.INTEGER, new String[]{key(guruId)},
+                Long.toString(System.currentTimeMillis() + leaseTtl.toMillis()), holder,
+                Long.toString(leaseTtl.toMillis()));
+        return renewed != null && renewed == 1;
+    }
+
+    public void release(String guruId, String holder) {
+        if (maxPerGuru <= 0) {
+            return;
+        }
+        connection.sync().zrem(key(guruId), holder);
+    }
+
+    private static String key(String guruId) {
+        return "vortex:fair-share:pcd:" + guruId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connection.close();
+    }
+}
@@ -0,0 +1,122 @@
+package com.arvatar.vortex.service;
+
+import com.arvatar.vortex.models.AsrPcdJob;
+import com.arvatar.vortex.config.RedisConnector;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Current state of every ASR/PCD job, one Redis hash per job. The job's identity is written once when it is created;
+ * a status transition afterwards only sets the changed fields. Hashes of finished jobs expire after {@code state-ttl}.
+ * Every write is also published as {@code "<status> <updated_at>"} on the job's {@link #eventChannel event channel}
+ * for {@link JobStatusNotifier}.
+ */
+@Component
+public class JobStateStore {
+
+    public static final String GURU_ID = "guru_id";
+    public static final String VIDEO_KEY = "video_key";
+    public static final String PRIORITY = "priority";
+    public static final String STATUS = "status";
+    public static final String ASR_RESULT_KEY = "asr_result_key";
+    public static final String CREATED_AT = "created_at";
+    public static final String UPDATED_AT = "updated_at";
+
+    private static final long WRITE_TIMEOUT_SECONDS = 5;
+
+    private final Logger logger = org.slf4j.LoggerFactory.getLogger(JobStateStore.class);
+    private final Duration stateTtl;
+    private final StatefulRedisConnection<String, String> connection;
+    private final RedisAsyncCommands<String, String> asyncCommands;
+
+    public JobStateStore(RedisConnector redisConnector,
+                         @Value("${vortex.jobs.state-ttl:30d}") Duration stateTtl) {
+        this.stateTtl = stateTtl;
+        this.connection = redisConnector.connect();
+        this.asyncCommands = connection.async();
+    }
+
+    /** Records a new job with its identity and initial status. */
+    public void create(AsrPcdJob job) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(GURU_ID, job.guruId);
+        fields.put(VIDEO_KEY, job.videoKey);
+        fields.put(PRIORITY, job.priority.name());
+        fields.put(CREATED_AT, job.createdAt.toString());
+        putState(job, fields);
+        write(job, fields);
+    }
+
+    /** Records the job's current status, and its ASR result reference once there is one. */
+    public void updateStatus(AsrPcdJob job) {
+        Map<String, String> fields = new HashMap<>();
+        putState(job, fields);
+        write(job, fields);
+    }
+
+    /** @return the job's fields, empty when the job is unknown or its state has expired */
+    public Map<String, String> find(UUID jobId) {
+        try {
+            return asyncCommands.hgetall(key(jobId.toString())).get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading state of job " + jobId, e);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read state of job " + jobId, e);
+        }
+    }
+
+    private static void putState(AsrPcdJob job, Map<String, String> fields) {
+        fields.put(STATUS, job.status.name());
+        fields.put(UPDATED_AT, Long.toString(System.currentTimeMillis()));
+        if (job.asrResultKey != null) {
+            fields.put(ASR_RESULT_KEY, job.asrResultKey);
+        }
+    }
+
+    private void write(AsrPcdJob job, Map<String, String> fields) {
+        String jobId = job.jobId.toString();
+        String key = key(jobId);
+        // All commands go out on one connection without waiting for each other.
+        RedisFuture<Long> written = asyncCommands.hset(key, fields);
+        RedisFuture<Boolean> expiry = job.status.isTerminal()
+                ? asyncCommands.expire(key, stateTtl.getSeconds())
+                : asyncCommands.persist(key);
+        RedisFuture<Long> published = asyncCommands.publish(eventChannel(jobId),
+                fields.get(STATUS) + " " + fields.get(UPDATED_AT));
+        try {
+            written.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            expiry.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            published.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing state of job " + job.jobId, e);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to write state of job " + job.jobId, e);
+        }
+    }
+
+    private static String key(String jobId) {
+        return "vortex:job:" + jobId;
+    }
+
+    static String eventChannel(String jobId) {
+        return "vortex:job-events:" + jobId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connection.close();
+    }
+}
@@ -0,0 +1,113 @@
+package com.arvatar.vortex.service;
+
+import com.arvatar.vortex.config.RedisConnector;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Fans the status events {@link JobStateStore} publishes out to the watchers on this instance. All watchers share one
+ * pub/sub connection, which is subscribed to a job's channel while at least one watcher follows that job.
+ */
+@Component
+public class JobStatusNotifier {
+
+    private static final long SUBSCRIBE_TIMEOUT_SECONDS = 5;
+
+    private final Logger logger = org.slf4j.LoggerFactory.getLogger(JobStatusNotifier.class);
+    private final StatefulRedisPubSubConnection<String, String> connection;
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    public JobStatusNotifier(RedisConnector redisConnector) {
+        this.connection = redisConnector.connectPubSub();
+        this.connection.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(String channel, String message) {
+                deliver(channel, message);
+            }
+        });
+    }
+
+    /**
+     * Passes every status event of the job to {@code listener} until the returned handle is closed. The channel is
+     * subscribed by the time this returns, so a state read afterwards misses no later event. Listeners run on the
+     * Redis event loop and must not block.
+     */
+    public AutoCloseable subscribe(UUID jobId, Consumer<String> listener) {
+        String channel = JobStateStore.eventChannel(jobId.toString());
+        Subscription subscription;
+        synchronized (subscriptions) {
+            subscription = subscriptions.get(channel);
+            if (subscription == null) {
+                // Only sent here; waiting for Redis under the lock would block every other subscribe and unsubscribe.
+                subscription = new Subscription(connection.async().subscribe(channel));
+                subscriptions.put(channel, subscription);
+            }
+            subscription.listeners.add(listener);
+        }
+        try {
+            subscription.subscribed.get(SUBSCRIBE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            unsubscribe(channel, listener);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while subscribing to " + channel, e);
+        } catch (Exception e) {
+            unsubscribe(channel, listener);
+            throw new RuntimeException("Failed to subscribe to " + channel, e);
+        }
+        return () -> unsubscribe(channel, listener);
+    }
+
+    private void unsubscribe(String channel, Consumer<String> listener) {
+        synchronized (subscriptions) {
+            Subscription subscription = subscriptions.get(channel);
+            if (subscription == null || !subscription.listeners.remove(listener)
+                    || !subscription.listeners.isEmpty()) {
+                return;
+            }
+            subscriptions.remove(channel);
+            // Not waited for: a listener may close its subscription from the event loop that completes the command.
+            connection.async().unsubscribe(channel);
+        }
+    }
+
+    private void deliver(String channel, String message) {
+        Subscription subscription = subscriptions.get(channel);
+        if (subscription == null) {
+            return;
+        }
+        for (Consumer<String> listener : subscription.listeners) {
+            try {
+                listener.accept(message);
+            } catch (RuntimeException e) {
+                logger.warn("Job status listener on {} failed", channel, e);
+            }
+        }
+    }
+
+    /** The watchers of one channel, and the SUBSCRIBE that every one of them waits for. */
+    private static final class Subscription {
+        final Set<Consumer<String>> listeners = new CopyOnWriteArraySet<>();
+        final RedisFuture<Void> subscribed;
+
+        Subscription(RedisFuture<Void> subscribed) {
+            this.subscribed = subscribed;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connection.close();
+    }
+}
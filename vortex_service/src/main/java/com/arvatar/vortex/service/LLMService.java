@@ -6,19 +6,29 @@ import ai.djl.repository.zoo.ModelZoo;
 import ai.djl.repository.zoo.ZooModel;
 import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
 import ai.djl.huggingface.translator.TextEmbeddingTranslator;
+import com.arvatar.vortex.models.ConversationTurn;
 import com.arvatar.vortex.models.Intention;
 import com.arvatar.vortex.models.PersonaChunk;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -30,13 +40,40 @@ import static com.arvatar.vortex.models.Intention.NEW_GURU;
 @Service
 public class LLMService {
     private static final Logger logger = LoggerFactory.getLogger(LLMService.class);
-    private static final int MAX_CONTEXT_LENGTH = 5000;
     private ZooModel<String, float[]> model;
     private HuggingFaceTokenizer tokenizer;
     private static final String OLLAMA_URL = "http://localhost:11434/api/generate";
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private final HttpClient httpClient = HttpClient.newHttpClient();
     private static final String MODEL_NAME = "sentence-transformers/all-MiniLM-L6-v2";
+    private static final String OLLAMA_KEEP_ALIVE = "30m";
+    // Prompt headers are kept byte-identical across calls and placed first so Ollama can reuse the cached KV prefix.
+    private static final String ANSWER_PROMPT_HEADER = String.join("\n", "You are a retrieval-augmented assistant.",
+            "TASK:",
+            "Answer the question using ONLY the context below.",
+            "If the context does not contain the answer, say:",
+            "I don't have enough information in the provided documents.");
+    private static final String INTENT_PROMPT_HEADER = String.join("\n", "You are an intent parsing assistant.",
+            "You infer possible intention from a users request and maps it to only one of the ones provided below. Defaulting to  ",
+            Intention.toString(CONVERSE),
+            " if you cannot infer a clear intention.",
+            "INTENTS:",
+            Intention.toString(Intention.AWAKEN),
+            Intention.toString(Intention.CONVERSE),
+            Intention.toString(Intention.SLEEP),
+            Intention.toString(Intention.VORTEX),
+            Intention.toString(Intention.NEW_GURU),
+            Intention.toString(Intention.VOLUME_UP),
+            Intention.toString(Intention.VOLUME_DOWN),
+            Intention.toString(Intention.BRIGHTNESS_UP),
+            Intention.toString(Intention.BRIGHTNESS_DOWN),
+            Intention.toString(Intention.SPEAK_FAST),
+            Intention.toString(Intention.SPEAK_SLOW));
+    private final ContextAssembler contextAssembler;
+
+    public LLMService(ContextAssembler contextAssembler) {
+        this.contextAssembler = contextAssembler;
+    }
 
    @PostConstruct
     public void initialize() {
@@ -81,102 +118,144 @@ public class LLMService {
         }
     }
 
-    public String generateAnswer(String query, List<PersonaChunk> contextChunks) throws IOException, InterruptedException {
+    public String generateAnswer(String query, List<PersonaChunk> contextChunks, List<ConversationTurn> history,
+                                 RequestScope scope) throws IOException, InterruptedException {
+        return generateAnswer(query, contextChunks, history, scope, delta -> { });
+    }
+
+    /**
+     * Generates an answer, handing each text fragment to {@code onDelta} as soon as Ollama produces it, and returns
+     * the full answer once generation is done.
+     */
+    public String generateAnswer(String query, List<PersonaChunk> contextChunks, List<ConversationTurn> history,
+                                 RequestScope scope, Consumer<String> onDelta) throws IOException, InterruptedException {
         if (contextChunks == null || contextChunks.isEmpty()) {
-            return "I don't have enough information to answer that question based on my training data.";
+            String fallback = "I don't have enough information to answer that question based on my training data.";
+            onDelta.accept(fallback);
+            return fallback;
         }
-        logger.debug("Generating answer for query: '{}' using {} context chunks", query, contextChunks.size());
-        String context = buildContext(contextChunks);
-        String answer = getAnswerFromExternalLLMServer(query, context);
+        logger.debug("Generating answer for query: '{}' using {} context chunks and {} prior turns",
+                query, contextChunks.size(), history.size());
+        String context = contextAssembler.assemble(contextChunks);
+        String answer = getAnswerFromExternalLLMServer(query, context, buildConversation(history), scope, onDelta);
         logger.debug("Generated answer: {}", answer);
         return answer;
     }
 
-    public Intention getUserIntention(String query, String conversionId, String guruId) throws IOException, InterruptedException {
-       String prompt = String.join("\n", "You are an intent parsing assistant.",
-               "You infer possible intention from a users request and maps it to only one of the ones provided below. Defaulting to  ",
-               Intention.toString(CONVERSE),
-               " if you cannot infer a clear intention.",
-               "QUESTION:",
-               query,
-               "INTENT:",
-               Intention.toString(Intention.AWAKEN),
-               Intention.toString(Intention.CONVERSE),
-               Intention.toString(Intention.SLEEP),
-               Intention.toString(Intention.VORTEX),
-               Intention.toString(Intention.NEW_GURU),
-               Intention.toString(Intention.VOLUME_UP),
-               Intention.toString(Intention.VOLUME_DOWN),
-               Intention.toString(Intention.BRIGHTNESS_UP),
-               Intention.toString(Intention.BRIGHTNESS_DOWN),
-               Intention.toString(Intention.SPEAK_FAST),
-               Intention.toString(Intention.SPEAK_SLOW)
-       );
-       ObjectNode body = MAPPER.createObjectNode();
-       body.put("model", "llama3:instruct");
-       body.put("prompt", prompt);
-       body.put("stream", false);
-       String requestJson = body.toString();
-
-       HttpRequest request = HttpRequest.newBuilder()
-               .uri(URI.create(OLLAMA_URL))
-               .header("Content-Type", "application/json")
-               .POST(HttpRequest.BodyPublishers.ofString(requestJson, StandardCharsets.UTF_8))
-               .build();
-       HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-       if(response.statusCode() != 200){
-           throw new RuntimeException("Ollama error: " + response.statusCode() + " => " + response.body());
-       }
-       ObjectNode json = (ObjectNode) MAPPER.readTree(response.body());
-       String intent = json.get("response").asText();
-       return Intention.valueOf(intent);
+    public Intention getUserIntention(String query, String conversionId, String guruId, RequestScope scope) throws IOException, InterruptedException {
+       String prompt = String.join("\n", INTENT_PROMPT_HEADER, "QUESTION:", query, "INTENT:");
+       String intent = streamCompletion(prompt, scope, delta -> { });
+       return Intention.valueOf(intent.trim());
     }
 
-    private String getAnswerFromExternalLLMServer(String query, String context) throws IOException, InterruptedException {
-        String prompt = String.join("\n","You are a retrieval-augmented assistant.",
-                "TASK:",
-                "Answer the question using ONLY the context below.",
-                "If the context does not contain the answer, say:",
-                "I don't have enough information in the provided documents.",
-                "QUESTION:",
-                query,
+    private String getAnswerFromExternalLLMServer(String query, String context, String conversation,
+                                                  RequestScope scope, Consumer<String> onDelta)
+            throws IOException, InterruptedException {
+        String prompt = String.join("\n", ANSWER_PROMPT_HEADER,
+                "CONVERSATION SO FAR:",
+                conversation,
                 "CONTEXT:",
-                context);
+                context,
+                "QUESTION:",
+                query);
+        return streamCompletion(prompt, scope, onDelta);
+    }
+
+    /**
+     * Runs a streaming Ollama completion and returns the concatenated response. Streaming lets a cancelled or
+     * expired request close the connection mid-generation, which makes Ollama stop generating, instead of waiting
+     * for the whole answer to be produced. Each non-empty fragment is also passed to {@code onDelta} as it arrives.
+     */
+    private String streamCompletion(String prompt, RequestScope scope, Consumer<String> onDelta)
+            throws IOException, InterruptedException {
+        scope.checkActive();
         ObjectNode body = MAPPER.createObjectNode();
-        body.put("model", "llama3:instruct");           
+        body.put("model", "llama3:instruct");
         body.put("prompt", prompt);
-        body.put("stream", false);
-        String requestJson = body.toString();
-        HttpRequest request = HttpRequest.newBuilder()
+        body.put("stream", true);
+        body.put("keep_alive", OLLAMA_KEEP_ALIVE);
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                 .uri(URI.create(OLLAMA_URL))
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(requestJson, StandardCharsets.UTF_8))
-                .build();
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Ollama error: " + response.statusCode() + " => " + response.body());
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8));
+        scope.remaining().ifPresent(requestBuilder::timeout);
+
+        CompletableFuture<HttpResponse<InputStream>> pending =
+                httpClient.sendAsync(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        HttpResponse<InputStream> response;
+        Runnable removeHook = scope.onCancel(() -> pending.cancel(true));
+        try {
+            response = pending.get();
+        } catch (CancellationException e) {
+            scope.checkActive();
+            throw e;
+        } catch (ExecutionException e) {
+            scope.checkActive();
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException("Ollama request failed", e.getCause());
+        } finally {
+            removeHook.run();
         }
-        ObjectNode json = (ObjectNode) MAPPER.readTree(response.body());
-        logger.debug("Ollama response: {}", json);
-        return json.get("response").asText();
-    }
 
-    private String buildContext(List<PersonaChunk> chunks) {
-        StringBuilder context = new StringBuilder();
-        int currentLength = 0;
-        for (PersonaChunk chunk : chunks) {
-            String transcript = chunk.transcript;
-            if (currentLength + transcript.length() > MAX_CONTEXT_LENGTH) {
-                int remaining = MAX_CONTEXT_LENGTH - currentLength;
-                if (remaining > 0) {
-                    context.append(transcript, 0, remaining);
+        StringBuilder completion = new StringBuilder();
+        try (InputStream stream = response.body();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            if (response.statusCode() != 200) {
+                String error = reader.lines().collect(Collectors.joining("\n"));
+                throw new RuntimeException("Ollama error: " + response.statusCode() + " => " + error);
+            }
+            Runnable removeStreamHook = scope.onCancel(() -> closeQuietly(stream));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    scope.checkActive();
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    JsonNode json = MAPPER.readTree(line);
+                    if (json.hasNonNull("error")) {
+                        throw new RuntimeException("Ollama error: " + json.get("error").asText());
+                    }
+                    String fragment = json.path("response").asText("");
+                    if (!fragment.isEmpty()) {
+                        completion.append(fragment);
+                        onDelta.accept(fragment);
+                    }
+                    if (json.path("done").asBoolean(false)) {
+                        break;
+                    }
                 }
-                break;
+            } catch (IOException e) {
+                // Closing the stream from a cancel hook surfaces here as an IOException.
+                scope.checkActive();
+                throw e;
+            } finally {
+                removeStreamHook.run();
             }
-            context.append(transcript).append("\n\n");
-            currentLength += transcript.length() + 2;
         }
-        return context.toString().trim();
+        scope.checkActive();
+        return completion.toString();
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private String buildConversation(List<ConversationTurn> history) {
+        if (history.isEmpty()) {
+            return "(none)";
+        }
+        StringBuilder conversation = new StringBuilder();
+        for (ConversationTurn turn : history) {
+            conversation.append("USER: ").append(turn.userQuery).append("\n");
+            conversation.append("ASSISTANT: ").append(turn.answer).append("\n");
+        }
+        return conversation.toString().trim();
     }
 
      @PreDestroy
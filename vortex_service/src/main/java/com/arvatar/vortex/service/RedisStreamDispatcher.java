@@ -0,0 +1,362 @@
+package com.arvatar.vortex.service;
+
+import com.arvatar.vortex.config.RedisConnector;
+import com.arvatar.vortex.config.RedisStreamProperties;
+import io.lettuce.core.Consumer;
+import io.lettuce.core.Limit;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAutoClaimArgs;
+import io.lettuce.core.XGroupCreateArgs;
+import io.lettuce.core.XPendingArgs;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.models.stream.ClaimedMessages;
+import io.lettuce.core.models.stream.PendingMessage;
+import io.lettuce.core.models.stream.PendingMessages;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consumes a Redis stream through a consumer group in batches. Each batch is read with a single {@code XREADGROUP
+ * COUNT n}, its messages are handed to the handler concurrently, and the successful ones are settled with one
+ * pipelined multi-ID {@code XACK} and {@code XDEL}.
+ * <p>
+ * Every instance joins the group under its own consumer name, so any number of replicas can share a stream. Entries
+ * that fail, or whose consumer died before acknowledging them, stay in the pending-entries list; a periodic sweeper
+ * re-claims them with {@code XAUTOCLAIM} once they have been idle for {@code reclaim-min-idle} and moves them to
+ * {@code <stream>_dead_letter} after {@code max-deliveries} attempts. Backlog and pending counts are exported as
+ * gauges tagged with the stream name.
+ */
+public class RedisStreamDispatcher {
+
+    /** Processes one stream entry. Throwing leaves the entry pending so that it is retried by the sweeper. */
+    @FunctionalInterface
+    public interface Handler {
+        void handle(Map<String, String> body) throws Exception;
+    }
+
+    private static final Duration BLOCK_TIMEOUT = Duration.ofSeconds(5);
+    private static final long SETTLE_TIMEOUT_SECONDS = 10;
+    private static final String EXHAUSTED_CURSOR = "0-0";
+
+    private final Logger logger = org.slf4j.LoggerFactory.getLogger(RedisStreamDispatcher.class);
+    private final String stream;
+    private final String deadLetterStream;
+    private final String group;
+    private final String consumer;
+    private final RedisStreamProperties properties;
+    private final Handler handler;
+    private final RedisConnector redisConnector;
+    private StatefulRedisConnection<String, String> connection;
+    private RedisAsyncCommands<String, String> asyncCommands;
+    // The reader connection is parked in a blocking XREADGROUP most of the time, so the sweeper needs its own.
+    private StatefulRedisConnection<String, String> sweeperConnection;
+    private final ExecutorService readerExecutor;
+    private final ExecutorService handlerExecutor;
+    private final ScheduledExecutorService sweeperExecutor;
+    private final AtomicLong streamLength = new AtomicLong();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicLong oldestPendingAgeMs = new AtomicLong();
+    private final Counter reclaimedCounter;
+    private final Counter deadLetteredCounter;
+
+    public RedisStreamDispatcher(RedisConnector redisConnector, String stream, String group, String consumerPrefix,
+                                 RedisStreamProperties properties, MeterRegistry meterRegistry, Handler handler) {
+        this.stream = stream;
+        this.deadLetterStream = stream + "_dead_letter";
+        this.group = group;
+        this.consumer = consumerPrefix + "-" + hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.properties = properties;
+        this.handler = handler;
+        this.redisConnector = redisConnector;
+        this.connection = redisConnector.connect();
+        this.asyncCommands = connection.async();
+        this.sweeperConnection = redisConnector.connect();
+        this.readerExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, stream + "-dispatcher"));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.handlerExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getStartConcurrency()),
+                runnable -> new Thread(runnable, stream + "-handler-" + threadCount.incrementAndGet()));
+        this.sweeperExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, stream + "-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("vortex.stream.length", streamLength, AtomicLong::get)
+                .description("Entries in the stream, delivered or not")
+                .tag("stream", stream).register(meterRegistry);
+        Gauge.builder("vortex.stream.pending", pendingCount, AtomicLong::get)
+                .description("Entries delivered to a consumer but not yet acknowledged")
+                .tag("stream", stream).register(meterRegistry);
+        Gauge.builder("vortex.stream.lag", this, dispatcher -> dispatcher.streamLength.get() - dispatcher.pendingCount.get())
+                .description("Entries not yet delivered to any consumer")
+                .tag("stream", stream).register(meterRegistry);
+        Gauge.builder("vortex.stream.pending.oldest.age", oldestPendingAgeMs, AtomicLong::get)
+                .description("Age of the oldest unacknowledged entry")
+                .baseUnit("milliseconds")
+                .tag("stream", stream).register(meterRegistry);
+        this.reclaimedCounter = Counter.builder("vortex.stream.reclaimed")
+                .tag("stream", stream).register(meterRegistry);
+        this.deadLetteredCounter = Counter.builder("vortex.stream.dead.lettered")
+                .tag("stream", stream).register(meterRegistry);
+    }
+
+    private static String hostName() {
+        String hostName = System.getenv("HOSTNAME");
+        if (hostName != null && !hostName.isBlank()) {
+            return hostName;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown-host";
+        }
+    }
+
+    public void start() {
+        initializeStreamGroup();
+        logger.info("Consuming {} as {} in group {}", stream, consumer, group);
+        readerExecutor.submit(this::run);
+        long intervalMs = properties.getReclaimInterval().toMillis();
+        sweeperExecutor.scheduleWithFixedDelay(this::sweep, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        readerExecutor.shutdownNow();
+        sweeperExecutor.shutdownNow();
+        handlerExecutor.shutdownNow();
+        removeConsumerIfIdle();
+        if (connection != null) {
+            connection.close();
+        }
+        if (sweeperConnection != null) {
+            sweeperConnection.close();
+        }
+    }
+
+    /**
+     * Leaves the group so consumer names of past instances do not pile up. A consumer that still owns pending
+     * entries is kept, because deleting it would drop them from the pending-entries list; the sweeper of another
+     * instance will claim them.
+     */
+    private void removeConsumerIfIdle() {
+        try {
+            List<PendingMessage> owned = sweeperConnection.sync().xpending(stream, Consumer.from(group, consumer),
+                    Range.create("-", "+"), Limit.from(1));
+            if (owned.isEmpty()) {
+                sweeperConnection.sync().xgroupDelconsumer(stream, Consumer.from(group, consumer));
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to remove consumer {} from group {}: {}", consumer, group, e.getMessage());
+        }
+    }
+
+    private void initializeStreamGroup() {
+        try {
+            connection.sync().xgroupCreate(XReadArgs.StreamOffset.from(stream, "0"), group, XGroupCreateArgs.Builder.mkstream());
+            logger.info("Created Redis stream group: {} for stream: {}", group, stream);
+        } catch (Exception e) {
+            if (e.getMessage() != null && e.getMessage().contains("BUSYGROUP")) {
+                logger.info("Redis stream group already exists: {} for stream: {}", group, stream);
+            } else {
+                logger.warn("Failed to create Redis stream group: {} for stream: {}, error: {}", group, stream, e.getMessage());
+            }
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<StreamMessage<String, String>> batch = asyncCommands.xreadgroup(
+                        Consumer.from(group, consumer),
+                        XReadArgs.Builder.block(BLOCK_TIMEOUT).count(properties.getBatchSize()),
+                        XReadArgs.StreamOffset.lastConsumed(stream)
+                ).get();
+                if (batch == null || batch.isEmpty()) {
+                    continue;
+                }
+                dispatch(batch, asyncCommands);
+            } catch (Exception e) {
+                if (e instanceof InterruptedException || e.getCause() instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                logger.error("{} stream processing failed, attempting to recover", stream, e);
+                rebuildRedisConnection();
+            }
+        }
+    }
+
+    private void dispatch(List<StreamMessage<String, String>> batch, RedisAsyncCommands<String, String> commands)
+            throws Exception {
+        List<CompletableFuture<Boolean>> outcomes = new ArrayList<>(batch.size());
+        for (StreamMessage<String, String> message : batch) {
+            outcomes.add(CompletableFuture.supplyAsync(() -> {
+                if (message.getBody() == null || message.getBody().isEmpty()) {
+                    // Entry was deleted from the stream while pending; only the acknowledgement is left to do.
+                    return true;
+                }
+                try {
+                    handler.handle(message.getBody());
+                    return true;
+                } catch (Exception e) {
+                    logger.error("Failed to dispatch {} entry {}, leaving it pending for retry", stream, message.getId(), e);
+                    return false;
+                }
+            }, handlerExecutor));
+        }
+        CompletableFuture.allOf(outcomes.toArray(new CompletableFuture[0])).get();
+
+        List<String> settled = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (outcomes.get(i).get()) {
+                settled.add(batch.get(i).getId());
+            }
+        }
+        if (settled.isEmpty()) {
+            return;
+        }
+        String[] ids = settled.toArray(new String[0]);
+        awaitAll(commands.xack(stream, group, ids), commands.xdel(stream, ids));
+        logger.debug("Dispatched {} of {} {} entries", ids.length, batch.size(), stream);
+    }
+
+    /**
+     * Dead-letters entries that exhausted their deliveries, re-claims the remaining entries that have been idle for
+     * too long (their consumer crashed, or their dispatch failed) and refreshes the lag gauges.
+     */
+    private void sweep() {
+        try {
+            RedisAsyncCommands<String, String> commands = sweeperConnection.async();
+            Duration minIdle = properties.getReclaimMinIdle();
+            // Page through the whole PEL so exhausted entries past the first page are dead-lettered
+            // before XAUTOCLAIM below would hand them out again.
+            Range<String> page = Range.create("-", "+");
+            List<PendingMessage> stale;
+            do {
+                stale = commands.xpending(stream, XPendingArgs.Builder
+                        .xpending(group, page, Limit.from(properties.getBatchSize()))
+                        .idle(minIdle)).get();
+                List<PendingMessage> exhausted = new ArrayList<>();
+                for (PendingMessage pending : stale) {
+                    if (pending.getRedeliveryCount() >= properties.getMaxDeliveries()) {
+                        exhausted.add(pending);
+                    }
+                }
+                if (!exhausted.isEmpty()) {
+                    deadLetter(exhausted, commands);
+                }
+                if (!stale.isEmpty()) {
+                    page = Range.from(Range.Boundary.excluding(stale.get(stale.size() - 1).getId()),
+                            Range.Boundary.unbounded());
+                }
+            } while (stale.size() >= properties.getBatchSize() && !Thread.currentThread().isInterrupted());
+
+            String cursor = "0";
+            do {
+                ClaimedMessages<String, String> claimed = commands.xautoclaim(stream, XAutoClaimArgs.Builder
+                        .<String>xautoclaim(Consumer.from(group, consumer), minIdle, cursor)
+                        .count(properties.getBatchSize())).get();
+                if (!claimed.getMessages().isEmpty()) {
+                    logger.info("Reclaimed {} idle {} entries", claimed.getMessages().size(), stream);
+                    reclaimedCounter.increment(claimed.getMessages().size());
+                    dispatch(claimed.getMessages(), commands);
+                }
+                cursor = claimed.getId();
+            } while (cursor != null && !EXHAUSTED_CURSOR.equals(cursor) && !Thread.currentThread().isInterrupted());
+
+            refreshGauges(commands);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Sweeping pending {} entries failed: {}", stream, e.getMessage());
+        }
+    }
+
+    private void deadLetter(List<PendingMessage> exhausted, RedisAsyncCommands<String, String> commands) throws Exception {
+        List<RedisFuture<?>> moves = new ArrayList<>();
+        String[] ids = new String[exhausted.size()];
+        for (int i = 0; i < exhausted.size(); i++) {
+            PendingMessage pending = exhausted.get(i);
+            ids[i] = pending.getId();
+            List<StreamMessage<String, String>> entry = commands.xrange(stream, Range.create(pending.getId(), pending.getId())).get();
+            Map<String, String> body = new HashMap<>();
+            if (!entry.isEmpty() && entry.get(0).getBody() != null) {
+                body.putAll(entry.get(0).getBody());
+            }
+            body.put("source_id", pending.getId());
+            body.put("deliveries", Long.toString(pending.getRedeliveryCount()));
+            moves.add(commands.xadd(deadLetterStream, body));
+            logger.error("Moving {} entry {} to {} after {} deliveries",
+                    stream, pending.getId(), deadLetterStream, pending.getRedeliveryCount());
+        }
+        moves.add(commands.xack(stream, group, ids));
+        moves.add(commands.xdel(stream, ids));
+        awaitAll(moves.toArray(new RedisFuture[0]));
+        deadLetteredCounter.increment(ids.length);
+    }
+
+    private void refreshGauges(RedisAsyncCommands<String, String> commands) throws Exception {
+        RedisFuture<Long> length = commands.xlen(stream);
+        RedisFuture<PendingMessages> summary = commands.xpending(stream, group);
+        awaitAll(length, summary);
+        streamLength.set(length.get());
+        PendingMessages pending = summary.get();
+        pendingCount.set(pending.getCount());
+        long oldestAge = 0;
+        if (pending.getCount() > 0 && pending.getMessageIds().getLower().getValue() != null) {
+            // Stream IDs start with the millisecond timestamp at which the entry was added.
+            String oldestId = pending.getMessageIds().getLower().getValue();
+            oldestAge = Math.max(0, System.currentTimeMillis() - Long.parseLong(oldestId.substring(0, oldestId.indexOf('-'))));
+        }
+        oldestPendingAgeMs.set(oldestAge);
+    }
+
+    private void awaitAll(RedisFuture<?>... futures) {
+        if (!LettuceFutures.awaitAll(SETTLE_TIMEOUT_SECONDS, TimeUnit.SECONDS, futures)) {
+            throw new IllegalStateException("Timed out waiting for Redis to settle " + stream + " entries");
+        }
+    }
+
+    private synchronized void rebuildRedisConnection() {
+        try {
+            if (connection != null && connection.isOpen()) {
+                connection.close();
+            }
+        } catch (Exception closeException) {
+            logger.warn("Failed to close existing Redis connection during rebuild", closeException);
+        }
+        try {
+            connection = redisConnector.connect();
+            asyncCommands = connection.async();
+        } catch (Exception connectionException) {
+            logger.error("Failed to rebuild Redis connection", connectionException);
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
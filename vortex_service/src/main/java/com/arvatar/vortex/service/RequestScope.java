@@ -0,0 +1,99 @@
+package com.arvatar.vortex.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline and cancellation state of a single dialogue request, threaded from the transport layer down to the
+ * embedding, database and LLM calls so that work for an abandoned or expired request stops instead of running to
+ * completion.
+ */
+public class RequestScope {
+
+    private final long deadlineNanos;
+    private final boolean hasDeadline;
+    private final CopyOnWriteArrayList<Runnable> cancelHooks = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    private RequestScope(long deadlineNanos, boolean hasDeadline) {
+        this.deadlineNanos = deadlineNanos;
+        this.hasDeadline = hasDeadline;
+    }
+
+    public static RequestScope unbounded() {
+        return new RequestScope(0, false);
+    }
+
+    public static RequestScope withTimeout(long timeout, TimeUnit unit) {
+        return new RequestScope(System.nanoTime() + unit.toNanos(timeout), true);
+    }
+
+    /**
+     * Marks the request as cancelled and runs every registered hook, e.g. to abort an in-flight HTTP exchange or JDBC
+     * statement.
+     */
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        for (Runnable hook : cancelHooks) {
+            try {
+                hook.run();
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers a hook that runs when the request is cancelled; runs it immediately if that already happened.
+     *
+     * @return a handle that removes the hook once the guarded call has finished
+     */
+    public Runnable onCancel(Runnable hook) {
+        cancelHooks.add(hook);
+        if (cancelled) {
+            hook.run();
+        }
+        return () -> cancelHooks.remove(hook);
+    }
+
+    public Optional<Duration> remaining() {
+        if (!hasDeadline) {
+            return Optional.empty();
+        }
+        return Optional.of(Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime())));
+    }
+
+    /**
+     * Remaining time rounded up to whole seconds, for APIs such as {@code Statement.setQueryTimeout} where
+     * {@code 0} means "no limit".
+     */
+    public int remainingSeconds() {
+        return remaining()
+                .map(duration -> (int) Math.max(1, (duration.toMillis() + 999) / 1000))
+                .orElse(0);
+    }
+
+    public void checkActive() {
+        if (hasDeadline && System.nanoTime() - deadlineNanos >= 0) {
+            throw new DeadlineExceededException("Request deadline exceeded");
+        }
+        if (cancelled) {
+            throw new CancellationException("Request cancelled by client");
+        }
+    }
+
+    public static class DeadlineExceededException extends RuntimeException {
+        public DeadlineExceededException(String message) {
+            super(message);
+        }
+    }
+}
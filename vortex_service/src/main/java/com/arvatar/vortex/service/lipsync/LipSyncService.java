@@ -0,0 +1,57 @@
+package com.arvatar.vortex.service.lipsync;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Owns the shared {@link PhonemeLexicon} and hands out a {@link LipSyncStage} per answer. The bundled seed lexicon
+ * is always loaded; {@code vortex.dialogue.lipsync.lexicon-path} can point at a full cmudict to extend it.
+ */
+@Service
+public class LipSyncService {
+
+    private static final String SEED_LEXICON = "/lipsync/seed-lexicon.dict";
+    private final Logger logger = org.slf4j.LoggerFactory.getLogger(LipSyncService.class);
+    private final PhonemeLexicon lexicon = new PhonemeLexicon();
+    private final String lexiconPath;
+
+    public LipSyncService(@Value("${vortex.dialogue.lipsync.lexicon-path:}") String lexiconPath) {
+        this.lexiconPath = lexiconPath;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        try (InputStream seed = LipSyncService.class.getResourceAsStream(SEED_LEXICON)) {
+            if (seed == null) {
+                throw new IllegalStateException("Missing lip-sync seed lexicon " + SEED_LEXICON);
+            }
+            lexicon.load(new BufferedReader(new InputStreamReader(seed, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load lip-sync seed lexicon", e);
+        }
+        if (lexiconPath != null && !lexiconPath.isBlank()) {
+            // cmudict ships as ISO-8859-1; its entries are plain ASCII so this also reads UTF-8 copies.
+            try (BufferedReader reader = Files.newBufferedReader(Path.of(lexiconPath), StandardCharsets.ISO_8859_1)) {
+                lexicon.load(reader);
+            } catch (IOException e) {
+                logger.warn("Could not load lip-sync lexicon {}, using the seed lexicon only: {}",
+                        lexiconPath, e.getMessage());
+            }
+        }
+        logger.info("Lip-sync lexicon loaded with {} words", lexicon.size());
+    }
+
+    public LipSyncStage newStage() {
+        return new LipSyncStage(lexicon);
+    }
+}
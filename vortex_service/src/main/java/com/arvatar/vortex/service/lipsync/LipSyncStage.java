@@ -0,0 +1,116 @@
+package com.arvatar.vortex.service.lipsync;
+
+import voxel.common.v1.Types.LipSync;
+import voxel.common.v1.Types.PhonemeMark;
+import voxel.common.v1.Types.Viseme;
+import voxel.common.v1.Types.WordPiece;
+
+/**
+ * Turns the transcript of one answer, fed in as streamed deltas, into incremental {@link LipSync} batches. A word is
+ * only emitted once a delimiter shows it is complete, so words split across deltas are buffered; timestamps are
+ * estimated from per-phoneme durations and accumulate from the start of the utterance. Not thread-safe: use one
+ * stage per answer.
+ */
+public class LipSyncStage {
+
+    static final String SILENCE = "sil";
+    private static final long SHORT_PAUSE_MS = 150;
+    private static final long LONG_PAUSE_MS = 300;
+
+    private final PhonemeLexicon lexicon;
+    private final StringBuilder pendingWord = new StringBuilder();
+    private byte[] phonemeBuffer = new byte[64];
+    private long cursorMs;
+
+    LipSyncStage(PhonemeLexicon lexicon) {
+        this.lexicon = lexicon;
+    }
+
+    /**
+     * Consumes a transcript delta and returns the marks for the words it completed, or {@code null} if none.
+     */
+    public LipSync accept(String delta) {
+        LipSync.Builder batch = null;
+        for (int i = 0; i < delta.length(); i++) {
+            char c = delta.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '\'') {
+                pendingWord.append(c);
+                continue;
+            }
+            batch = emitPendingWord(batch);
+            long pause = pauseAfter(c);
+            if (pause > 0) {
+                batch = emitRest(batch, pause);
+            }
+        }
+        return batch == null ? null : batch.build();
+    }
+
+    /**
+     * Emits whatever word is still buffered at the end of the answer, followed by a closing rest mark.
+     */
+    public LipSync flush() {
+        LipSync.Builder batch = emitPendingWord(null);
+        batch = emitRest(batch, LONG_PAUSE_MS);
+        return batch.build();
+    }
+
+    public long elapsedMs() {
+        return cursorMs;
+    }
+
+    private LipSync.Builder emitPendingWord(LipSync.Builder batch) {
+        if (pendingWord.length() == 0) {
+            return batch;
+        }
+        int required = lexicon.maxPhonemes(pendingWord.length());
+        if (phonemeBuffer.length < required) {
+            phonemeBuffer = new byte[required];
+        }
+        int count = lexicon.lookup(pendingWord, phonemeBuffer);
+        if (batch == null) {
+            batch = LipSync.newBuilder();
+        }
+        long wordStart = cursorMs;
+        for (int i = 0; i < count; i++) {
+            byte code = phonemeBuffer[i];
+            long end = cursorMs + VisemeMap.durationMs(code);
+            batch.addPhonemes(PhonemeMark.newBuilder()
+                    .setPhoneme(PhonemeLexicon.SYMBOLS[code])
+                    .setStartMs(cursorMs)
+                    .setEndMs(end)
+                    .setViseme(VisemeMap.viseme(code)));
+            cursorMs = end;
+        }
+        batch.addWords(WordPiece.newBuilder()
+                .setText(pendingWord.toString())
+                .setStartMs(wordStart)
+                .setEndMs(cursorMs));
+        pendingWord.setLength(0);
+        return batch;
+    }
+
+    private LipSync.Builder emitRest(LipSync.Builder batch, long durationMs) {
+        if (batch == null) {
+            batch = LipSync.newBuilder();
+        }
+        batch.addPhonemes(PhonemeMark.newBuilder()
+                .setPhoneme(SILENCE)
+                .setStartMs(cursorMs)
+                .setEndMs(cursorMs + durationMs)
+                .setViseme(Viseme.VISEME_MBG));
+        cursorMs += durationMs;
+        return batch;
+    }
+
+    private static long pauseAfter(char c) {
+        switch (c) {
+            case '.': case '!': case '?': case '\n':
+                return LONG_PAUSE_MS;
+            case ',': case ';': case ':':
+                return SHORT_PAUSE_MS;
+            default:
+                return 0;
+        }
+    }
+}
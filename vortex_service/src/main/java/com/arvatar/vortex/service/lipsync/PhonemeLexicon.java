@@ -0,0 +1,251 @@
+package com.arvatar.vortex.service.lipsync;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Grapheme-to-phoneme lexicon stored as a trie in flat primitive arrays (first-child / next-sibling layout), with
+ * every pronunciation packed into a single byte pool of ARPAbet symbol codes. A full cmudict (~130k words) fits in a
+ * few megabytes and a lookup is a handful of array reads per character, with no per-word objects on the heap.
+ * <p>
+ * Words that are not in the lexicon are spelled out with simple letter-to-sound rules, which is plenty to pick a
+ * mouth shape.
+ */
+public class PhonemeLexicon {
+
+    /** ARPAbet phonemes without stress markers; a phoneme's code is its index in this array. */
+    static final String[] SYMBOLS = {
+            "AA", "AE", "AH", "AO", "AW", "AY", "B", "CH", "D", "DH", "EH", "ER", "EY", "F", "G", "HH", "IH", "IY",
+            "JH", "K", "L", "M", "N", "NG", "OW", "OY", "P", "R", "S", "SH", "T", "TH", "UH", "UW", "V", "W", "Y",
+            "Z", "ZH"
+    };
+    private static final Map<String, Byte> SYMBOL_CODES = new HashMap<>();
+    static {
+        for (int i = 0; i < SYMBOLS.length; i++) {
+            SYMBOL_CODES.put(SYMBOLS[i], (byte) i);
+        }
+    }
+
+    private char[] labels = new char[1024];
+    private int[] firstChild = new int[1024];
+    private int[] nextSibling = new int[1024];
+    private int[] pronunciationOffset = new int[1024];
+    private int nodeCount = 1;
+    private byte[] phonemePool = new byte[4096];
+    private int poolSize;
+    private int wordCount;
+    private int longestPronunciation;
+
+    public PhonemeLexicon() {
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        Arrays.fill(pronunciationOffset, -1);
+    }
+
+    /**
+     * Loads entries in cmudict format ({@code WORD  PH1 PH2 ...}). Comment lines start with {@code ;;;}; alternate
+     * pronunciations such as {@code WORD(2)} are ignored in favour of the first one.
+     */
+    public void load(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || line.startsWith(";;;")) {
+                continue;
+            }
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length < 2 || parts[0].endsWith(")")) {
+                continue;
+            }
+            byte[] phonemes = new byte[parts.length - 1];
+            boolean valid = true;
+            for (int i = 1; i < parts.length; i++) {
+                Byte code = SYMBOL_CODES.get(stripStress(parts[i]));
+                if (code == null) {
+                    valid = false;
+                    break;
+                }
+                phonemes[i - 1] = code;
+            }
+            if (valid) {
+                add(parts[0], phonemes);
+            }
+        }
+    }
+
+    public int size() {
+        return wordCount;
+    }
+
+    private void add(String word, byte[] phonemes) {
+        int node = 0;
+        String normalized = word.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < normalized.length(); i++) {
+            node = childOrCreate(node, normalized.charAt(i));
+        }
+        if (pronunciationOffset[node] >= 0) {
+            return;
+        }
+        ensurePoolCapacity(poolSize + phonemes.length + 1);
+        pronunciationOffset[node] = poolSize;
+        phonemePool[poolSize++] = (byte) phonemes.length;
+        System.arraycopy(phonemes, 0, phonemePool, poolSize, phonemes.length);
+        poolSize += phonemes.length;
+        wordCount++;
+        longestPronunciation = Math.max(longestPronunciation, phonemes.length);
+    }
+
+    private int childOrCreate(int parent, char label) {
+        int child = firstChild[parent];
+        while (child >= 0) {
+            if (labels[child] == label) {
+                return child;
+            }
+            child = nextSibling[child];
+        }
+        ensureNodeCapacity(nodeCount + 1);
+        int created = nodeCount++;
+        labels[created] = label;
+        nextSibling[created] = firstChild[parent];
+        firstChild[parent] = created;
+        return created;
+    }
+
+    /**
+     * Room {@link #lookup} needs for a word of {@code wordLength} characters: the longest pronunciation in the
+     * lexicon, or two codes per letter for the letter-to-sound rules, whichever is more. Entries such as {@code www}
+     * are far longer than their spelling.
+     */
+    public int maxPhonemes(int wordLength) {
+        return Math.max(longestPronunciation, wordLength * 2);
+    }
+
+    /**
+     * Appends the phoneme codes of {@code word} to {@code out} and returns how many were written. {@code out} must
+     * have room for at least {@link #maxPhonemes maxPhonemes(word.length())} codes.
+     */
+    public int lookup(CharSequence word, byte[] out) {
+        int node = 0;
+        for (int i = 0; i < word.length() && node >= 0; i++) {
+            char c = Character.toLowerCase(word.charAt(i));
+            int child = firstChild[node];
+            while (child >= 0 && labels[child] != c) {
+                child = nextSibling[child];
+            }
+            node = child;
+        }
+        if (node >= 0 && pronunciationOffset[node] >= 0) {
+            int offset = pronunciationOffset[node];
+            int length = phonemePool[offset];
+            System.arraycopy(phonemePool, offset + 1, out, 0, length);
+            return length;
+        }
+        return letterToSound(word, out);
+    }
+
+    private static int letterToSound(CharSequence word, byte[] out) {
+        String w = word.toString().toLowerCase(Locale.ROOT).replace("'", "");
+        int count = 0;
+        int i = 0;
+        while (i < w.length()) {
+            String digraph = i + 1 < w.length() ? w.substring(i, i + 2) : "";
+            String[] mapped = DIGRAPHS.get(digraph);
+            if (mapped != null) {
+                i += 2;
+            } else {
+                mapped = LETTERS.get(w.charAt(i));
+                i++;
+            }
+            if (mapped == null) {
+                continue;
+            }
+            for (String symbol : mapped) {
+                out[count++] = SYMBOL_CODES.get(symbol);
+            }
+        }
+        return count;
+    }
+
+    private static final Map<String, String[]> DIGRAPHS = new HashMap<>();
+    private static final Map<Character, String[]> LETTERS = new HashMap<>();
+    static {
+        DIGRAPHS.put("th", new String[]{"TH"});
+        DIGRAPHS.put("sh", new String[]{"SH"});
+        DIGRAPHS.put("ch", new String[]{"CH"});
+        DIGRAPHS.put("ph", new String[]{"F"});
+        DIGRAPHS.put("ng", new String[]{"NG"});
+        DIGRAPHS.put("ck", new String[]{"K"});
+        DIGRAPHS.put("qu", new String[]{"K", "W"});
+        DIGRAPHS.put("wh", new String[]{"W"});
+        DIGRAPHS.put("ee", new String[]{"IY"});
+        DIGRAPHS.put("ea", new String[]{"IY"});
+        DIGRAPHS.put("oo", new String[]{"UW"});
+        DIGRAPHS.put("ou", new String[]{"AW"});
+        DIGRAPHS.put("ow", new String[]{"OW"});
+        DIGRAPHS.put("oi", new String[]{"OY"});
+        DIGRAPHS.put("oy", new String[]{"OY"});
+        DIGRAPHS.put("ai", new String[]{"EY"});
+        DIGRAPHS.put("ay", new String[]{"EY"});
+        DIGRAPHS.put("oa", new String[]{"OW"});
+        DIGRAPHS.put("ie", new String[]{"IY"});
+        DIGRAPHS.put("er", new String[]{"ER"});
+        DIGRAPHS.put("ir", new String[]{"ER"});
+        DIGRAPHS.put("ur", new String[]{"ER"});
+
+        LETTERS.put('a', new String[]{"AE"});
+        LETTERS.put('b', new String[]{"B"});
+        LETTERS.put('c', new String[]{"K"});
+        LETTERS.put('d', new String[]{"D"});
+        LETTERS.put('e', new String[]{"EH"});
+        LETTERS.put('f', new String[]{"F"});
+        LETTERS.put('g', new String[]{"G"});
+        LETTERS.put('h', new String[]{"HH"});
+        LETTERS.put('i', new String[]{"IH"});
+        LETTERS.put('j', new String[]{"JH"});
+        LETTERS.put('k', new String[]{"K"});
+        LETTERS.put('l', new String[]{"L"});
+        LETTERS.put('m', new String[]{"M"});
+        LETTERS.put('n', new String[]{"N"});
+        LETTERS.put('o', new String[]{"AA"});
+        LETTERS.put('p', new String[]{"P"});
+        LETTERS.put('q', new String[]{"K"});
+        LETTERS.put('r', new String[]{"R"});
+        LETTERS.put('s', new String[]{"S"});
+        LETTERS.put('t', new String[]{"T"});
+        LETTERS.put('u', new String[]{"AH"});
+        LETTERS.put('v', new String[]{"V"});
+        LETTERS.put('w', new String[]{"W"});
+        LETTERS.put('x', new String[]{"K", "S"});
+        LETTERS.put('y', new String[]{"Y"});
+        LETTERS.put('z', new String[]{"Z"});
+    }
+
+    private static String stripStress(String phoneme) {
+        char last = phoneme.charAt(phoneme.length() - 1);
+        return Character.isDigit(last) ? phoneme.substring(0, phoneme.length() - 1) : phoneme;
+    }
+
+    private void ensureNodeCapacity(int required) {
+        if (required <= labels.length) {
+            return;
+        }
+        int capacity = Math.max(required, labels.length * 2);
+        int previous = labels.length;
+        labels = Arrays.copyOf(labels, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        pronunciationOffset = Arrays.copyOf(pronunciationOffset, capacity);
+        Arrays.fill(firstChild, previous, capacity, -1);
+        Arrays.fill(nextSibling, previous, capacity, -1);
+        Arrays.fill(pronunciationOffset, previous, capacity, -1);
+    }
+
+    private void ensurePoolCapacity(int required) {
+        if (required > phonemePool.length) {
+            phonemePool = Arrays.copyOf(phonemePool, Math.max(required, phonemePool.length * 2));
+        }
+    }
+}
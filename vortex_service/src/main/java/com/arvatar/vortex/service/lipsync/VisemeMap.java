@@ -0,0 +1,75 @@
+package com.arvatar.vortex.service.lipsync;
+
+import voxel.common.v1.Types.Viseme;
+
+/**
+ * ARPAbet phoneme to {@link Viseme} mapping plus rough per-phoneme durations, indexed by the phoneme codes used in
+ * {@link PhonemeLexicon}.
+ */
+final class VisemeMap {
+
+    static final long VOWEL_MS = 90;
+    static final long CONSONANT_MS = 60;
+
+    private static final Viseme[] VISEMES = new Viseme[PhonemeLexicon.SYMBOLS.length];
+    private static final long[] DURATIONS = new long[PhonemeLexicon.SYMBOLS.length];
+
+    static {
+        for (int code = 0; code < PhonemeLexicon.SYMBOLS.length; code++) {
+            String symbol = PhonemeLexicon.SYMBOLS[code];
+            VISEMES[code] = visemeFor(symbol);
+            DURATIONS[code] = isVowel(symbol) ? VOWEL_MS : CONSONANT_MS;
+        }
+    }
+
+    private VisemeMap() {
+    }
+
+    static Viseme viseme(byte code) {
+        return VISEMES[code];
+    }
+
+    static long durationMs(byte code) {
+        return DURATIONS[code];
+    }
+
+    private static boolean isVowel(String symbol) {
+        char first = symbol.charAt(0);
+        return first == 'A' || first == 'E' || first == 'I' || first == 'O' || first == 'U';
+    }
+
+    private static Viseme visemeFor(String symbol) {
+        switch (symbol) {
+            case "P": case "B": case "M":
+                return Viseme.VISEME_PP;
+            case "F": case "V":
+                return Viseme.VISEME_FV;
+            case "TH": case "DH":
+                return Viseme.VISEME_TH;
+            case "D": case "T": case "N": case "L":
+                return Viseme.VISEME_DNT;
+            case "K": case "G": case "NG":
+                return Viseme.VISEME_KG;
+            case "CH": case "JH": case "SH": case "ZH":
+                return Viseme.VISEME_CHJSH;
+            case "S": case "Z":
+                return Viseme.VISEME_SZ;
+            case "AA": case "AE": case "AH": case "AY": case "AW": case "HH":
+                return Viseme.VISEME_AA;
+            case "EH": case "EY":
+                return Viseme.VISEME_EE;
+            case "IH": case "IY": case "Y":
+                return Viseme.VISEME_IH;
+            case "AO": case "OW": case "OY":
+                return Viseme.VISEME_OH;
+            case "UH": case "UW":
+                return Viseme.VISEME_UH;
+            case "R": case "ER":
+                return Viseme.VISEME_R;
+            case "W":
+                return Viseme.VISEME_WQ;
+            default:
+                return Viseme.VISEME_MBG;
+        }
+    }
+}
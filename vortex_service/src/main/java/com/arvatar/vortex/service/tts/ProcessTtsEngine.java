@@ -0,0 +1,59 @@
+package com.arvatar.vortex.service.tts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Runs a locally installed synthesizer once per sentence, writing the text to its stdin and reading raw PCM from
+ * its stdout, e.g. {@code piper --model en_US-lessac-medium.onnx --output-raw} or
+ * {@code espeak-ng --stdin --stdout} piped through a WAV header strip. The command must emit headerless s16le mono
+ * PCM at the configured sample rate.
+ */
+public class ProcessTtsEngine implements TtsEngine {
+
+    private final List<String> command;
+    private final int sampleRate;
+
+    public ProcessTtsEngine(List<String> command, int sampleRate) {
+        if (command.isEmpty()) {
+            throw new IllegalArgumentException("vortex.dialogue.tts.command must be set for the process TTS engine");
+        }
+        this.command = List.copyOf(command);
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public int sampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void synthesize(String sentence, PcmSink sink) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            try (OutputStream stdin = process.getOutputStream()) {
+                stdin.write(sentence.getBytes(StandardCharsets.UTF_8));
+                stdin.write('\n');
+            }
+            byte[] buffer = new byte[8192];
+            try (InputStream stdout = process.getInputStream()) {
+                int read;
+                while ((read = stdout.read(buffer)) != -1) {
+                    sink.write(buffer, read);
+                }
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("TTS command exited with code " + exitCode);
+            }
+        } finally {
+            // Also reached when the sink is interrupted because the request was cancelled.
+            process.destroyForcibly();
+        }
+    }
+}
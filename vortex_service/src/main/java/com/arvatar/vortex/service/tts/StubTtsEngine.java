@@ -0,0 +1,31 @@
+package com.arvatar.vortex.service.tts;
+
+/**
+ * Produces silence roughly as long as the sentence would take to speak, so the audio path can be exercised on
+ * machines without a speech synthesizer installed.
+ */
+public class StubTtsEngine implements TtsEngine {
+
+    private static final int MILLIS_PER_CHARACTER = 60;
+    private final int sampleRate;
+
+    public StubTtsEngine(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public int sampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void synthesize(String sentence, PcmSink sink) throws InterruptedException {
+        long totalBytes = (long) sentence.length() * MILLIS_PER_CHARACTER * sampleRate / 1000 * 2;
+        byte[] silence = new byte[4096];
+        while (totalBytes > 0) {
+            int length = (int) Math.min(silence.length, totalBytes);
+            sink.write(silence, length);
+            totalBytes -= length;
+        }
+    }
+}
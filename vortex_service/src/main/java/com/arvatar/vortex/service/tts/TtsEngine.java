@@ -0,0 +1,22 @@
+package com.arvatar.vortex.service.tts;
+
+import java.io.IOException;
+
+/**
+ * Synthesizes speech for one sentence at a time as signed 16-bit little-endian mono PCM at {@link #sampleRate()}.
+ */
+public interface TtsEngine {
+
+    int sampleRate();
+
+    /**
+     * Synthesizes {@code sentence}, passing PCM bytes to {@code sink} as they become available.
+     */
+    void synthesize(String sentence, PcmSink sink) throws IOException, InterruptedException;
+
+    @FunctionalInterface
+    interface PcmSink {
+        /** May block when the consumer is behind; that is how backpressure reaches the engine. */
+        void write(byte[] buffer, int length) throws InterruptedException;
+    }
+}
@@ -0,0 +1,64 @@
+package com.arvatar.vortex.service.tts;
+
+import com.arvatar.vortex.service.RequestScope;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the configured {@link TtsEngine} and hands out a {@link TtsStage} per answer. Synthesis runs on a fixed pool
+ * sized like the generation admission limit, so every admitted answer can be spoken concurrently.
+ */
+@Service
+public class TtsService {
+
+    private final Logger logger = org.slf4j.LoggerFactory.getLogger(TtsService.class);
+    private final TtsEngine engine;
+    private final ExecutorService synthesisExecutor;
+    private final int frameBytes;
+    private final int bufferFrames;
+
+    public TtsService(@Value("${vortex.dialogue.tts.engine:stub}") String engineName,
+                      @Value("${vortex.dialogue.tts.command:}") String command,
+                      @Value("${vortex.dialogue.tts.sample-rate:22050}") int sampleRate,
+                      @Value("${vortex.dialogue.tts.frame-ms:100}") int frameMillis,
+                      @Value("${vortex.dialogue.tts.buffer-frames:50}") int bufferFrames,
+                      @Value("${vortex.dialogue.max-inflight-generations:8}") int maxConcurrentSyntheses) {
+        if ("process".equalsIgnoreCase(engineName)) {
+            List<String> commandLine = Arrays.stream(command.trim().split("\\s+"))
+                    .filter(part -> !part.isEmpty())
+                    .collect(Collectors.toList());
+            this.engine = new ProcessTtsEngine(commandLine, sampleRate);
+        } else {
+            this.engine = new StubTtsEngine(sampleRate);
+        }
+        // 16-bit mono: two bytes per sample.
+        this.frameBytes = Math.max(2, sampleRate * frameMillis / 1000 * 2);
+        this.bufferFrames = Math.max(1, bufferFrames);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.synthesisExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentSyntheses), runnable -> {
+            Thread thread = new Thread(runnable, "tts-synthesis-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("TTS engine {} at {} Hz, {} byte frames, {} frame buffer",
+                engine.getClass().getSimpleName(), sampleRate, frameBytes, this.bufferFrames);
+    }
+
+    public TtsStage newStage(RequestScope scope) {
+        return new TtsStage(engine, synthesisExecutor, scope, frameBytes, bufferFrames);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synthesisExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,166 @@
+package com.arvatar.vortex.service.tts;
+
+import com.arvatar.vortex.service.RequestScope;
+import org.slf4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Speaks one answer while it is still being generated. Transcript deltas are split into sentences, each completed
+ * sentence is handed to a synthesis worker, and the worker's PCM is cut into fixed-size frames placed on a bounded
+ * queue. The request thread drains ready frames after every delta, so the first frame goes out as soon as the first
+ * sentence is synthesized; when the queue is full the worker blocks, which stops the synthesizer from running ahead
+ * of a slow client. Not thread-safe: use one stage per answer from the request thread.
+ */
+public class TtsStage implements AutoCloseable {
+
+    private static final String END_OF_TEXT = "";
+    private static final byte[] END_OF_AUDIO = new byte[0];
+    private static final long POLL_MILLIS = 100;
+
+    private final Logger logger = org.slf4j.LoggerFactory.getLogger(TtsStage.class);
+    private final TtsEngine engine;
+    private final ExecutorService executor;
+    private final RequestScope scope;
+    private final int frameBytes;
+    private final StringBuilder pendingText = new StringBuilder();
+    private final BlockingQueue<String> sentences = new LinkedBlockingQueue<>();
+    private final BlockingQueue<byte[]> frames;
+    private Future<?> worker;
+
+    TtsStage(TtsEngine engine, ExecutorService executor, RequestScope scope, int frameBytes, int bufferFrames) {
+        this.engine = engine;
+        this.executor = executor;
+        this.scope = scope;
+        this.frameBytes = frameBytes;
+        this.frames = new ArrayBlockingQueue<>(bufferFrames);
+    }
+
+    /**
+     * Consumes a transcript delta, queues any sentences it completed for synthesis and passes every audio frame that
+     * is already available to {@code frameSink} without waiting for more.
+     */
+    public void accept(String delta, Consumer<byte[]> frameSink) {
+        pendingText.append(delta);
+        int sentenceStart = 0;
+        for (int i = 0; i < pendingText.length(); i++) {
+            char c = pendingText.charAt(i);
+            boolean boundary = c == '\n'
+                    || ((c == '.' || c == '!' || c == '?')
+                        && i + 1 < pendingText.length() && Character.isWhitespace(pendingText.charAt(i + 1)));
+            if (boundary) {
+                submit(pendingText.substring(sentenceStart, i + 1));
+                sentenceStart = i + 1;
+            }
+        }
+        pendingText.delete(0, sentenceStart);
+        drainReady(frameSink);
+    }
+
+    /**
+     * Synthesizes whatever text is left and blocks until every frame has been passed to {@code frameSink}. The last
+     * frame is padded with silence to the fixed frame size.
+     */
+    public void finish(Consumer<byte[]> frameSink) throws InterruptedException {
+        submit(pendingText.toString());
+        pendingText.setLength(0);
+        if (worker == null) {
+            return;
+        }
+        sentences.put(END_OF_TEXT);
+        while (true) {
+            scope.checkActive();
+            byte[] frame = frames.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (frame == END_OF_AUDIO) {
+                return;
+            }
+            if (frame != null) {
+                frameSink.accept(frame);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (worker != null) {
+            worker.cancel(true);
+        }
+    }
+
+    private void drainReady(Consumer<byte[]> frameSink) {
+        byte[] frame;
+        while ((frame = frames.peek()) != null && frame != END_OF_AUDIO) {
+            frameSink.accept(frames.poll());
+        }
+    }
+
+    private void submit(String sentence) {
+        String trimmed = sentence.trim();
+        if (trimmed.isEmpty()) {
+            return;
+        }
+        if (worker == null) {
+            worker = executor.submit(this::synthesizeQueuedSentences);
+        }
+        sentences.add(trimmed);
+    }
+
+    private void synthesizeQueuedSentences() {
+        Framer framer = new Framer();
+        try {
+            String sentence;
+            while (!(sentence = sentences.take()).equals(END_OF_TEXT)) {
+                try {
+                    engine.synthesize(sentence, framer);
+                } catch (java.io.IOException e) {
+                    logger.warn("Speech synthesis failed, skipping sentence: {}", e.getMessage());
+                }
+            }
+            framer.flush();
+            frames.put(END_OF_AUDIO);
+        } catch (InterruptedException e) {
+            // Cancelled by close(); nobody is draining the frames any more.
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Speech synthesis worker failed", e);
+            frames.clear();
+            frames.offer(END_OF_AUDIO);
+        }
+    }
+
+    /** Cuts the engine's PCM stream into fixed-size frames, carrying remainders across sentences. */
+    private class Framer implements TtsEngine.PcmSink {
+        private byte[] frame = new byte[frameBytes];
+        private int filled;
+
+        @Override
+        public void write(byte[] buffer, int length) throws InterruptedException {
+            int offset = 0;
+            while (offset < length) {
+                int copy = Math.min(length - offset, frameBytes - filled);
+                System.arraycopy(buffer, offset, frame, filled, copy);
+                filled += copy;
+                offset += copy;
+                if (filled == frameBytes) {
+                    frames.put(frame);
+                    frame = new byte[frameBytes];
+                    filled = 0;
+                }
+            }
+        }
+
+        void flush() throws InterruptedException {
+            if (filled > 0) {
+                frames.put(frame);
+                frame = new byte[frameBytes];
+                filled = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.arvatar.vortex.temporal;
+
+import io.temporal.worker.tuning.SystemResourceInfo;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Machine-wide CPU and memory usage for the resource-based slot supplier. The SDK's own implementation measures the
+ * JVM heap, which does not see the memory COLMAP and ffmpeg take in their own processes; this one reports the host's
+ * memory usage from {@code MemAvailable} in {@code /proc/meminfo} (so page cache counts as free), falling back to the
+ * operating system MXBean elsewhere. Readings are cached briefly because the controller polls on every slot request.
+ */
+class HostResourceInfo implements SystemResourceInfo {
+
+    private static final long REFRESH_NANOS = 100_000_000L;
+    private static final Path MEMINFO = Paths.get("/proc/meminfo");
+
+    @SuppressWarnings("deprecation")
+    private final com.sun.management.OperatingSystemMXBean os =
+            ManagementFactory.getPlatformMXBean(com.sun.management.OperatingSystemMXBean.class);
+    private long refreshedAt = System.nanoTime() - REFRESH_NANOS;
+    private double cpuUsage;
+    private double memoryUsage;
+
+    @Override
+    public synchronized double getCPUUsagePercent() {
+        refresh();
+        return cpuUsage;
+    }
+
+    @Override
+    public synchronized double getMemoryUsagePercent() {
+        refresh();
+        return memoryUsage;
+    }
+
+    @SuppressWarnings("deprecation")
+    private void refresh() {
+        long now = System.nanoTime();
+        if (now - refreshedAt < REFRESH_NANOS) {
+            return;
+        }
+        refreshedAt = now;
+        double load = os.getSystemCpuLoad();
+        // The first reading after startup is negative (not yet available).
+        cpuUsage = Double.isNaN(load) || load < 0 ? 0 : load;
+        long total = os.getTotalPhysicalMemorySize();
+        long available = memAvailable();
+        if (available < 0) {
+            available = os.getFreePhysicalMemorySize();
+        }
+        memoryUsage = total > 0 ? 1.0 - (double) available / total : 0;
+    }
+
+    /** Bytes the kernel reports as available for new processes, or -1 when that is not known. */
+    private static long memAvailable() {
+        if (!Files.isReadable(MEMINFO)) {
+            return -1;
+        }
+        try {
+            List<String> lines = Files.readAllLines(MEMINFO);
+            for (String line : lines) {
+                if (line.startsWith("MemAvailable:")) {
+                    String kilobytes = line.substring("MemAvailable:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kilobytes) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        return -1;
+    }
+}
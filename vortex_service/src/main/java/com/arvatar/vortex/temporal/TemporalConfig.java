@@ -1,7 +1,9 @@
 package com.arvatar.vortex.temporal;
 
+import com.arvatar.vortex.models.JobPriority;
 import com.arvatar.vortex.temporal.activities.AsrActivities;
 import com.arvatar.vortex.temporal.activities.PcdActivities;
+import com.arvatar.vortex.temporal.workflow.AsrWorkflow;
 import com.arvatar.vortex.temporal.workflow.AsrWorkflowImpl;
 import com.arvatar.vortex.temporal.workflow.PcdWorkflowImpl;
 import io.temporal.client.WorkflowClient;
@@ -10,6 +12,14 @@ import io.temporal.serviceclient.WorkflowServiceStubs;
 import io.temporal.serviceclient.WorkflowServiceStubsOptions;
 import io.temporal.worker.Worker;
 import io.temporal.worker.WorkerFactory;
+import io.temporal.worker.WorkerOptions;
+import io.temporal.worker.tuning.CompositeTuner;
+import io.temporal.worker.tuning.FixedSizeSlotSupplier;
+import io.temporal.worker.tuning.ResourceBasedController;
+import io.temporal.worker.tuning.ResourceBasedControllerOptions;
+import io.temporal.worker.tuning.ResourceBasedSlotOptions;
+import io.temporal.worker.tuning.ResourceBasedSlotSupplier;
+import org.slf4j.Logger;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -52,10 +62,15 @@ public class TemporalConfig {
     }
 
     public static class WorkerLifecycle {
+        // SDK default for task slots the tuner does not manage
+        private static final int DEFAULT_SLOTS = 200;
+
+        private final Logger logger = org.slf4j.LoggerFactory.getLogger(WorkerLifecycle.class);
         private final WorkerFactory workerFactory;
         private final TemporalProperties properties;
         private final AsrActivities asrActivities;
         private final PcdActivities pcdActivities;
+        private ResourceBasedController resourceController;
 
         public WorkerLifecycle(WorkerFactory workerFactory,
                                TemporalProperties properties,
@@ -69,13 +84,22 @@ public class TemporalConfig {
 
         @PostConstruct
         public void start() {
-            Worker asrWorker = workerFactory.newWorker(properties.getTaskQueues().getAsr());
-            asrWorker.registerWorkflowImplementationTypes(AsrWorkflowImpl.class);
-            asrWorker.registerActivitiesImplementations(asrActivities);
+            // One worker per lane and stage. The lanes' poller and slot settings weight how much of this node each
+            // gets; an ASR workflow hands its job to the PCD queue of the same lane.
+            TemporalProperties.TaskQueues queues = properties.getTaskQueues();
+            for (JobPriority priority : JobPriority.values()) {
+                String asrTaskQueue = queues.asr(priority);
+                Worker asrWorker = workerFactory.newWorker(asrTaskQueue,
+                        workerOptions(asrTaskQueue, properties.getWorkers().asr(priority)));
+                String pcdTaskQueue = queues.pcd(priority);
+                asrWorker.registerWorkflowImplementationFactory(AsrWorkflow.class, () -> new AsrWorkflowImpl(pcdTaskQueue));
+                asrWorker.registerActivitiesImplementations(asrActivities);
 
-            Worker pcdWorker = workerFactory.newWorker(properties.getTaskQueues().getPcd());
-            pcdWorker.registerWorkflowImplementationTypes(PcdWorkflowImpl.class);
-            pcdWorker.registerActivitiesImplementations(pcdActivities);
+                Worker pcdWorker = workerFactory.newWorker(pcdTaskQueue,
+                        workerOptions(pcdTaskQueue, properties.getWorkers().pcd(priority)));
+                pcdWorker.registerWorkflowImplementationTypes(PcdWorkflowImpl.class);
+                pcdWorker.registerActivitiesImplementations(pcdActivities);
+            }
 
             workerFactory.start();
         }
@@ -84,6 +108,66 @@ public class TemporalConfig {
         public void shutdown() {
             workerFactory.shutdown();
         }
+
+        private WorkerOptions workerOptions(String name, TemporalProperties.WorkerSettings settings) {
+            WorkerOptions.Builder options = WorkerOptions.newBuilder();
+            if (settings.isResourceBased()) {
+                // The tuner replaces the fixed slot counts; the SDK rejects options that set both.
+                ResourceBasedSlotOptions activitySlots = activitySlotOptions(settings);
+                int workflowSlots = settings.getMaxConcurrentWorkflowTasks() > 0
+                        ? settings.getMaxConcurrentWorkflowTasks() : DEFAULT_SLOTS;
+                options.setWorkerTuner(new CompositeTuner(
+                        new FixedSizeSlotSupplier<>(workflowSlots),
+                        ResourceBasedSlotSupplier.createForActivity(resourceController(), activitySlots),
+                        new FixedSizeSlotSupplier<>(DEFAULT_SLOTS),
+                        new FixedSizeSlotSupplier<>(DEFAULT_SLOTS)));
+                logger.info("{} worker admits activities by host resources: {}", name, activitySlots);
+            } else {
+                if (settings.getMaxConcurrentActivityExecutions() > 0) {
+                    options.setMaxConcurrentActivityExecutionSize(settings.getMaxConcurrentActivityExecutions());
+                }
+                if (settings.getMaxConcurrentWorkflowTasks() > 0) {
+                    options.setMaxConcurrentWorkflowTaskExecutionSize(settings.getMaxConcurrentWorkflowTasks());
+                }
+            }
+            if (settings.getActivityPollers() > 0) {
+                options.setMaxConcurrentActivityTaskPollers(settings.getActivityPollers());
+            }
+            if (settings.getWorkflowPollers() > 0) {
+                options.setMaxConcurrentWorkflowTaskPollers(settings.getWorkflowPollers());
+            }
+            if (settings.getMaxActivitiesPerSecond() > 0) {
+                options.setMaxWorkerActivitiesPerSecond(settings.getMaxActivitiesPerSecond());
+            }
+            if (settings.getMaxTaskQueueActivitiesPerSecond() > 0) {
+                options.setMaxTaskQueueActivitiesPerSecond(settings.getMaxTaskQueueActivitiesPerSecond());
+            }
+            return options.build();
+        }
+
+        private ResourceBasedSlotOptions activitySlotOptions(TemporalProperties.WorkerSettings settings) {
+            TemporalProperties.ResourceTuning tuning = properties.getResourceTuning();
+            int maximumSlots = settings.getMaxConcurrentActivityExecutions() > 0
+                    ? settings.getMaxConcurrentActivityExecutions()
+                    : tuning.getMaximumSlots() > 0 ? tuning.getMaximumSlots() : Runtime.getRuntime().availableProcessors();
+            return ResourceBasedSlotOptions.newBuilder()
+                    .setMinimumSlots(Math.min(tuning.getMinimumSlots(), maximumSlots))
+                    .setMaximumSlots(maximumSlots)
+                    .setRampThrottle(tuning.getRampThrottle())
+                    .build();
+        }
+
+        /** One controller per process, so every resource-based worker competes for the same machine. */
+        private ResourceBasedController resourceController() {
+            if (resourceController == null) {
+                TemporalProperties.ResourceTuning tuning = properties.getResourceTuning();
+                resourceController = new ResourceBasedController(
+                        ResourceBasedControllerOptions.newBuilder(tuning.getTargetMemoryUsage(), tuning.getTargetCpuUsage())
+                                .build(),
+                        new HostResourceInfo());
+            }
+            return resourceController;
+        }
     }
 }
 
@@ -1,13 +1,18 @@
 package com.arvatar.vortex.temporal;
 
+import com.arvatar.vortex.models.JobPriority;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 @ConfigurationProperties(prefix = "temporal")
 public class TemporalProperties {
 
     private String target = "localhost:7233";
     private String namespace = "default";
     private final TaskQueues taskQueues = new TaskQueues();
+    private final Workers workers = new Workers();
+    private final ResourceTuning resourceTuning = new ResourceTuning();
 
     public String getTarget() {
         return target;
@@ -29,9 +34,27 @@ public class TemporalProperties {
         return taskQueues;
     }
 
+    public Workers getWorkers() {
+        return workers;
+    }
+
+    public ResourceTuning getResourceTuning() {
+        return resourceTuning;
+    }
+
     public static class TaskQueues {
         private String asr = "asr-jobs";
         private String pcd = "pcd-jobs";
+        private String asrLow = "asr-jobs-low";
+        private String pcdLow = "pcd-jobs-low";
+
+        public String asr(JobPriority priority) {
+            return priority == JobPriority.LOW ? asrLow : asr;
+        }
+
+        public String pcd(JobPriority priority) {
+            return priority == JobPriority.LOW ? pcdLow : pcd;
+        }
 
         public String getAsr() {
             return asr;
@@ -48,6 +71,176 @@ public class TemporalProperties {
         public void setPcd(String pcd) {
             this.pcd = pcd;
         }
+
+        public String getAsrLow() {
+            return asrLow;
+        }
+
+        public void setAsrLow(String asrLow) {
+            this.asrLow = asrLow;
+        }
+
+        public String getPcdLow() {
+            return pcdLow;
+        }
+
+        public void setPcdLow(String pcdLow) {
+            this.pcdLow = pcdLow;
+        }
     }
-}
 
+    public static class Workers {
+        private final WorkerSettings asr = new WorkerSettings();
+        private final WorkerSettings pcd = new WorkerSettings();
+        private final WorkerSettings asrLow = new WorkerSettings();
+        private final WorkerSettings pcdLow = new WorkerSettings();
+
+        public WorkerSettings asr(JobPriority priority) {
+            return priority == JobPriority.LOW ? asrLow : asr;
+        }
+
+        public WorkerSettings pcd(JobPriority priority) {
+            return priority == JobPriority.LOW ? pcdLow : pcd;
+        }
+
+        public WorkerSettings getAsr() {
+            return asr;
+        }
+
+        public WorkerSettings getPcd() {
+            return pcd;
+        }
+
+        public WorkerSettings getAsrLow() {
+            return asrLow;
+        }
+
+        public WorkerSettings getPcdLow() {
+            return pcdLow;
+        }
+    }
+
+    /** Worker limits of one task queue. Zero leaves the SDK default in place. */
+    public static class WorkerSettings {
+        private int maxConcurrentActivityExecutions;
+        private int maxConcurrentWorkflowTasks;
+        private int activityPollers;
+        private int workflowPollers;
+        /** Activities this worker starts per second. */
+        private double maxActivitiesPerSecond;
+        /** Activities all workers of the task queue start per second, enforced by the server. */
+        private double maxTaskQueueActivitiesPerSecond;
+        /** Admit activities through the resource-based slot supplier instead of a fixed number of slots. */
+        private boolean resourceBased;
+
+        public int getMaxConcurrentActivityExecutions() {
+            return maxConcurrentActivityExecutions;
+        }
+
+        public void setMaxConcurrentActivityExecutions(int maxConcurrentActivityExecutions) {
+            this.maxConcurrentActivityExecutions = maxConcurrentActivityExecutions;
+        }
+
+        public int getMaxConcurrentWorkflowTasks() {
+            return maxConcurrentWorkflowTasks;
+        }
+
+        public void setMaxConcurrentWorkflowTasks(int maxConcurrentWorkflowTasks) {
+            this.maxConcurrentWorkflowTasks = maxConcurrentWorkflowTasks;
+        }
+
+        public int getActivityPollers() {
+            return activityPollers;
+        }
+
+        public void setActivityPollers(int activityPollers) {
+            this.activityPollers = activityPollers;
+        }
+
+        public int getWorkflowPollers() {
+            return workflowPollers;
+        }
+
+        public void setWorkflowPollers(int workflowPollers) {
+            this.workflowPollers = workflowPollers;
+        }
+
+        public double getMaxActivitiesPerSecond() {
+            return maxActivitiesPerSecond;
+        }
+
+        public void setMaxActivitiesPerSecond(double maxActivitiesPerSecond) {
+            this.maxActivitiesPerSecond = maxActivitiesPerSecond;
+        }
+
+        public double getMaxTaskQueueActivitiesPerSecond() {
+            return maxTaskQueueActivitiesPerSecond;
+        }
+
+        public void setMaxTaskQueueActivitiesPerSecond(double maxTaskQueueActivitiesPerSecond) {
+            this.maxTaskQueueActivitiesPerSecond = maxTaskQueueActivitiesPerSecond;
+        }
+
+        public boolean isResourceBased() {
+            return resourceBased;
+        }
+
+        public void setResourceBased(boolean resourceBased) {
+            this.resourceBased = resourceBased;
+        }
+    }
+
+    /**
+     * Targets of the resource-based slot supplier, shared by every resource-based worker of this process: a new
+     * activity is admitted only while memory and CPU usage stay below the targets.
+     */
+    public static class ResourceTuning {
+        private double targetMemoryUsage = 0.8;
+        private double targetCpuUsage = 0.9;
+        private int minimumSlots = 1;
+        /** Upper bound of concurrent activities; zero means one per available core. */
+        private int maximumSlots;
+        /** Minimum delay between admitting two activities, so usage can react before the next one starts. */
+        private Duration rampThrottle = Duration.ofSeconds(30);
+
+        public double getTargetMemoryUsage() {
+            return targetMemoryUsage;
+        }
+
+        public void setTargetMemoryUsage(double targetMemoryUsage) {
+            this.targetMemoryUsage = targetMemoryUsage;
+        }
+
+        public double getTargetCpuUsage() {
+            return targetCpuUsage;
+        }
+
+        public void setTargetCpuUsage(double targetCpuUsage) {
+            this.targetCpuUsage = targetCpuUsage;
+        }
+
+        public int getMinimumSlots() {
+            return minimumSlots;
+        }
+
+        public void setMinimumSlots(int minimumSlots) {
+            this.minimumSlots = minimumSlots;
+        }
+
+        public int getMaximumSlots() {
+            return maximumSlots;
+        }
+
+        public void setMaximumSlots(int maximumSlots) {
+            this.maximumSlots = maximumSlots;
+        }
+
+        public Duration getRampThrottle() {
+            return rampThrottle;
+        }
+
+        public void setRampThrottle(Duration rampThrottle) {
+            this.rampThrottle = rampThrottle;
+        }
+    }
+}
@@ -3,8 +3,38 @@ package com.arvatar.vortex.temporal.activities;
 import com.arvatar.vortex.models.AsrPcdJob;
 import io.temporal.activity.ActivityInterface;
 
+/**
+ * ASR stage steps. Every step reads its inputs from and checkpoints its output to the {@code artifacts} bucket under
+ * {@code <jobId>/asr/}, returning the key, so a retry only repeats the step that failed and the steps can run on
+ * different workers.
+ */
 @ActivityInterface
 public interface AsrActivities {
-    void executeAsrJob(AsrPcdJob job);
-}
+    /**
+     * Runs every ASR step in sequence within one activity. Kept for workflows started before the stage was split into
+     * the steps below.
+     */
+    AsrPcdJob executeAsrJob(AsrPcdJob job);
+
+    /** Downloads the upload and extracts its 16 kHz mono PCM track. Returns the audio artifact key. */
+    String extractAudio(AsrPcdJob job);
+
+    /** Runs rhubarb over the audio. Returns the key of the mouth-cue JSON. */
+    String generateLipSync(AsrPcdJob job, String audioKey);
+
+    /** Runs Vosk over the audio. Returns the key of the plain-text transcript. */
+    String transcribe(AsrPcdJob job, String audioKey);
 
+    /** Chunks the transcript and embeds every chunk. Returns the key of the embeddings JSON. */
+    String embedTranscript(AsrPcdJob job, String transcriptKey);
+
+    /**
+     * Writes the embedded chunks to pgvector, attaches the mouth cues to the job, marks ASR completed and, unless the
+     * job was dispatched directly, queues the PCD stage. Safe to retry: rows are keyed by the job ID, and the PCD
+     * stage is queued together with a per-job marker, so a retry after that point only cleans up the ASR artifacts.
+     */
+    AsrPcdJob persistAsrResult(AsrPcdJob job, String lipSyncKey, String embeddingsKey);
+
+    /** Marks the job failed and removes its ASR artifacts. */
+    void markAsrJobFailed(AsrPcdJob job);
+}
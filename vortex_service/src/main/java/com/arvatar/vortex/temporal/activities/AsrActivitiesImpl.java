@@ -4,37 +4,43 @@ import com.arvatar.vortex.models.AsrPcdJob;
 import com.arvatar.vortex.models.JobStatus;
 import com.arvatar.vortex.dto.MinIOS3Client;
 import com.arvatar.vortex.service.DatabaseWriter;
+import com.arvatar.vortex.service.JobStateStore;
 import com.arvatar.vortex.service.LLMService;
+import com.arvatar.vortex.config.RedisConnector;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import io.lettuce.core.RedisClient;
+import io.lettuce.core.ScriptOutputType;
+import io.temporal.activity.Activity;
+import io.temporal.activity.ActivityExecutionContext;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.async.RedisAsyncCommands;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.ObjectProvider;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import javax.annotation.PreDestroy;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.charset.StandardCharsets;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.UUID;
 import org.vosk.Model;
 import org.vosk.Recognizer;
@@ -54,160 +60,296 @@ public class AsrActivitiesImpl implements AsrActivities {
 
     private final ObjectMapper objectMapper;
     private final MinIOS3Client objectStoreClient;
-    private final RedisClient redisClient;
     private final StatefulRedisConnection<String, String> connection;
     private final RedisAsyncCommands<String, String> asyncCommands;
     private final Logger logger = LoggerFactory.getLogger(AsrActivitiesImpl.class);
     private final DatabaseWriter databaseWriter;
     private final LLMService llmService;
+    private final JobStateStore jobStateStore;
     
     // Vosk model configuration - using lightweight English model
     private static final String VOSK_MODEL_NAME = "vosk-model-en-us-0.22";
     private static final String VOSK_MODEL_URL = "https://alphacephei.com/vosk/models/" + VOSK_MODEL_NAME + ".zip";
     private static final String MODEL_CACHE_DIR = System.getProperty("user.home") + "/.cache/vosk/models";
+    /** Present in a model directory only once it has been extracted completely. */
+    private static final String MODEL_COMPLETE_MARKER = ".complete";
+    private static final String PARTIAL_MODEL_INFIX = ".partial-";
+    // 16 kHz mono s16le
+    private static final int AUDIO_BYTES_PER_SECOND = 32000;
+    // KEYS[1] persisted marker, KEYS[2] PCD stream unless dispatched directly; ARGV: marker ttl s, job payload
+    private static final String PERSIST_AND_QUEUE_SCRIPT =
+            "if not redis.call('SET', KEYS[1], '1', 'NX', 'EX', ARGV[1]) then return false end " +
+            "if #KEYS > 1 then return redis.call('XADD', KEYS[2], '*', 'job', ARGV[2]) end " +
+            "return false";
+    /** Outlives any retry of the persist step. */
+    private static final Duration PERSISTED_MARKER_TTL = Duration.ofDays(7);
 
-    public AsrActivitiesImpl(ObjectProvider<DatabaseWriter> databaseWriterProvider, LLMService llmService, @Value("${redis.uri:redis://localhost:6379}") String redisUri) {
+    public AsrActivitiesImpl(ObjectProvider<DatabaseWriter> databaseWriterProvider, LLMService llmService, JobStateStore jobStateStore, RedisConnector redisConnector) {
         this.objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         this.objectStoreClient = new MinIOS3Client();
-        this.redisClient = RedisClient.create(redisUri);
-        this.connection = connectWithRetry(redisClient);
+        this.connection = redisConnector.connect();
         this.asyncCommands = connection.async();
         this.databaseWriter = databaseWriterProvider.getIfAvailable();
         this.llmService = llmService;
+        this.jobStateStore = jobStateStore;
         if (this.databaseWriter == null) {
             logger.warn("Database writer is not configured; embeddings will not be persisted.");
         }
     }
 
-    private StatefulRedisConnection<String, String> connectWithRetry(RedisClient client) {
-        int maxRetries = 10;
-        long initialDelayMs = 1000;
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                logger.info("Attempting to connect to Redis (attempt {}/{})", attempt, maxRetries);
-                return client.connect();
-            } catch (Exception e) {
-                if (attempt == maxRetries) {
-                    logger.error("Failed to connect to Redis after {} attempts", maxRetries, e);
-                    throw new RuntimeException("Unable to connect to Redis after " + maxRetries + " attempts", e);
-                }
-                long delayMs = initialDelayMs * attempt;
-                logger.warn("Redis connection failed (attempt {}/{}), retrying in {} ms...", attempt, maxRetries, delayMs, e);
-                try {
-                    Thread.sleep(delayMs);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Interrupted while waiting to retry Redis connection", ie);
-                }
-            }
-        }
-        throw new RuntimeException("Failed to connect to Redis");
-    }
-
     @Override
-    public void executeAsrJob(AsrPcdJob job) {
+    public AsrPcdJob executeAsrJob(AsrPcdJob job) {
         try {
-            job.status = JobStatus.ASR_STARTED;
-            objectStoreClient.updateJob(job);
-            byte[] videoPayload = objectStoreClient.getVideo(job.videoKey);
-            JsonNode json = transcribeVisemes(job.guruId, videoPayload, job.guruId, job.videoKey);
-            job.asrResultJsonString = json.toString();
-            job.status = JobStatus.ASR_COMPLETED;
-            objectStoreClient.updateJob(job);
-            String txnId = publishJobToStream(job);
-            logger.info("Transcription job completed for guruId: {} pcd job txn_id: {}", job.guruId, txnId);
-        } catch (Exception e) {
-            job.status = JobStatus.ASR_FAILED;
-            objectStoreClient.updateJob(job);
-            logger.error("ASR job failed for guruId: {} pcd job {}", job.guruId, job.jobId, e);
-            throw new RuntimeException("ASR job failed", e);
+            String audioKey = extractAudio(job);
+            String lipSyncKey = generateLipSync(job, audioKey);
+            String transcriptKey = transcribe(job, audioKey);
+            String embeddingsKey = embedTranscript(job, transcriptKey);
+            return persistAsrResult(job, lipSyncKey, embeddingsKey);
+        } catch (RuntimeException e) {
+            markAsrJobFailed(job);
+            throw e;
         }
     }
 
-    private JsonNode transcribeVisemes(String jobId, byte[] videoPayload, String guruId, String videoKey) throws IOException {
-        Path tempDir = Files.createTempDirectory("asr" + jobId);
-        Path videoFile = tempDir.resolve(jobId + ".mp4");
-        Path audioFile = tempDir.resolve(jobId + ".wav");
-        Path jsonFile = tempDir.resolve(jobId + ".json");
-        try {
-            Files.write(videoFile, videoPayload);
+    @Override
+    public String extractAudio(AsrPcdJob job) {
+        job.status = JobStatus.ASR_STARTED;
+        jobStateStore.updateStatus(job);
+        String audioKey = artifactKey(job, "audio.wav");
+        Path tempDir = null;
+        try (HeartbeatTicker ticker = startTicker("downloading video")) {
+            tempDir = Files.createTempDirectory("asr-audio-" + job.jobId);
+            Path videoFile = tempDir.resolve("video.mp4");
+            Path audioFile = tempDir.resolve("audio.wav");
+            objectStoreClient.getVideo(job.videoKey, videoFile);
+            ticker.step("extracting audio");
             runOrThrow(new ProcessBuilder(
                     "ffmpeg", "-y", "-i", videoFile.toAbsolutePath().toString(),
                     "-vn", "-ac", "1", "-ar", "16000", "-acodec", "pcm_s16le", audioFile.toAbsolutePath().toString()
-            ).redirectErrorStream(true));
-            Path voskFilePath = downloadVoskModel();
+            ));
+            ticker.step("uploading audio");
+            objectStoreClient.putArtifact(audioKey, audioFile);
+            return audioKey;
+        } catch (Exception e) {
+            logger.error("Audio extraction failed for guruId: {} job {}", job.guruId, job.jobId, e);
+            throw new RuntimeException("Audio extraction failed", e);
+        } finally {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Override
+    public String generateLipSync(AsrPcdJob job, String audioKey) {
+        String lipSyncKey = artifactKey(job, "rhubarb.json");
+        Path tempDir = null;
+        try (HeartbeatTicker ticker = startTicker("downloading audio")) {
+            tempDir = Files.createTempDirectory("asr-lipsync-" + job.jobId);
+            Path audioFile = tempDir.resolve("audio.wav");
+            Path jsonFile = tempDir.resolve("rhubarb.json");
+            objectStoreClient.getArtifact(audioKey, audioFile);
+            ticker.step("running rhubarb");
             runOrThrow(new ProcessBuilder(
                     "rhubarb", "-f", "json", "-o", jsonFile.toAbsolutePath().toString(), audioFile.toAbsolutePath().toString()
             ));
+            objectStoreClient.putArtifact(lipSyncKey, jsonFile);
+            return lipSyncKey;
+        } catch (Exception e) {
+            logger.error("Lip-sync generation failed for guruId: {} job {}", job.guruId, job.jobId, e);
+            throw new RuntimeException("Lip-sync generation failed", e);
+        } finally {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Override
+    public String transcribe(AsrPcdJob job, String audioKey) {
+        String transcriptKey = artifactKey(job, "transcript.txt");
+        Path tempDir = null;
+        try (HeartbeatTicker ticker = startTicker("downloading audio")) {
+            tempDir = Files.createTempDirectory("asr-transcribe-" + job.jobId);
+            Path audioFile = tempDir.resolve("audio.wav");
+            Path transcriptFile = tempDir.resolve("transcript.txt");
+            objectStoreClient.getArtifact(audioKey, audioFile);
+            ticker.step("preparing the Vosk model");
+            Path voskFilePath = downloadVoskModel();
+            ticker.step("transcribing");
             String transcript = transcribeAudio(audioFile, voskFilePath);
+            Files.writeString(transcriptFile, transcript, StandardCharsets.UTF_8);
+            objectStoreClient.putArtifact(transcriptKey, transcriptFile);
+            return transcriptKey;
+        } catch (Exception e) {
+            logger.error("Transcription failed for guruId: {} job {}", job.guruId, job.jobId, e);
+            throw new RuntimeException("Transcription failed", e);
+        } finally {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Override
+    public String embedTranscript(AsrPcdJob job, String transcriptKey) {
+        String embeddingsKey = artifactKey(job, "embeddings.json");
+        Path tempDir = null;
+        try (HeartbeatTicker ticker = startTicker("embedding transcript")) {
+            tempDir = Files.createTempDirectory("asr-embed-" + job.jobId);
+            Path transcriptFile = tempDir.resolve("transcript.txt");
+            Path embeddingsFile = tempDir.resolve("embeddings.json");
+            objectStoreClient.getArtifact(transcriptKey, transcriptFile);
+            String transcript = Files.readString(transcriptFile, StandardCharsets.UTF_8);
             List<ChunkWithEmbedding> chunksWithEmbeddings = getEmbeddingsVectors(transcript);
-            writeToPgVectorDatabase(guruId, videoKey, chunksWithEmbeddings);
-            try (InputStream reader = Files.newInputStream(jsonFile)) {
-                return objectMapper.readTree(reader);
-            }
+            objectMapper.writeValue(embeddingsFile.toFile(), chunksWithEmbeddings);
+            objectStoreClient.putArtifact(embeddingsKey, embeddingsFile);
+            return embeddingsKey;
         } catch (Exception e) {
-            throw new RuntimeException(e);
+            logger.error("Transcript embedding failed for guruId: {} job {}", job.guruId, job.jobId, e);
+            throw new RuntimeException("Transcript embedding failed", e);
         } finally {
-            try { Files.deleteIfExists(videoFile); } catch (Exception ignore) {}
-            try { Files.deleteIfExists(audioFile); } catch (Exception ignore) {}
-            try { Files.deleteIfExists(jsonFile); } catch (Exception ignore) {}
-            try { Files.deleteIfExists(tempDir); } catch (Exception ignore) {}
+            deleteRecursively(tempDir);
         }
     }
 
-    private void runOrThrow(ProcessBuilder pb) throws Exception {
-        Process p = pb.start();
-        
-        // Capture both stdout and stderr
-        StringBuilder output = new StringBuilder();
-        StringBuilder error = new StringBuilder();
-        
-        try (BufferedReader stdout = new BufferedReader(new InputStreamReader(p.getInputStream()));
-             BufferedReader stderr = new BufferedReader(new InputStreamReader(p.getErrorStream()))) {
-            
-            // Read stdout in a separate thread to avoid blocking
-            Thread stdoutThread = new Thread(() -> {
-                try {
-                    String line;
-                    while ((line = stdout.readLine()) != null) {
-                        output.append(line).append("\n");
-                    }
-                } catch (IOException e) {
-                    logger.debug("Error reading stdout", e);
+    @Override
+    public AsrPcdJob persistAsrResult(AsrPcdJob job, String lipSyncKey, String embeddingsKey) {
+        // Outside the asr/ prefix, which is cleaned up below; the PCD stage reads it and removes it when done.
+        String resultKey = job.jobId + "/mouth-cues.json";
+        Path tempDir = null;
+        try (HeartbeatTicker ticker = startTicker("persisting ASR result")) {
+            if (isPersisted(job)) {
+                // An earlier attempt got as far as queueing PCD, which may have moved the job on since; only the
+                // clean-up can be left to do.
+                logger.info("ASR result of job {} was persisted by an earlier attempt", job.jobId);
+                job.asrResultKey = resultKey;
+                job.status = JobStatus.ASR_COMPLETED;
+                deleteAsrArtifacts(job);
+                return job;
+            }
+            tempDir = Files.createTempDirectory("asr-persist-" + job.jobId);
+            Path jsonFile = tempDir.resolve("rhubarb.json");
+            Path embeddingsFile = tempDir.resolve("embeddings.json");
+            objectStoreClient.getArtifact(lipSyncKey, jsonFile);
+            objectStoreClient.getArtifact(embeddingsKey, embeddingsFile);
+            List<ChunkWithEmbedding> chunksWithEmbeddings = new ArrayList<>();
+            for (JsonNode node : objectMapper.readTree(embeddingsFile.toFile())) {
+                JsonNode values = node.path("embedding");
+                float[] embedding = new float[values.size()];
+                for (int i = 0; i < embedding.length; i++) {
+                    embedding[i] = (float) values.get(i).asDouble();
                 }
-            });
-            stdoutThread.start();
-            
-            // Read stderr
-            String line;
-            while ((line = stderr.readLine()) != null) {
-                error.append(line).append("\n");
+                chunksWithEmbeddings.add(new ChunkWithEmbedding(node.path("chunk").asText(), embedding));
             }
-            
-            stdoutThread.join();
-        }
-        
-        int code = p.waitFor();
-        if (code != 0) {
-            String command = String.join(" ", pb.command());
-            String errorMessage = "Command failed: " + command;
-            if (error.length() > 0) {
-                errorMessage += "\nError output:\n" + error.toString();
+            writeToPgVectorDatabase(job, chunksWithEmbeddings);
+            objectStoreClient.putArtifact(resultKey, jsonFile);
+            job.asrResultKey = resultKey;
+            job.status = JobStatus.ASR_COMPLETED;
+            jobStateStore.updateStatus(job);
+            String txnId = markPersistedAndQueuePcd(job);
+            if (job.directDispatch) {
+                logger.info("Transcription job completed for guruId: {} job {}", job.guruId, job.jobId);
+            } else {
+                logger.info("Transcription job completed for guruId: {} pcd job txn_id: {}", job.guruId, txnId);
             }
-            if (output.length() > 0) {
-                errorMessage += "\nStandard output:\n" + output.toString();
+            deleteAsrArtifacts(job);
+            return job;
+        } catch (Exception e) {
+            logger.error("Persisting ASR result failed for guruId: {} job {}", job.guruId, job.jobId, e);
+            throw new RuntimeException("Persisting ASR result failed", e);
+        } finally {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Override
+    public void markAsrJobFailed(AsrPcdJob job) {
+        job.status = JobStatus.ASR_FAILED;
+        jobStateStore.updateStatus(job);
+        objectStoreClient.deleteArtifacts(job.jobId + "/asr/");
+        logger.error("ASR job failed for guruId: {} pcd job {}", job.guruId, job.jobId);
+    }
+
+    private static String artifactKey(AsrPcdJob job, String name) {
+        return job.jobId + "/asr/" + name;
+    }
+
+    /** Reports liveness to Temporal, which fails the attempt once heartbeats stop for the heartbeat timeout. */
+    private static void heartbeat(Object progress) {
+        Activity.getExecutionContext().heartbeat(progress);
+    }
+
+    /** Keeps the step alive through downloads, model loading and other work that reports no progress itself. */
+    private static HeartbeatTicker startTicker(String step) {
+        ActivityExecutionContext context = Activity.getExecutionContext();
+        return HeartbeatTicker.start(step, context::heartbeat);
+    }
+
+    private void deleteRecursively(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (java.util.stream.Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(java.util.Comparator.reverseOrder()).forEach(path -> {
+                try { Files.deleteIfExists(path); } catch (IOException ignore) {}
+            });
+        } catch (IOException e) {
+            logger.warn("Could not clean up {}", directory, e);
+        }
+    }
+
+    private void runOrThrow(ProcessBuilder pb) throws Exception {
+        String name = pb.command().get(0);
+        SubprocessRunner.ProgressParser parser = "ffmpeg".equals(name)
+                ? SubprocessRunner.FFMPEG_PROGRESS
+                : line -> null;
+        Path logFile = Files.createTempFile(name, ".log");
+        try {
+            int code = SubprocessRunner.run(name, pb, logFile, parser, AsrActivitiesImpl::heartbeat);
+            if (code != 0) {
+                String command = String.join(" ", pb.command());
+                String errorMessage = "Command failed: " + command;
+                String output = Files.readString(logFile, StandardCharsets.UTF_8);
+                if (!output.isEmpty()) {
+                    errorMessage += "\nOutput:\n" + output;
+                }
+                logger.error(errorMessage);
+                throw new RuntimeException(errorMessage);
             }
-            logger.error(errorMessage);
-            throw new RuntimeException(errorMessage);
+        } finally {
+            Files.deleteIfExists(logFile);
         }
     }
 
-    private String publishJobToStream(AsrPcdJob job) throws ExecutionException, InterruptedException, IOException {
-        String pcdJobRedisStream = "pcd_jobs";
+    /**
+     * Sets the job's persisted marker and, unless the job was dispatched directly, adds it to the PCD stream, both in
+     * one script so that a retried persist step never queues the job twice.
+     *
+     * @return the stream entry ID, or {@code null} when the job was not queued
+     */
+    private String markPersistedAndQueuePcd(AsrPcdJob job) throws ExecutionException, InterruptedException, IOException {
+        List<String> keys = new ArrayList<>(List.of(persistedMarkerKey(job)));
+        if (!job.directDispatch) {
+            keys.add(job.priority.stream("pcd_jobs"));
+        }
         String payload = objectMapper.writeValueAsString(job);
-        return asyncCommands.xadd(pcdJobRedisStream, Map.of("job", payload)).get();
+        return asyncCommands.<String>eval(PERSIST_AND_QUEUE_SCRIPT, ScriptOutputType.VALUE, keys.toArray(new String[0]),
+                Long.toString(PERSISTED_MARKER_TTL.getSeconds()), payload).get();
+    }
+
+    private boolean isPersisted(AsrPcdJob job) throws ExecutionException, InterruptedException {
+        Long exists = asyncCommands.exists(persistedMarkerKey(job)).get();
+        return exists != null && exists > 0;
+    }
+
+    private static String persistedMarkerKey(AsrPcdJob job) {
+        return "vortex:asr-persisted:" + job.jobId;
+    }
+
+    /** Left-over artifacts only cost storage, so a failed clean-up does not fail the step after PCD was queued. */
+    private void deleteAsrArtifacts(AsrPcdJob job) {
+        try {
+            objectStoreClient.deleteArtifacts(job.jobId + "/asr/");
+        } catch (RuntimeException e) {
+            logger.warn("Could not remove ASR artifacts of job {}", job.jobId, e);
+        }
     }
 
     private String transcribeAudio(Path audioFile, Path modelPath) throws IOException {
@@ -221,8 +363,15 @@ public class AsrActivitiesImpl implements AsrActivities {
                      BufferedInputStream bis = new BufferedInputStream(fis)) {
                     int nbytes;
                     byte[] b = new byte[4096];
+                    long bytesRead = 0;
+                    long nextHeartbeat = System.nanoTime();
 
                     while ((nbytes = bis.read(b)) >= 0) {
+                        bytesRead += nbytes;
+                        if (System.nanoTime() >= nextHeartbeat) {
+                            heartbeat("transcribed " + bytesRead / AUDIO_BYTES_PER_SECOND + "s of audio");
+                            nextHeartbeat = System.nanoTime() + TimeUnit.SECONDS.toNanos(SubprocessRunner.HEARTBEAT_INTERVAL_SECONDS);
+                        }
                         if (recognizer.acceptWaveForm(b, nbytes)) {
                             String result = recognizer.getResult();
                             if (result != null && !result.isEmpty()) {
@@ -270,51 +419,82 @@ public class AsrActivitiesImpl implements AsrActivities {
         }
     }
 
+    /**
+     * Returns the cached Vosk model, downloading and unpacking it first if needed. Both the download and the unpacked
+     * model are written under private names and renamed into place only once complete, the model with a marker file,
+     * so an attempt that died or timed out halfway never leaves a partial model for the next attempt to load.
+     */
     private Path downloadVoskModel() throws IOException, InterruptedException {
-        Path cacheDir = Paths.get(MODEL_CACHE_DIR, VOSK_MODEL_NAME);
-        Files.createDirectories(cacheDir);
-
-        Path amFile = cacheDir.resolve("am");
-        Path confFile = cacheDir.resolve("conf");
-        if (Files.exists(amFile) || Files.exists(confFile)) {
-            logger.info("Using cached Vosk model from: {}", cacheDir);
-            return cacheDir;
+        Path cacheRoot = Files.createDirectories(Paths.get(MODEL_CACHE_DIR));
+        Path modelDir = cacheRoot.resolve(VOSK_MODEL_NAME);
+        if (Files.exists(modelDir.resolve(MODEL_COMPLETE_MARKER))) {
+            logger.info("Using cached Vosk model from: {}", modelDir);
+            return modelDir;
         }
-        Path zipFile = cacheDir.resolve(VOSK_MODEL_NAME + ".zip");
-        if (Files.exists(zipFile)) {
-            // Validate ZIP file before extraction
-            if (isValidZipFile(zipFile)) {
-                logger.info("Found valid Vosk model zip file, extracting...");
-                extractZipFile(zipFile, cacheDir);
-                logger.info("Vosk model extracted successfully to: {}", cacheDir);
-                return cacheDir;
-            } else {
-                logger.warn("Found corrupted Vosk model zip file, deleting and re-downloading...");
-                Files.deleteIfExists(zipFile);
-            }
-        }
-        logger.info("Downloading Vosk model from: {}", VOSK_MODEL_URL);
-        downloadFile(VOSK_MODEL_URL, zipFile);
-        long fileSize = Files.size(zipFile);
-        logger.info("Downloaded Vosk model zip file: {} bytes ({} MB)", fileSize, fileSize / (1024 * 1024));
-        
-        // Validate downloaded ZIP file
-        if (!isValidZipFile(zipFile)) {
+        deleteStalePartialModels(cacheRoot);
+        Path zipFile = cacheRoot.resolve(VOSK_MODEL_NAME + ".zip");
+        if (Files.exists(zipFile) && !isValidZipFile(zipFile)) {
+            logger.warn("Found corrupted Vosk model zip file, deleting and re-downloading...");
             Files.deleteIfExists(zipFile);
-            throw new IOException("Downloaded ZIP file is corrupted. Please try again.");
+        }
+        if (!Files.exists(zipFile)) {
+            Path download = Files.createTempFile(cacheRoot, VOSK_MODEL_NAME + PARTIAL_MODEL_INFIX, ".zip");
+            try {
+                logger.info("Downloading Vosk model from: {}", VOSK_MODEL_URL);
+                downloadFile(VOSK_MODEL_URL, download);
+                long fileSize = Files.size(download);
+                logger.info("Downloaded Vosk model zip file: {} bytes ({} MB)", fileSize, fileSize / (1024 * 1024));
+                if (!isValidZipFile(download)) {
+                    throw new IOException("Downloaded ZIP file is corrupted. Please try again.");
+                }
+                Files.move(download, zipFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(download);
+            }
         }
 
         logger.info("Extracting Vosk model...");
-        extractZipFile(zipFile, cacheDir);
+        Path extracted = Files.createTempDirectory(cacheRoot, VOSK_MODEL_NAME + PARTIAL_MODEL_INFIX);
+        try {
+            extractZipFile(zipFile, extracted);
+            Files.createFile(extracted.resolve(MODEL_COMPLETE_MARKER));
+            if (Files.exists(modelDir) && !Files.exists(modelDir.resolve(MODEL_COMPLETE_MARKER))) {
+                // Extracted in place by an earlier version, possibly only partly.
+                deleteRecursively(modelDir);
+            }
+            try {
+                Files.move(extracted, modelDir, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                if (!Files.exists(modelDir.resolve(MODEL_COMPLETE_MARKER))) {
+                    throw e;
+                }
+                logger.info("Vosk model was extracted by another attempt meanwhile");
+            }
+        } finally {
+            deleteRecursively(extracted);
+        }
         try {
             Files.deleteIfExists(zipFile);
-        } catch (Exception e) {
+        } catch (IOException e) {
             logger.warn("Could not delete zip file: {}", zipFile, e);
         }
-        logger.info("Vosk model downloaded and extracted successfully to: {}", cacheDir);
-        return cacheDir;
+        logger.info("Vosk model downloaded and extracted successfully to: {}", modelDir);
+        return modelDir;
     }
-    
+
+    /** Downloads and extractions that a crashed attempt abandoned; live ones are younger than a day. */
+    private void deleteStalePartialModels(Path cacheRoot) throws IOException {
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        try (java.util.stream.Stream<Path> entries = Files.list(cacheRoot)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                if (entry.getFileName().toString().contains(PARTIAL_MODEL_INFIX)
+                        && Files.getLastModifiedTime(entry).toMillis() < cutoff) {
+                    deleteRecursively(entry);
+                }
+            }
+        }
+    }
+
     private boolean isValidZipFile(Path zipFile) {
         try {
             // Try to open the ZIP file - if it's corrupted, this will throw an exception
@@ -464,6 +644,7 @@ public class AsrActivitiesImpl implements AsrActivities {
                 long currentTime = System.currentTimeMillis();
                 if (currentTime - lastLogTime > 10000) {
                     logger.info("Download progress: {} MB downloaded...", totalBytesRead / (1024 * 1024));
+                    heartbeat("downloaded " + totalBytesRead / (1024 * 1024) + " MB of the Vosk model");
                     lastLogTime = currentTime;
                 }
             }
@@ -481,9 +662,10 @@ public class AsrActivitiesImpl implements AsrActivities {
         List<ChunkWithEmbedding> chunksWithEmbeddings = new ArrayList<>();
         try{
             String[] chunks = transcript.split("(?<=\\G.{500})");
-            for (String chunk : chunks) {
-                float[] embedding = llmService.embedText(chunk);
-                if(embedding != null) chunksWithEmbeddings.add(new ChunkWithEmbedding(chunk, embedding));
+            for (int i = 0; i < chunks.length; i++) {
+                float[] embedding = llmService.embedText(chunks[i]);
+                if(embedding != null) chunksWithEmbeddings.add(new ChunkWithEmbedding(chunks[i], embedding));
+                heartbeat("embedded " + (i + 1) + "/" + chunks.length + " chunks");
             }
             return chunksWithEmbeddings;
         }catch (Exception e){
@@ -492,17 +674,23 @@ public class AsrActivitiesImpl implements AsrActivities {
         }
     }
 
-    private void writeToPgVectorDatabase(String guruId, String videoKey, List<ChunkWithEmbedding> chunksWithEmbeddings) {
+    private void writeToPgVectorDatabase(AsrPcdJob job, List<ChunkWithEmbedding> chunksWithEmbeddings) {
+        String guruId = job.guruId;
+        String videoKey = job.videoKey;
         if (databaseWriter == null) {
             logger.debug("Skipping pgvector persistence for guruId {} because no database writer is configured.", guruId);
             return;
         }
         try {
             databaseWriter.insertPersonIfNotExists(guruId, guruId);
-            UUID videoId = databaseWriter.insertVideo(guruId, "ASR Generated Video", videoKey);
+            // IDs are derived from the job, so a retried persist step skips the rows it already wrote
+            UUID videoId = UUID.nameUUIDFromBytes(("video:" + job.jobId).getBytes(StandardCharsets.UTF_8));
+            databaseWriter.insertVideoIfNotExists(videoId, guruId, "ASR Generated Video", videoKey);
             logger.info("Created video record for videoKey: {} with videoId: {}", videoKey, videoId);
-            for (ChunkWithEmbedding chunkWithEmbedding : chunksWithEmbeddings) {
-                UUID chunkId = databaseWriter.insertChunk(
+            for (int i = 0; i < chunksWithEmbeddings.size(); i++) {
+                ChunkWithEmbedding chunkWithEmbedding = chunksWithEmbeddings.get(i);
+                databaseWriter.insertChunkIfNotExists(
+                    UUID.nameUUIDFromBytes(("chunk:" + job.jobId + ":" + i).getBytes(StandardCharsets.UTF_8)),
                     guruId, 
                     videoId, 
                     chunkWithEmbedding.chunk,
@@ -518,11 +706,7 @@ public class AsrActivitiesImpl implements AsrActivities {
 
     @PreDestroy
     public void shutdown() {
-        try {
-            connection.close();
-        } finally {
-            redisClient.shutdown();
-        }
+        connection.close();
     }
 }
 
@@ -0,0 +1,336 @@
+package com.arvatar.vortex.temporal.activities;
+
+import com.arvatar.vortex.dto.MinIOS3Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Content-addressed store for the output directories of COLMAP steps, so that a retry or a re-upload of the same video
+ * picks up a finished sparse model, undistorted images or depth maps instead of recomputing them. A key is the hash of
+ * everything the step's output depends on: the input frames, the key of the step before it and the step's options.
+ * Entries are zip archives kept on local disk, least recently used evicted first once the cache outgrows its budget,
+ * and optionally mirrored to the object store so that any worker can use them. The mirror is not budgeted: a lifecycle
+ * rule has the object store delete its entries a while after they were stored.
+ * <p>
+ * Zipping, uploading, downloading and unpacking an entry can take minutes for dense outputs, so callers keep their
+ * activity heartbeating around {@link #restore} and {@link #store}.
+ * <p>
+ * The cache is best-effort: a failure to read or write an entry is logged and the step simply runs.
+ */
+final class ColmapArtifactCache {
+
+    /** Bumped when the layout of cached outputs changes, which invalidates every earlier entry. */
+    private static final String FORMAT = "1";
+    private static final String OBJECT_STORE_PREFIX = "colmap-cache/";
+
+    private final Logger logger = LoggerFactory.getLogger(ColmapArtifactCache.class);
+    private final Path directory;
+    private final long maxBytes;
+    private final MinIOS3Client objectStore;
+    private final int objectStoreExpiryDays;
+    private volatile boolean objectStoreExpirySet;
+
+    /**
+     * @param maxBytes              local disk budget; 0 or less disables the cache
+     * @param objectStore           where entries are mirrored, or {@code null} to keep them on this worker only
+     * @param objectStoreExpiryDays days after which mirrored entries are deleted; 0 or less keeps them
+     */
+    ColmapArtifactCache(Path directory, long maxBytes, MinIOS3Client objectStore, int objectStoreExpiryDays) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.objectStore = objectStore;
+        this.objectStoreExpiryDays = objectStoreExpiryDays;
+    }
+
+    boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /** Hashes the names and contents of the regular files under {@code dir}, in name order. */
+    static String hashFiles(Path dir) throws IOException {
+        MessageDigest digest = sha256();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        byte[] buffer = new byte[64 * 1024];
+        for (Path file : files) {
+            digest.update(dir.relativize(file).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Key of a step's output. {@code inputKey} identifies what the step reads: a {@link #hashFiles} digest or the key
+     * of the step before it.
+     */
+    static String key(String inputKey, String stage, List<String> options) {
+        MessageDigest digest = sha256();
+        for (String part : List.of(FORMAT, inputKey, stage)) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        for (String option : options) {
+            digest.update(option.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * The arguments of a COLMAP command line that affect its output: everything after {@code colmap} except the
+     * values of {@code *_path} options, which differ between workspaces.
+     */
+    static List<String> options(ProcessBuilder builder) {
+        List<String> command = builder.command();
+        List<String> options = new ArrayList<>();
+        for (int i = command.indexOf("colmap") + 1; i < command.size(); i++) {
+            String argument = command.get(i);
+            options.add(argument);
+            if (argument.startsWith("--") && argument.endsWith("_path")) {
+                i++;
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Replaces {@code outputDir} with the cached entry, fetching it from the object store if this worker has none.
+     *
+     * @return whether an entry was found
+     */
+    boolean restore(String key, Path outputDir) {
+        if (!isEnabled()) {
+            return false;
+        }
+        Path archive = archive(key);
+        try {
+            if (!Files.exists(archive) && !fetch(key, archive)) {
+                return false;
+            }
+            // Marks the entry as recently used.
+            Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis()));
+            deleteRecursively(outputDir);
+            Files.createDirectories(outputDir);
+            unzip(archive, outputDir);
+            logger.info("Restored {} from COLMAP artifact cache entry {}", outputDir, key);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not restore COLMAP artifact cache entry {}, recomputing it", key, e);
+            try {
+                deleteRecursively(outputDir);
+                Files.deleteIfExists(archive);
+            } catch (IOException cleanupFailure) {
+                logger.warn("Could not clean up after cache entry {}", key, cleanupFailure);
+            }
+            return false;
+        }
+    }
+
+    /** Stores {@code outputDir} under {@code key}, then evicts the least recently used entries over the budget. */
+    void store(String key, Path outputDir) {
+        if (!isEnabled() || !Files.isDirectory(outputDir)) {
+            return;
+        }
+        Path archive = archive(key);
+        Path partial = null;
+        try {
+            Files.createDirectories(directory);
+            partial = Files.createTempFile(directory, key, ".partial");
+            zip(outputDir, partial);
+            // Concurrent activities may store the same key; both archives are the same, the last move wins.
+            Files.move(partial, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            partial = null;
+            if (objectStore != null) {
+                objectStore.putArtifact(OBJECT_STORE_PREFIX + key + ".zip", archive);
+                setObjectStoreExpiry();
+            }
+            logger.info("Stored {} as COLMAP artifact cache entry {} ({} bytes)", outputDir, key, Files.size(archive));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not store COLMAP artifact cache entry {}", key, e);
+        } finally {
+            if (partial != null) {
+                try {
+                    Files.deleteIfExists(partial);
+                } catch (IOException e) {
+                    logger.warn("Could not delete partial cache entry {}", partial, e);
+                }
+            }
+        }
+        evict();
+    }
+
+    /** Once per worker, as the rule lives in the bucket; a failure is retried with the next entry stored. */
+    private void setObjectStoreExpiry() {
+        if (objectStoreExpirySet || objectStoreExpiryDays <= 0) {
+            return;
+        }
+        try {
+            objectStore.expireArtifacts(OBJECT_STORE_PREFIX, objectStoreExpiryDays);
+            objectStoreExpirySet = true;
+        } catch (RuntimeException e) {
+            logger.warn("Could not set the expiry of the mirrored COLMAP artifact cache", e);
+        }
+    }
+
+    private boolean fetch(String key, Path archive) throws IOException {
+        if (objectStore == null || !objectStore.hasArtifact(OBJECT_STORE_PREFIX + key + ".zip")) {
+            return false;
+        }
+        Files.createDirectories(directory);
+        Path partial = directory.resolve(key + ".download");
+        Files.deleteIfExists(partial);
+        try {
+            objectStore.getArtifact(OBJECT_STORE_PREFIX + key + ".zip", partial);
+            Files.move(partial, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        final Path archive;
+        final long size;
+        final FileTime lastUsed;
+
+        Entry(Path archive, BasicFileAttributes attributes) {
+            this.archive = archive;
+            this.size = attributes.size();
+            this.lastUsed = attributes.lastModifiedTime();
+        }
+    }
+
+    private synchronized void evict() {
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> listing = Files.list(directory)) {
+            for (Path archive : (Iterable<Path>) listing.filter(file -> file.getFileName().toString().endsWith(".zip"))::iterator) {
+                try {
+                    Entry entry = new Entry(archive, Files.readAttributes(archive, BasicFileAttributes.class));
+                    entries.add(entry);
+                    total += entry.size;
+                } catch (IOException e) {
+                    // Evicted or replaced concurrently.
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list COLMAP artifact cache {}", directory, e);
+            return;
+        }
+        entries.sort(Comparator.comparing(entry -> entry.lastUsed));
+        for (Entry entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.archive);
+                total -= entry.size;
+                logger.info("Evicted COLMAP artifact cache entry {}", entry.archive.getFileName());
+            } catch (IOException e) {
+                logger.warn("Could not evict COLMAP artifact cache entry {}", entry.archive, e);
+            }
+        }
+    }
+
+    private Path archive(String key) {
+        return directory.resolve(key + ".zip");
+    }
+
+    /** Depth maps and undistorted images hardly compress, so the archive only stores them. */
+    private static void zip(Path dir, Path archive) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.setLevel(Deflater.NO_COMPRESSION);
+            for (Path file : files) {
+                zip.putNextEntry(new ZipEntry(dir.relativize(file).toString().replace('\\', '/')));
+                Files.copy(file, zip);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private static void unzip(Path archive, Path destination) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                Path target = destination.resolve(entry.getName()).normalize();
+                if (!target.startsWith(destination)) {
+                    throw new IOException("Archive entry escapes destination: " + entry.getName());
+                }
+                Files.createDirectories(target.getParent());
+                try (OutputStream out = Files.newOutputStream(target)) {
+                    zip.transferTo(out);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (Files.notExists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
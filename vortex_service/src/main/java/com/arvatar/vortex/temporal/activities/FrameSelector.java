@@ -0,0 +1,201 @@
+package com.arvatar.vortex.temporal.activities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Thins a viseme's frames out before COLMAP, whose matching cost grows with the square of the image count. Each frame
+ * is scored for sharpness (variance of the Laplacian) and fingerprinted with a 64-bit difference hash. Frames much
+ * blurrier than the viseme's median are dropped, then up to {@code maxFrames} are picked by farthest-point sampling
+ * on the hash distance, starting from the sharpest, which skips near-duplicates and favours frames that look
+ * different, i.e. were taken from a different head pose. Rejected frames are deleted.
+ */
+final class FrameSelector {
+
+    /** Longest side frames are scaled down to before scoring. */
+    private static final int ANALYSIS_SIZE = 512;
+    /** COLMAP needs at least this many images, so blur filtering never goes below it. */
+    private static final int MIN_FRAMES = 3;
+
+    private final Logger logger = LoggerFactory.getLogger(FrameSelector.class);
+    private final int maxFrames;
+    private final double minSharpnessRatio;
+    private final int duplicateDistance;
+
+    /**
+     * @param maxFrames         frames kept per viseme; 0 or less keeps every frame that passes the other checks
+     * @param minSharpnessRatio frames less sharp than this fraction of the median are dropped
+     * @param duplicateDistance frames within this many differing hash bits of a kept frame are duplicates
+     */
+    FrameSelector(int maxFrames, double minSharpnessRatio, int duplicateDistance) {
+        this.maxFrames = maxFrames;
+        this.minSharpnessRatio = minSharpnessRatio;
+        this.duplicateDistance = duplicateDistance;
+    }
+
+    private static final class ScoredFrame {
+        final Path file;
+        final double sharpness;
+        final long hash;
+        int distanceToSelected = Integer.MAX_VALUE;
+
+        ScoredFrame(Path file, double sharpness, long hash) {
+            this.file = file;
+            this.sharpness = sharpness;
+            this.hash = hash;
+        }
+    }
+
+    /** @return the number of frames left in {@code frameDir} */
+    int select(String visemeId, Path frameDir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(frameDir)) {
+            files = listing.filter(file -> file.getFileName().toString().toLowerCase().endsWith(".jpg"))
+                    .collect(Collectors.toList());
+        }
+        if (files.size() <= MIN_FRAMES) {
+            return files.size();
+        }
+        List<ScoredFrame> frames;
+        try {
+            frames = files.parallelStream().map(FrameSelector::score).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        frames.sort(Comparator.comparingDouble((ScoredFrame frame) -> frame.sharpness).reversed());
+
+        double medianSharpness = frames.get(frames.size() / 2).sharpness;
+        List<ScoredFrame> candidates = new ArrayList<>();
+        for (ScoredFrame frame : frames) {
+            if (frame.sharpness >= medianSharpness * minSharpnessRatio || candidates.size() < MIN_FRAMES) {
+                candidates.add(frame);
+            }
+        }
+        int blurry = frames.size() - candidates.size();
+
+        List<ScoredFrame> selected = new ArrayList<>();
+        int limit = maxFrames > 0 ? Math.max(MIN_FRAMES, maxFrames) : Integer.MAX_VALUE;
+        ScoredFrame next = candidates.get(0);
+        while (next != null && selected.size() < limit) {
+            selected.add(next);
+            candidates.remove(next);
+            next = null;
+            for (ScoredFrame candidate : candidates) {
+                candidate.distanceToSelected = Math.min(candidate.distanceToSelected,
+                        Long.bitCount(candidate.hash ^ selected.get(selected.size() - 1).hash));
+                // Candidates are sorted by sharpness, so the first of equally distant ones is the sharpest.
+                if (candidate.distanceToSelected > duplicateDistance
+                        && (next == null || candidate.distanceToSelected > next.distanceToSelected)) {
+                    next = candidate;
+                }
+            }
+        }
+
+        // Too few distinct frames still get a chance at reconstruction, with the sharpest of the rest.
+        for (int i = 0; selected.size() < MIN_FRAMES && i < candidates.size(); i++) {
+            selected.add(candidates.get(i));
+        }
+
+        Set<ScoredFrame> kept = new HashSet<>(selected);
+        for (ScoredFrame frame : frames) {
+            if (!kept.contains(frame)) {
+                Files.deleteIfExists(frame.file);
+            }
+        }
+        logger.info("Viseme {}: kept {} of {} frame(s), dropped {} blurry and {} duplicate or surplus",
+                visemeId, selected.size(), frames.size(), blurry, frames.size() - blurry - selected.size());
+        return selected.size();
+    }
+
+    private static ScoredFrame score(Path file) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(file.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (image == null) {
+            throw new UncheckedIOException(new IOException("Unreadable frame " + file));
+        }
+        double scale = Math.min(1.0, (double) ANALYSIS_SIZE / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(9, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(8, (int) Math.round(image.getHeight() * scale));
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        int[] pixels = gray.getRaster().getPixels(0, 0, width, height, (int[]) null);
+        return new ScoredFrame(file, laplacianVariance(pixels, width, height), differenceHash(pixels, width, height));
+    }
+
+    /** Variance of the 4-neighbour Laplacian; edges are sharp where it is high, so blur lowers it. */
+    private static double laplacianVariance(int[] pixels, int width, int height) {
+        double sum = 0;
+        double sumOfSquares = 0;
+        long count = 0;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int i = y * width + x;
+                double laplacian = pixels[i - 1] + pixels[i + 1] + pixels[i - width] + pixels[i + width] - 4.0 * pixels[i];
+                sum += laplacian;
+                sumOfSquares += laplacian * laplacian;
+                count++;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        double mean = sum / count;
+        return sumOfSquares / count - mean * mean;
+    }
+
+    /**
+     * 64-bit dHash: the image averaged down to 9x8 cells, one bit per horizontally adjacent pair telling whether
+     * brightness rises. Similar images differ in few bits.
+     */
+    private static long differenceHash(int[] pixels, int width, int height) {
+        double[] cells = new double[9 * 8];
+        int[] counts = new int[9 * 8];
+        for (int y = 0; y < height; y++) {
+            int cellY = y * 8 / height;
+            for (int x = 0; x < width; x++) {
+                int cell = cellY * 9 + x * 9 / width;
+                cells[cell] += pixels[y * width + x];
+                counts[cell]++;
+            }
+        }
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] /= Math.max(1, counts[i]);
+        }
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                hash <<= 1;
+                if (cells[y * 9 + x + 1] > cells[y * 9 + x]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+}
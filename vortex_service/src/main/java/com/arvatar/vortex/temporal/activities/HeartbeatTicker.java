@@ -0,0 +1,67 @@
+package com.arvatar.vortex.temporal.activities;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Heartbeats an activity on a timer while it is busy with work that reports no progress of its own, such as a large
+ * download, unpacking an archive or loading a model. Every {@link SubprocessRunner#HEARTBEAT_INTERVAL_SECONDS} the
+ * current step and the time spent on it are passed to the heartbeat callback, from a shared timer thread, so the
+ * callback must not need the activity's own thread. When the callback throws, because the activity was cancelled or
+ * timed out, the ticker stops and {@link #close} rethrows the failure.
+ */
+final class HeartbeatTicker implements AutoCloseable {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "activity-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Consumer<String> heartbeat;
+    private final ScheduledFuture<?> task;
+    private volatile String step;
+    private volatile long stepStarted;
+    private volatile RuntimeException failure;
+
+    private HeartbeatTicker(String step, Consumer<String> heartbeat) {
+        this.heartbeat = heartbeat;
+        step(step);
+        this.task = TIMER.scheduleAtFixedRate(this::tick, SubprocessRunner.HEARTBEAT_INTERVAL_SECONDS,
+                SubprocessRunner.HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    static HeartbeatTicker start(String step, Consumer<String> heartbeat) {
+        return new HeartbeatTicker(step, heartbeat);
+    }
+
+    /** Names what the activity is doing now; heartbeats report it until the next call. */
+    void step(String step) {
+        this.stepStarted = System.nanoTime();
+        this.step = step;
+    }
+
+    private void tick() {
+        if (failure != null) {
+            return;
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - stepStarted);
+        try {
+            heartbeat.accept(step + " after " + elapsed + "s");
+        } catch (RuntimeException e) {
+            failure = e;
+            task.cancel(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        task.cancel(false);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -3,8 +3,61 @@ package com.arvatar.vortex.temporal.activities;
 import com.arvatar.vortex.models.AsrPcdJob;
 import io.temporal.activity.ActivityInterface;
 
+import java.util.List;
+
 @ActivityInterface
 public interface PcdActivities {
+    /** Attempts the workflow allows {@link #reconstructViseme} before giving up on that viseme. */
+    int RECONSTRUCTION_ATTEMPTS = 3;
+    /** Stands in for a viseme id in the fair-share slot {@link #buildSharedSparseModel} takes. */
+    String SHARED_SPARSE_MODEL_SLOT = "shared-sparse-model";
+
+    /**
+     * Runs the whole PCD pipeline in one activity. Kept for workflows started before the per-viseme fan-out; new
+     * workflows call the activities below instead.
+     */
     void executePcdJob(AsrPcdJob job);
-}
 
+    /**
+     * Extracts and selects the frames of every viseme and stores one frame archive per viseme in the object store so
+     * that any PCD worker can reconstruct it.
+     *
+     * @return the visemes with enough frames to reconstruct
+     */
+    List<String> prepareVisemeFrames(AsrPcdJob job);
+
+    /**
+     * Registers the frames of all visemes in one sparse model, so that camera poses and intrinsics are solved once for
+     * the whole job, and stores it in the object store.
+     *
+     * @return {@code false} if the shared model is disabled or could not be built; visemes are then reconstructed
+     * with {@link #reconstructViseme}
+     */
+    boolean buildSharedSparseModel(AsrPcdJob job, List<String> visemeIds);
+
+    /**
+     * Reconstructs and publishes the point cloud of a single viseme from its frame archive.
+     *
+     * @return {@code true} if a point cloud was published, {@code false} if COLMAP could not produce one
+     */
+    boolean reconstructViseme(AsrPcdJob job, String visemeId);
+
+    /**
+     * Like {@link #reconstructViseme}, but takes the viseme's camera poses from the model
+     * {@link #buildSharedSparseModel} stored instead of running a sparse reconstruction of its own.
+     */
+    boolean reconstructVisemeInSharedModel(AsrPcdJob job, String visemeId);
+
+    /** Records the published visemes in the guru's asset inventory and marks the job completed. */
+    void finalizePcdJob(AsrPcdJob job, List<String> visemeIds);
+
+    /**
+     * Takes one of the guru's reconstruction slots for this viseme, failing with a retryable
+     * {@code GuruFairShareExceeded} error while the guru already runs its share.
+     */
+    void acquireReconstructionSlot(AsrPcdJob job, String visemeId);
+
+    void releaseReconstructionSlot(AsrPcdJob job, String visemeId);
+
+    void markPcdJobFailed(AsrPcdJob job);
+}
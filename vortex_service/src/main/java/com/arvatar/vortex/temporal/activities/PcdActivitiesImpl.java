@@ -3,32 +3,167 @@ package com.arvatar.vortex.temporal.activities;
 import com.arvatar.vortex.models.AsrPcdJob;
 import com.arvatar.vortex.models.JobStatus;
 import com.arvatar.vortex.dto.MinIOS3Client;
+import com.arvatar.vortex.pointcloud.PlyReader;
+import com.arvatar.vortex.pointcloud.PlyWriter;
+import com.arvatar.vortex.pointcloud.PointCloud;
+import com.arvatar.vortex.pointcloud.PointCloudFilters;
+import com.arvatar.vortex.pointcloud.PointCloudLod;
+import com.arvatar.vortex.service.GuruFairShare;
+import com.arvatar.vortex.service.JobStateStore;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.temporal.activity.Activity;
+import io.temporal.activity.ActivityExecutionContext;
+import io.temporal.activity.ActivityInfo;
+import io.temporal.failure.ApplicationFailure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 @Component
 public class PcdActivitiesImpl implements PcdActivities {
 
+    /** Lists every image of a shared sparse model as {@code <viseme>/<frame>}, one per line. */
+    private static final String SHARED_MODEL_IMAGE_NAMES = "image_names.txt";
+    /** Following frames each frame of a shared sparse model is matched against. */
+    private static final int SHARED_MODEL_MATCH_OVERLAP = 20;
+
     private final MinIOS3Client objectStoreClient;
     private final ObjectMapper objectMapper;
+    private final GuruFairShare fairShare;
+    private final JobStateStore jobStateStore;
+    private final SubprocessPool frameExtractionPool;
+    private final FrameSelector frameSelector;
+    private final Timer directStartLatency;
+    private final Timer streamStartLatency;
+    private final boolean sharedSparseModel;
+    private final ColmapArtifactCache artifactCache;
+    private final ScratchSpace scratchSpace;
+    private final Duration orphanAge;
+    private final Duration orphanSweepInterval;
+    private final ScheduledExecutorService orphanSweeper;
+    private final boolean postProcessing;
+    private final int voxelResolution;
+    private final int outlierNeighbours;
+    private final double outlierStdRatio;
+    private final int[] lodLevels;
     private final Logger logger = LoggerFactory.getLogger(PcdActivitiesImpl.class);
 
-    public PcdActivitiesImpl() {
+    public PcdActivitiesImpl(GuruFairShare fairShare, JobStateStore jobStateStore, MeterRegistry meterRegistry,
+                             @Value("${vortex.pcd.frame-extraction.processes:0}") int frameExtractionProcesses,
+                             @Value("${vortex.pcd.frame-selection.max-frames:60}") int maxFramesPerViseme,
+                             @Value("${vortex.pcd.frame-selection.min-sharpness-ratio:0.35}") double minSharpnessRatio,
+                             @Value("${vortex.pcd.frame-selection.duplicate-distance:4}") int duplicateDistance,
+                             @Value("${vortex.pcd.shared-sparse-model:true}") boolean sharedSparseModel,
+                             @Value("${vortex.pcd.artifact-cache.dir:${java.io.tmpdir}/vortex-colmap-cache}") String artifactCacheDir,
+                             @Value("${vortex.pcd.artifact-cache.max-size:20GB}") DataSize artifactCacheSize,
+                             @Value("${vortex.pcd.artifact-cache.object-store:true}") boolean artifactCacheInObjectStore,
+                             @Value("${vortex.pcd.artifact-cache.object-store-expiry:14d}") Duration artifactCacheExpiry,
+                             @Value("${vortex.pcd.scratch.root:${java.io.tmpdir}}") String scratchRoot,
+                             @Value("${vortex.pcd.scratch.min-free:10GB}") DataSize scratchMinFree,
+                             @Value("${vortex.pcd.scratch.workspace-size:5GB}") DataSize workspaceSize,
+                             @Value("${vortex.pcd.scratch.admission-timeout:15m}") Duration scratchAdmissionTimeout,
+                             @Value("${vortex.pcd.scratch.orphan-age:12h}") Duration orphanAge,
+                             @Value("${vortex.pcd.scratch.orphan-sweep-interval:1h}") Duration orphanSweepInterval,
+                             @Value("${vortex.pcd.post-processing.enabled:true}") boolean postProcessing,
+                             @Value("${vortex.pcd.post-processing.voxel-resolution:256}") int voxelResolution,
+                             @Value("${vortex.pcd.post-processing.outlier-neighbours:16}") int outlierNeighbours,
+                             @Value("${vortex.pcd.post-processing.outlier-std-ratio:2.0}") double outlierStdRatio,
+                             @Value("${vortex.pcd.lod.levels:4096,16384,65536}") int[] lodLevels) {
         this.objectStoreClient = new MinIOS3Client();
         this.objectMapper = new ObjectMapper();
+        this.fairShare = fairShare;
+        this.jobStateStore = jobStateStore;
+        this.directStartLatency = startLatencyTimer(meterRegistry, "direct");
+        this.streamStartLatency = startLatencyTimer(meterRegistry, "stream");
+        this.frameExtractionPool = new SubprocessPool(frameExtractionProcesses);
+        this.frameSelector = new FrameSelector(maxFramesPerViseme, minSharpnessRatio, duplicateDistance);
+        this.sharedSparseModel = sharedSparseModel;
+        this.artifactCache = new ColmapArtifactCache(Paths.get(artifactCacheDir), artifactCacheSize.toBytes(),
+                artifactCacheInObjectStore ? objectStoreClient : null, (int) artifactCacheExpiry.toDays());
+        // The cache's budget counts against the scratch volume when both are on it, which is the default.
+        this.scratchSpace = new ScratchSpace(Paths.get(scratchRoot), scratchMinFree.toBytes(), workspaceSize.toBytes(),
+                scratchAdmissionTimeout, Paths.get(artifactCacheDir), Math.max(0, artifactCacheSize.toBytes()));
+        this.orphanAge = orphanAge;
+        this.orphanSweepInterval = orphanSweepInterval;
+        this.orphanSweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scratch-orphan-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.postProcessing = postProcessing;
+        this.voxelResolution = voxelResolution;
+        this.outlierNeighbours = outlierNeighbours;
+        this.outlierStdRatio = outlierStdRatio;
+        this.lodLevels = lodLevels;
+    }
+
+    /**
+     * Workspaces a crashed worker left behind, and that no retry resumes any more, would fill the scratch volume. So
+     * would those of attempts that gave up on this worker while it kept running, so the sweep repeats.
+     */
+    @PostConstruct
+    public void cleanUpOrphanedWorkspaces() {
+        orphanSweeper.scheduleWithFixedDelay(() -> {
+            try {
+                scratchSpace.cleanUpOrphans(orphanAge);
+            } catch (RuntimeException e) {
+                logger.warn("Sweeping orphaned scratch workspaces failed", e);
+            }
+        }, 0, orphanSweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        orphanSweeper.shutdownNow();
+        frameExtractionPool.close();
+    }
+
+    private static Timer startLatencyTimer(MeterRegistry meterRegistry, String mode) {
+        return Timer.builder("vortex.job.pcd.start.latency")
+                .description("Time from job submission at upload to its PCD workflow scheduling its first activity")
+                .tag("mode", mode)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the PCD start latency once per job, on the first attempt of its first activity. The activity's
+     * scheduled time comes from the Temporal server and the submission time from the uploading node, so the
+     * figure assumes clocks kept in sync (NTP).
+     */
+    private void recordStartLatency(AsrPcdJob job) {
+        ActivityInfo info = Activity.getExecutionContext().getInfo();
+        if (job.submittedAt == null || info.getAttempt() > 1) {
+            return;
+        }
+        Timer latency = job.directDispatch ? directStartLatency : streamStartLatency;
+        latency.record(Duration.between(job.submittedAt, Instant.ofEpochMilli(info.getScheduledTimestamp())));
     }
 
     /**
@@ -59,25 +194,572 @@ public class PcdActivitiesImpl implements PcdActivities {
         return false;
     }
 
+
     @Override
     public void executePcdJob(AsrPcdJob job) {
+        try {
+            List<String> visemeIds = prepareVisemeFrames(job);
+            List<String> published = new ArrayList<>();
+            for (String visemeId : visemeIds) {
+                if (reconstructViseme(job, visemeId)) {
+                    published.add(visemeId);
+                }
+            }
+            finalizePcdJob(job, published);
+        } catch (RuntimeException e) {
+            markPcdJobFailed(job);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<String> prepareVisemeFrames(AsrPcdJob job) {
+        recordStartLatency(job);
         job.status = JobStatus.PCD_STARTED;
-        objectStoreClient.updateJob(job);
+        jobStateStore.updateStatus(job);
+        Path workDir = null;
         try {
-            JsonNode transcription = objectMapper.readTree(job.asrResultJsonString);
+            JsonNode transcription = readMouthCues(job);
             Map<String, List<JsonNode>> visemeAudioBoundariesMap = getVisemeBounds(transcription);
-            Map<String, List<Path>> visemeSnippetFileMap = visemeAudioSnipFileMap(job.guruId,
-                    objectStoreClient.getVideo(job.videoKey), visemeAudioBoundariesMap);
-            Map<String, Path> visemeExtractedFramesMap = extractFrameByFrameFromSnippet(job.guruId, visemeSnippetFileMap);
-            createAndPublishPcdFromFrames(job.guruId, visemeExtractedFramesMap);
-            job.status = JobStatus.PCD_COMPLETED;
-            objectStoreClient.updateJob(job);
-            logger.info("PCD job completed for guruId: {} pcd job {}", job.guruId, job.jobId);
+            workDir = scratchSpace.allocate("frames-" + job.jobId, this::heartbeat);
+            Path videoFile = workDir.resolve("video.mp4");
+            Files.write(videoFile, objectStoreClient.getVideo(job.videoKey));
+            // Slices heartbeat from the pool's threads, which have no activity context of their own.
+            ActivityExecutionContext context = Activity.getExecutionContext();
+            Map<String, Path> visemeExtractedFramesMap = VisemeFrameExtractor.extract(videoFile,
+                    visemeAudioBoundariesMap, workDir.resolve("frames"), frameExtractionPool, context::heartbeat);
+            List<String> reconstructable = new ArrayList<>();
+            for (Map.Entry<String, Path> entry : visemeExtractedFramesMap.entrySet()) {
+                String visemeId = entry.getKey();
+                heartbeat("selecting frames of viseme " + visemeId);
+                long imageCount = frameSelector.select(visemeId, entry.getValue());
+                if (imageCount < 3) {
+                    logger.warn("Skipping viseme {}: Not enough images ({}) for Colmap reconstruction. " +
+                        "Colmap requires at least 3 images. This viseme may have had too few or too short mouthCue occurrences.",
+                        visemeId, imageCount);
+                    continue;
+                }
+                Path archive = zipDirectory(entry.getValue());
+                try {
+                    objectStoreClient.putArtifact(frameArchiveKey(job, visemeId), archive);
+                } finally {
+                    Files.deleteIfExists(archive);
+                }
+                reconstructable.add(visemeId);
+            }
+            logger.info("Prepared frames of {} viseme(s) for reconstruction: {}", reconstructable.size(), reconstructable);
+            return reconstructable;
+        } catch (Exception e) {
+            logger.error("Preparing PCD frames failed for guruId: {} pcd job {}", job.guruId, job.jobId, e);
+            throw new RuntimeException("PCD frame preparation failed", e);
+        } finally {
+            if (workDir != null) {
+                scratchSpace.release(workDir);
+                try {
+                    deleteRecursively(workDir);
+                } catch (IOException e) {
+                    logger.warn("Failed to clean up frame directory {}", workDir, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean buildSharedSparseModel(AsrPcdJob job, List<String> visemeIds) {
+        if (!sharedSparseModel || visemeIds.size() < 2) {
+            return false;
+        }
+        ActivityExecutionContext context = Activity.getExecutionContext();
+        String activity = context.getInfo().getActivityType();
+        renewReconstructionSlot(job, SHARED_SPARSE_MODEL_SLOT);
+        ReconstructionCheckpoint checkpoint = resumableCheckpoint(context, activity, null);
+        boolean succeeded = false;
+        Path workspaceBaseDir = null;
+        try {
+            if (checkpoint != null) {
+                workspaceBaseDir = Paths.get(checkpoint.workspace);
+                logger.info("Resuming shared sparse model of pcd job {} in {} after stages {}",
+                        job.jobId, workspaceBaseDir, checkpoint.completedStages);
+            } else {
+                workspaceBaseDir = scratchSpace.allocate(job.jobId + "-shared", context::heartbeat);
+                checkpoint = new ReconstructionCheckpoint(workspaceBaseDir, activity, null);
+            }
+            Path imageDir = workspaceBaseDir.resolve("images");
+            if (!checkpoint.isCompleted("frames")) {
+                for (String visemeId : visemeIds) {
+                    downloadFrames(job, visemeId, imageDir.resolve(visemeId));
+                }
+                checkpoint.complete("frames");
+                context.heartbeat(checkpoint);
+            }
+
+            String useGpu = isCudaAvailable() ? "1" : "0";
+            Path database = workspaceBaseDir.resolve("database.db");
+            Path sparseDir = Files.createDirectories(workspaceBaseDir.resolve("sparse"));
+            // Every frame comes from the same camera, so all of them share one set of intrinsics.
+            ProcessBuilder features = colmapProcess("feature_extractor",
+                    "--database_path", database.toAbsolutePath().toString(),
+                    "--image_path", imageDir.toAbsolutePath().toString(),
+                    "--ImageReader.single_camera", "1",
+                    "--SiftExtraction.use_gpu", useGpu);
+            // Matching every pair is quadratic in the pooled frames. COLMAP orders images by name, which is by viseme
+            // and then by time, so each frame is matched against its next few neighbours in time; the subject and
+            // camera barely move in a recording, so the neighbours across a viseme boundary join the visemes up.
+            ProcessBuilder matches = colmapProcess("sequential_matcher",
+                    "--database_path", database.toAbsolutePath().toString(),
+                    "--SequentialMatching.overlap", Integer.toString(SHARED_MODEL_MATCH_OVERLAP),
+                    "--SiftMatching.use_gpu", useGpu);
+            ProcessBuilder mapper = colmapProcess("mapper",
+                    "--database_path", database.toAbsolutePath().toString(),
+                    "--image_path", imageDir.toAbsolutePath().toString(),
+                    "--output_path", sparseDir.toAbsolutePath().toString());
+            String cacheKey = null;
+            if (artifactCache.isEnabled() && !checkpoint.isCompleted("mapper")) {
+                List<String> options = new ArrayList<>(ColmapArtifactCache.options(features));
+                options.addAll(ColmapArtifactCache.options(matches));
+                options.addAll(ColmapArtifactCache.options(mapper));
+                cacheKey = ColmapArtifactCache.key(ColmapArtifactCache.hashFiles(imageDir), "shared-sparse", options);
+                boolean restored;
+                try (HeartbeatTicker ticker = checkpointTicker(context, checkpoint, "restoring cached sparse model")) {
+                    restored = artifactCache.restore(cacheKey, sparseDir);
+                }
+                checkpoint.progress = null;
+                if (restored) {
+                    checkpoint.complete("features");
+                    checkpoint.complete("matches");
+                    checkpoint.complete("mapper");
+                    context.heartbeat(checkpoint);
+                }
+            }
+            logger.info("Building shared sparse model of pcd job {} from the frames of {} viseme(s)",
+                    job.jobId, visemeIds.size());
+            int exitCode = runColmapStage("features", features, workspaceBaseDir.resolve("feature_extraction.log"),
+                    checkpoint);
+            if (exitCode == 0) {
+                exitCode = runColmapStage("matches", matches, workspaceBaseDir.resolve("matching.log"), checkpoint);
+            }
+            boolean mapped = checkpoint.isCompleted("mapper");
+            if (exitCode == 0) {
+                exitCode = runColmapStage("mapper", mapper, workspaceBaseDir.resolve("mapper.log"), checkpoint);
+            }
+            Path model = sparseDir.resolve("0");
+            succeeded = true;
+            if (exitCode != 0 || !Files.exists(model.resolve("images.bin"))) {
+                logger.warn("Shared sparse model of pcd job {} could not be built (exit code {}), visemes are " +
+                        "reconstructed separately", job.jobId, exitCode);
+                return false;
+            }
+            if (cacheKey != null && !mapped) {
+                try (HeartbeatTicker ticker = checkpointTicker(context, checkpoint, "caching sparse model")) {
+                    artifactCache.store(cacheKey, sparseDir);
+                }
+                checkpoint.progress = null;
+            }
+            // Lets every viseme drop the other visemes' images from the model without reading COLMAP's binary format.
+            List<String> imageNames = new ArrayList<>();
+            for (String visemeId : visemeIds) {
+                try (java.util.stream.Stream<Path> files = Files.list(imageDir.resolve(visemeId))) {
+                    files.forEach(file -> imageNames.add(visemeId + "/" + file.getFileName()));
+                }
+            }
+            Files.write(model.resolve(SHARED_MODEL_IMAGE_NAMES), imageNames);
+            Path archive = zipDirectory(model);
+            try {
+                objectStoreClient.putArtifact(sharedModelKey(job), archive);
+            } finally {
+                Files.deleteIfExists(archive);
+            }
+            logger.info("Shared sparse model of pcd job {} registered {} image(s)", job.jobId, imageNames.size());
+            return true;
+        } catch (Exception e) {
+            logger.error("Shared sparse reconstruction failed for guruId: {} pcd job {}", job.guruId, job.jobId, e);
+            throw new RuntimeException("Shared sparse reconstruction failed", e);
+        } finally {
+            cleanUpWorkspace(context, workspaceBaseDir, succeeded);
+        }
+    }
+
+    @Override
+    public boolean reconstructViseme(AsrPcdJob job, String visemeId) {
+        return reconstruct(job, visemeId, false);
+    }
+
+    @Override
+    public boolean reconstructVisemeInSharedModel(AsrPcdJob job, String visemeId) {
+        return reconstruct(job, visemeId, true);
+    }
+
+    private boolean reconstruct(AsrPcdJob job, String visemeId, boolean fromSharedModel) {
+        ActivityExecutionContext context = Activity.getExecutionContext();
+        String activity = context.getInfo().getActivityType();
+        renewReconstructionSlot(job, visemeId);
+        ReconstructionCheckpoint checkpoint = resumableCheckpoint(context, activity, visemeId);
+        boolean succeeded = false;
+        Path workspaceBaseDir = null;
+        try {
+            if (checkpoint != null) {
+                workspaceBaseDir = Paths.get(checkpoint.workspace);
+                logger.info("Resuming viseme {} of pcd job {} in {} after stages {}",
+                        visemeId, job.jobId, workspaceBaseDir, checkpoint.completedStages);
+            } else {
+                workspaceBaseDir = scratchSpace.allocate(job.jobId + "-" + visemeId, context::heartbeat);
+                checkpoint = new ReconstructionCheckpoint(workspaceBaseDir, activity, visemeId);
+            }
+            // The shared model names its images <viseme>/<frame>, so COLMAP is pointed at their parent directory.
+            Path imagePath = fromSharedModel ? workspaceBaseDir.resolve("images") : workspaceBaseDir.resolve("frames");
+            Path visemeFrameDir = fromSharedModel ? imagePath.resolve(visemeId) : imagePath;
+            Path sharedModel = fromSharedModel ? workspaceBaseDir.resolve("shared-model") : null;
+            if (!checkpoint.isCompleted("frames")) {
+                downloadFrames(job, visemeId, visemeFrameDir);
+                if (sharedModel != null) {
+                    Files.createDirectories(sharedModel);
+                    Path archive = workspaceBaseDir.resolve("shared-model.zip");
+                    objectStoreClient.getArtifact(sharedModelKey(job), archive);
+                    unzip(archive, sharedModel);
+                    Files.delete(archive);
+                }
+                checkpoint.complete("frames");
+                context.heartbeat(checkpoint);
+            }
+
+            Path pointCloud = workspaceBaseDir.resolve(visemeId + ".ply");
+            if (!checkpoint.isCompleted("point-cloud")) {
+                boolean cudaAvailable = isCudaAvailable();
+                if (cudaAvailable) {
+                    logger.info("CUDA detected - Dense reconstruction will use GPU acceleration");
+                } else {
+                    logger.info("CUDA not available - Dense reconstruction will use CPU (slower but will produce detailed point clouds)");
+                }
+                pointCloud = reconstructVisemeFromFrames(visemeId, visemeFrameDir, imagePath, sharedModel,
+                        workspaceBaseDir, cudaAvailable, checkpoint);
+                if (pointCloud == null) {
+                    succeeded = true;
+                    logger.warn("No point cloud could be created for viseme {} of guruId: {}", visemeId, job.guruId);
+                    return false;
+                }
+                try (HeartbeatTicker ticker = checkpointTicker(context, checkpoint,
+                        "post-processing point cloud of viseme " + visemeId)) {
+                    postProcessPointCloud(visemeId, pointCloud);
+                }
+                // The fused cloud has been moved and rewritten, so a retry resumes from the post-processed file.
+                checkpoint.complete("point-cloud");
+                checkpoint.progress = null;
+                context.heartbeat(checkpoint);
+            }
+            try (HeartbeatTicker ticker = checkpointTicker(context, checkpoint,
+                    "publishing point cloud of viseme " + visemeId)) {
+                publishPointCloud(job, visemeId, pointCloud);
+            }
+            succeeded = true;
+            return true;
         } catch (Exception e) {
-            job.status = JobStatus.PCD_FAILED;
-            objectStoreClient.updateJob(job);
-            logger.error("PCD job failed for guruId: {} pcd job {}", job.guruId, job.jobId, e);
-            throw new RuntimeException("PCD job failed", e);
+            logger.error("Reconstruction of viseme {} failed for guruId: {} pcd job {}", visemeId, job.guruId, job.jobId, e);
+            throw new RuntimeException("Reconstruction of viseme " + visemeId + " failed", e);
+        } finally {
+            cleanUpWorkspace(context, workspaceBaseDir, succeeded);
+        }
+    }
+
+    /**
+     * Rewrites the fused cloud at the device's voxel resolution, without the floating specks stereo fusion leaves
+     * around the subject and without COLMAP's normals, which the device does not use.
+     */
+    private void postProcessPointCloud(String visemeId, Path pointCloud) throws IOException {
+        if (!postProcessing) {
+            return;
+        }
+        long started = System.nanoTime();
+        long originalBytes = Files.size(pointCloud);
+        PointCloud cloud = PlyReader.read(pointCloud);
+        float voxelSize = PointCloudFilters.voxelSize(cloud, voxelResolution);
+        PointCloud downsampled = PointCloudFilters.voxelDownsample(cloud, voxelSize);
+        PointCloud filtered = PointCloudFilters.removeStatisticalOutliers(downsampled, outlierNeighbours,
+                outlierStdRatio, voxelSize);
+        // Written aside and moved over the original, so a failed attempt leaves the fused cloud for its retry.
+        Path processed = pointCloud.resolveSibling(pointCloud.getFileName() + ".processing");
+        PlyWriter.write(filtered, processed);
+        Files.move(processed, pointCloud, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Viseme {}: {} points downsampled to {}, {} outliers removed, {} -> {} bytes in {} ms",
+                visemeId, cloud.size(), downsampled.size(), downsampled.size() - filtered.size(), originalBytes,
+                Files.size(pointCloud), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Publishes the full cloud as {@code <guruId>/<viseme>.ply} and its levels of detail as
+     * {@code <guruId>/lod/<viseme>/<points>.ply}, each with its point count in the {@code points} metadata, for
+     * {@code GetPointCloud} to serve the largest one a device can take. Levels of an earlier upload that this one does
+     * not overwrite are deleted only after the new ones are up, so a device never finds the viseme without levels.
+     */
+    private void publishPointCloud(AsrPcdJob job, String visemeId, Path pointCloud) throws IOException {
+        PointCloud cloud = PlyReader.read(pointCloud);
+        String lodPrefix = job.guruId + "/lod/" + visemeId + "/";
+        List<String> levelKeys = new ArrayList<>();
+        int previousLevel = -1;
+        for (int maxPoints : java.util.stream.IntStream.of(lodLevels).sorted().toArray()) {
+            if (maxPoints >= cloud.size()) {
+                break;
+            }
+            PointCloud level = PointCloudLod.sample(cloud, maxPoints);
+            // A coarse octree level can satisfy several budgets.
+            if (level.size() == previousLevel) {
+                continue;
+            }
+            previousLevel = level.size();
+            Path levelFile = pointCloud.resolveSibling(visemeId + "-" + level.size() + ".ply");
+            PlyWriter.write(level, levelFile);
+            String levelKey = lodPrefix + level.size() + ".ply";
+            try {
+                objectStoreClient.putAsset(levelKey, levelFile,
+                        Map.of(MinIOS3Client.POINT_COUNT_METADATA, Integer.toString(level.size())));
+                levelKeys.add(levelKey);
+            } finally {
+                Files.deleteIfExists(levelFile);
+            }
+            logger.info("Viseme {}: published level of detail with {} of {} points", visemeId, level.size(), cloud.size());
+        }
+        objectStoreClient.putAsset(job.guruId + "/" + pointCloud.getFileName(), pointCloud,
+                Map.of(MinIOS3Client.POINT_COUNT_METADATA, Integer.toString(cloud.size())));
+        List<String> staleKeys = objectStoreClient.listAssets(lodPrefix);
+        staleKeys.removeAll(levelKeys);
+        objectStoreClient.deleteAssets(staleKeys);
+    }
+
+    private void downloadFrames(AsrPcdJob job, String visemeId, Path frameDir) throws IOException {
+        Files.createDirectories(frameDir);
+        Path archive = frameDir.resolveSibling(visemeId + "-frames.zip");
+        objectStoreClient.getArtifact(frameArchiveKey(job, visemeId), archive);
+        unzip(archive, frameDir);
+        Files.delete(archive);
+    }
+
+    /** A failed attempt leaves its workspace for the retry to resume from, unless no retry will follow. */
+    private void cleanUpWorkspace(ActivityExecutionContext context, Path workspaceBaseDir, boolean succeeded) {
+        if (workspaceBaseDir != null) {
+            scratchSpace.release(workspaceBaseDir);
+        }
+        boolean retryFollows = context.getInfo().getAttempt() < RECONSTRUCTION_ATTEMPTS;
+        if (workspaceBaseDir != null && (succeeded || !retryFollows)) {
+            try {
+                deleteRecursively(workspaceBaseDir);
+            } catch (IOException e) {
+                logger.warn("Failed to cleanup workspace directory: {}", workspaceBaseDir, e);
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private JsonNode readMouthCues(AsrPcdJob job) throws IOException {
+        if (job.asrResultKey == null) {
+            return objectMapper.readTree(job.asrResultJsonString);
+        }
+        Path mouthCues = Files.createTempFile("mouth-cues-" + job.jobId, ".json");
+        try {
+            objectStoreClient.getArtifact(job.asrResultKey, mouthCues);
+            return objectMapper.readTree(mouthCues.toFile());
+        } finally {
+            Files.deleteIfExists(mouthCues);
+        }
+    }
+
+    @Override
+    public void finalizePcdJob(AsrPcdJob job, List<String> visemeIds) {
+        logger.info("PCD creation summary: published {} viseme(s): {}", visemeIds.size(), visemeIds);
+        objectStoreClient.updateGuruAssetInventory(job.guruId, new ArrayList<>(visemeIds));
+        objectStoreClient.deleteArtifacts(job.jobId + "/");
+        job.status = JobStatus.PCD_COMPLETED;
+        jobStateStore.updateStatus(job);
+        logger.info("PCD job completed for guruId: {} pcd job {}", job.guruId, job.jobId);
+    }
+
+    @Override
+    public void acquireReconstructionSlot(AsrPcdJob job, String visemeId) {
+        if (!fairShare.tryAcquire(job.guruId, reconstructionHolder(job, visemeId))) {
+            throw ApplicationFailure.newFailure(
+                    "Guru " + job.guruId + " already runs its share of reconstructions", "GuruFairShareExceeded");
+        }
+    }
+
+    @Override
+    public void releaseReconstructionSlot(AsrPcdJob job, String visemeId) {
+        fairShare.release(job.guruId, reconstructionHolder(job, visemeId));
+    }
+
+    /** Every attempt renews the lease the workflow took, as the retries of one slot can outlast it. */
+    private void renewReconstructionSlot(AsrPcdJob job, String visemeId) {
+        try {
+            fairShare.renew(job.guruId, reconstructionHolder(job, visemeId));
+        } catch (RuntimeException e) {
+            logger.warn("Could not renew the fair-share lease of viseme {} of pcd job {}", visemeId, job.jobId, e);
+        }
+    }
+
+    private static String reconstructionHolder(AsrPcdJob job, String visemeId) {
+        return job.jobId + ":" + visemeId;
+    }
+
+    @Override
+    public void markPcdJobFailed(AsrPcdJob job) {
+        job.status = JobStatus.PCD_FAILED;
+        jobStateStore.updateStatus(job);
+        // The mouth cues stay so the PCD stage can be run again without repeating ASR.
+        objectStoreClient.deleteArtifacts(job.jobId + "/frames/");
+        objectStoreClient.deleteArtifacts(job.jobId + "/sparse/");
+        logger.error("PCD job failed for guruId: {} pcd job {}", job.guruId, job.jobId);
+    }
+
+    /**
+     * Runs one COLMAP step through {@link SubprocessRunner}, heartbeating its progress along with the checkpoint, and
+     * records the step as completed when it succeeds. A step the checkpoint already lists is skipped.
+     */
+    private int runColmapStage(String stage, ProcessBuilder builder, Path logFile, ReconstructionCheckpoint checkpoint)
+            throws IOException, InterruptedException {
+        if (checkpoint.isCompleted(stage)) {
+            logger.info("Skipping COLMAP stage {}, completed by a previous attempt", stage);
+            return 0;
+        }
+        ActivityExecutionContext context = Activity.getExecutionContext();
+        String label = builder.command().get(builder.command().indexOf("colmap") + 1);
+        int exitCode = SubprocessRunner.run(label, builder, logFile, SubprocessRunner.COLMAP_PROGRESS, progress -> {
+            checkpoint.progress = progress;
+            context.heartbeat(checkpoint);
+        });
+        if (exitCode == 0) {
+            checkpoint.complete(stage);
+            checkpoint.progress = null;
+            context.heartbeat(checkpoint);
+        }
+        return exitCode;
+    }
+
+    /**
+     * {@link #runColmapStage} behind the artifact cache: an output cached under {@code cacheKey} is restored into
+     * {@code outputDir} instead of running the step, and the output of a successful run is cached. A {@code null} key
+     * bypasses the cache.
+     */
+    private int runCachedColmapStage(String stage, String cacheKey, Path outputDir, ProcessBuilder builder, Path logFile,
+                                     ReconstructionCheckpoint checkpoint) throws IOException, InterruptedException {
+        if (cacheKey == null || checkpoint.isCompleted(stage)) {
+            return runColmapStage(stage, builder, logFile, checkpoint);
+        }
+        ActivityExecutionContext context = Activity.getExecutionContext();
+        boolean restored;
+        try (HeartbeatTicker ticker = checkpointTicker(context, checkpoint, "restoring cached " + stage + " output")) {
+            restored = artifactCache.restore(cacheKey, outputDir);
+        }
+        checkpoint.progress = null;
+        if (restored) {
+            logger.info("Skipping COLMAP stage {}, its output was cached", stage);
+            checkpoint.complete(stage);
+            context.heartbeat(checkpoint);
+            return 0;
+        }
+        int exitCode = runColmapStage(stage, builder, logFile, checkpoint);
+        if (exitCode == 0) {
+            try (HeartbeatTicker ticker = checkpointTicker(context, checkpoint, "caching " + stage + " output")) {
+                artifactCache.store(cacheKey, outputDir);
+            }
+            checkpoint.progress = null;
+        }
+        return exitCode;
+    }
+
+    /**
+     * The checkpoint the previous attempt of this activity left for {@code visemeId}, if it can be resumed on this
+     * worker. executePcdJob reconstructs every viseme in one activity, so its retry finds the checkpoint of whichever
+     * viseme ran last; that workspace is dropped, as no later heartbeat will point at it again.
+     */
+    private ReconstructionCheckpoint resumableCheckpoint(ActivityExecutionContext context, String activity,
+                                                         String visemeId) {
+        ReconstructionCheckpoint checkpoint;
+        try {
+            checkpoint = context.getHeartbeatDetails(ReconstructionCheckpoint.class).orElse(null);
+        } catch (RuntimeException e) {
+            // executePcdJob runs every step in one activity, so its details may be progress text of another step.
+            return null;
+        }
+        if (checkpoint == null || !checkpoint.isResumableHere()) {
+            return null;
+        }
+        if (!checkpoint.belongsTo(activity, visemeId)) {
+            logger.info("Discarding workspace {} of {} viseme {}, the attempt now runs {} viseme {}",
+                    checkpoint.workspace, checkpoint.activity, checkpoint.visemeId, activity, visemeId);
+            try {
+                deleteRecursively(Paths.get(checkpoint.workspace));
+            } catch (IOException e) {
+                logger.warn("Failed to clean up workspace {}", checkpoint.workspace, e);
+            }
+            return null;
+        }
+        return checkpoint;
+    }
+
+    private void heartbeat(String progress) {
+        Activity.getExecutionContext().heartbeat(progress);
+    }
+
+    /**
+     * Keeps heartbeating {@code checkpoint}, with the ticker's step as its progress, through work that reports no
+     * progress itself. The checkpoint stays the heartbeat details, so a retry can still resume from it.
+     */
+    private static HeartbeatTicker checkpointTicker(ActivityExecutionContext context, ReconstructionCheckpoint checkpoint,
+                                                    String step) {
+        checkpoint.progress = step;
+        context.heartbeat(checkpoint);
+        return HeartbeatTicker.start(step, progress -> {
+            checkpoint.progress = progress;
+            context.heartbeat(checkpoint);
+        });
+    }
+
+    private static String frameArchiveKey(AsrPcdJob job, String visemeId) {
+        return job.jobId + "/frames/" + visemeId + ".zip";
+    }
+
+    private static String cacheKey(String inputKey, String stage, ProcessBuilder builder) {
+        return inputKey == null ? null : ColmapArtifactCache.key(inputKey, stage, ColmapArtifactCache.options(builder));
+    }
+
+    private static String sharedModelKey(AsrPcdJob job) {
+        return job.jobId + "/sparse/model.zip";
+    }
+
+    /** {@code colmap <command> <args>} under a virtual display, as COLMAP's binaries link against Qt/OpenGL. */
+    private static ProcessBuilder colmapProcess(String command, String... args) {
+        List<String> commandLine = new ArrayList<>(List.of("xvfb-run", "-a", "-s", "-screen 0 1024x768x24",
+                "colmap", command));
+        commandLine.addAll(List.of(args));
+        ProcessBuilder builder = new ProcessBuilder(commandLine);
+        builder.environment().put("QT_QPA_PLATFORM", "offscreen");
+        builder.environment().put("LIBGL_ALWAYS_SOFTWARE", "1");
+        builder.environment().put("GALLIUM_DRIVER", "llvmpipe");
+        return builder;
+    }
+
+    /** Frames are already JPEG-compressed, so the archive only stores them. The archive is written next to {@code dir}. */
+    private static Path zipDirectory(Path dir) throws IOException {
+        Path archive = Files.createTempFile(dir.getParent(), dir.getFileName().toString(), ".zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive));
+             java.util.stream.Stream<Path> files = Files.list(dir)) {
+            zip.setLevel(Deflater.NO_COMPRESSION);
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                zip.putNextEntry(new ZipEntry(file.getFileName().toString()));
+                Files.copy(file, zip);
+                zip.closeEntry();
+            }
+        }
+        return archive;
+    }
+
+    private static void unzip(Path archive, Path destination) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                Path target = destination.resolve(entry.getName()).normalize();
+                if (!target.startsWith(destination)) {
+                    throw new IOException("Archive entry escapes destination: " + entry.getName());
+                }
+                Files.copy(zip, target, StandardCopyOption.REPLACE_EXISTING);
+            }
         }
     }
 
@@ -110,507 +792,382 @@ public class PcdActivitiesImpl implements PcdActivities {
         return visemeAudioTrackMap;
     }
 
-    private Map<String, List<Path>> visemeAudioSnipFileMap(String guruId, byte[] payload,
-                                                            Map<String, List<JsonNode>> visemeAudioTrackMap)
+    /**
+     * Runs the COLMAP pipeline for one viseme: sparse reconstruction, undistortion, patch-match stereo and fusion,
+     * falling back to the sparse point cloud when a dense step fails. Steps the checkpoint lists as completed are
+     * skipped, their output is already in the workspace. With a shared model the sparse step only removes the other
+     * visemes' images from it instead of reconstructing from scratch.
+     *
+     * @param imagePath   the image root COLMAP resolves image names against
+     * @param sharedModel the job's shared sparse model, or {@code null} to reconstruct the viseme on its own
+     * @return the point cloud file, or {@code null} if none could be produced
+     */
+    private Path reconstructVisemeFromFrames(String visemeId, Path visemeFrameDir, Path imagePath, Path sharedModel,
+                                             Path workspaceBaseDir, boolean cudaAvailable,
+                                             ReconstructionCheckpoint checkpoint)
             throws IOException, InterruptedException {
-        Path videoDir = Files.createTempDirectory(guruId);
-        Path videoFile = videoDir.resolve(Instant.now().toEpochMilli() + "mp4");
-        Files.write(videoFile, payload);
-        Map<String, List<Path>> visemeSnippetFileMap = new HashMap<>();
-        try {
-            for (Map.Entry<String, List<JsonNode>> entry : visemeAudioTrackMap.entrySet()) {
-                String visemeId = entry.getKey();
-                List<JsonNode> boundaries = entry.getValue();
-                int index = 0;
-                int skippedCount = 0;
-                for (JsonNode boundary : boundaries) {
-                    float start = boundary.get("start").floatValue();
-                    float end = boundary.get("end").floatValue();
-                    double duration = end - start;
-                    if (duration < 0.025) {
-                        skippedCount++;
-                        continue;
-                    }
+        Path visemeWorkspaceDir = workspaceBaseDir.resolve(visemeId);
+        Files.createDirectories(visemeWorkspaceDir);
+        
+        String workspacePath = visemeWorkspaceDir.toAbsolutePath().toString();
+        logger.info("Processing viseme {} - Running colmap with workspace: {}", visemeId, workspacePath);
 
-                    String fileName = visemeId + "_" + index++ + ".mp4";
-                    Path snipFile = videoDir.resolve(fileName);
-
-                    ProcessBuilder processBuilder = new ProcessBuilder(
-                            "ffmpeg", "-y", "-i", videoFile.toAbsolutePath().toString(), "-ss", String.valueOf(start),
-                            "-t", String.valueOf(duration), "-c", "copy", snipFile.toString()
-                    ).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD);
-                    Process process = processBuilder.start();
-                    int exitCode = process.waitFor();
-                    if (exitCode == 0) {
-                        visemeSnippetFileMap.computeIfAbsent(visemeId, key -> new ArrayList<>()).add(snipFile);
-                    } else {
-                        logger.warn("Failed to create snippet for viseme {} at time {}-{}", visemeId, start, end);
-                    }
-                }
-                if (skippedCount > 0) {
-                    logger.info("Skipped {} short duration snippet(s) (<0.05s) for viseme {}", skippedCount, visemeId);
-                }
-                int snippetCount = visemeSnippetFileMap.getOrDefault(visemeId, new ArrayList<>()).size();
-                if (snippetCount == 0) {
-                    logger.warn("Viseme {} has no valid snippets after filtering. All {} occurrence(s) were too short.", 
-                        visemeId, boundaries.size());
-                } else {
-                    logger.info("Created {} snippet(s) for viseme {}", snippetCount, visemeId);
+        long imageCount = 0;
+        try {
+            imageCount = Files.list(visemeFrameDir)
+                .filter(Files::isRegularFile)
+                .filter(p -> {
+                    String name = p.getFileName().toString().toLowerCase();
+                    return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png");
+                })
+                .count();
+        } catch (IOException e) {
+            logger.warn("Could not count images in {} for viseme {}", visemeFrameDir, visemeId, e);
+        }
+        
+        if (imageCount < 3) {
+            logger.warn("Skipping viseme {}: Not enough images ({}) for Colmap reconstruction. " +
+                "Colmap requires at least 3 images. This viseme may have had too few or too short mouthCue occurrences.", 
+                visemeId, imageCount);
+            return null;
+        }
+        logger.info("Viseme {} has {} images, proceeding with PCD creation", visemeId, imageCount);
+        // Every cache key chains on the one of the step before, so each covers the frames and all earlier options.
+        String inputKey = null;
+        if (artifactCache.isEnabled()) {
+            inputKey = ColmapArtifactCache.hashFiles(visemeFrameDir);
+            if (sharedModel != null) {
+                inputKey = ColmapArtifactCache.key(inputKey, "shared-model",
+                        List.of(visemeId, ColmapArtifactCache.hashFiles(sharedModel)));
+            }
+        }
+        ProcessBuilder sparseBuilder;
+        if (sharedModel != null) {
+            logger.info("Step 1: Extracting the viseme's {} images from the shared sparse model...", imageCount);
+            Path sharedSparsePath = Files.createDirectories(visemeWorkspaceDir.resolve("sparse").resolve("0"));
+            Path otherImages = visemeWorkspaceDir.resolve("other_visemes_images.txt");
+            List<String> otherImageNames = new ArrayList<>();
+            for (String imageName : Files.readAllLines(sharedModel.resolve(SHARED_MODEL_IMAGE_NAMES))) {
+                if (!imageName.startsWith(visemeId + "/")) {
+                    otherImageNames.add(imageName);
                 }
             }
-            logger.info("Created snippets for {} unique viseme(s) out of {} total viseme types", 
-                visemeSnippetFileMap.size(), visemeAudioTrackMap.size());
-            return visemeSnippetFileMap;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            Files.write(otherImages, otherImageNames);
+            sparseBuilder = colmapProcess("image_deleter",
+                    "--input_path", sharedModel.toAbsolutePath().toString(),
+                    "--output_path", sharedSparsePath.toAbsolutePath().toString(),
+                    "--image_names_path", otherImages.toAbsolutePath().toString());
+        } else {
+            logger.info("Step 1: Running sparse reconstruction with {} images...", imageCount);
+            sparseBuilder = colmapProcess("automatic_reconstructor",
+                    "--workspace_path", workspacePath,
+                    "--image_path", visemeFrameDir.toAbsolutePath().toString());
         }
-    }
+        java.io.File sparseLogFile = new java.io.File(visemeWorkspaceDir.toFile(), "sparse_reconstruction.log");
+        String sparseKey = cacheKey(inputKey, "sparse", sparseBuilder);
+        int sparseExitCode = runCachedColmapStage("sparse", sparseKey, visemeWorkspaceDir.resolve("sparse"),
+                sparseBuilder, sparseLogFile.toPath(), checkpoint);
+        if (sparseExitCode != 0) {
+            String errorDetails = "";
+            try {
+                errorDetails = new String(Files.readAllBytes(sparseLogFile.toPath()));
+                logger.error("Colmap sparse reconstruction log:\n{}", errorDetails);
+            } catch (IOException e) {
+                logger.warn("Could not read sparse reconstruction log", e);
+            }
+            logger.error("Colmap sparse reconstruction failed for viseme {} with exit code: {}", visemeId, sparseExitCode);
+            throw new RuntimeException("Colmap sparse reconstruction failed with exit code: " + sparseExitCode);
+        }
+        logger.info("Step 2: Validating sparse reconstruction output...");
+        Path sparseModelPath = visemeWorkspaceDir.resolve("sparse").resolve("0");
+        if (!Files.exists(sparseModelPath)) {
+            logger.error("Sparse model directory does not exist: {}", sparseModelPath);
+            return null;
+        }
+        Path camerasBin = sparseModelPath.resolve("cameras.bin");
+        Path imagesBin = sparseModelPath.resolve("images.bin");
+        Path points3DBin = sparseModelPath.resolve("points3D.bin");
+        
+        boolean hasRequiredFiles = Files.exists(camerasBin) && Files.exists(imagesBin) && Files.exists(points3DBin);
+        if (!hasRequiredFiles) {
+            logger.warn("Sparse model missing required files. Found: cameras.bin={}, images.bin={}, points3D.bin={}", 
+                Files.exists(camerasBin), Files.exists(imagesBin), Files.exists(points3DBin));
+            logger.warn("Sparse reconstruction may have failed. Attempting to export sparse point cloud as fallback...");
+            
+            // Fallback to sparse export
+            Path sparsePointCloud = exportSparsePointCloud(visemeId, sparseModelPath, workspaceBaseDir, checkpoint);
+            if (sparsePointCloud != null) {
+                logger.info("Successfully exported sparse point cloud as fallback for viseme {}", visemeId);
+            } else {
+                logger.error("Sparse reconstruction incomplete and sparse export also failed for viseme {}.", visemeId);
+            }
+            return sparsePointCloud;
+        }
+        
+        logger.info("Step 2: Running image undistortion...");
+        Path densePath = visemeWorkspaceDir.resolve("dense");
+        ProcessBuilder undistortBuilder = colmapProcess("image_undistorter",
+                "--image_path", imagePath.toAbsolutePath().toString(),
+                "--input_path", sparseModelPath.toAbsolutePath().toString(),
+                "--output_path", densePath.toAbsolutePath().toString());
 
-    private Map<String, Path> extractFrameByFrameFromSnippet(String guruId,
-                                                             Map<String, List<Path>> visemeSnippetFileMap)
-            throws IOException, InterruptedException {
-        Map<String, Path> visemeFrameDirMap = new HashMap<>();
-        for (Map.Entry<String, List<Path>> entry : visemeSnippetFileMap.entrySet()) {
-            String visemeId = entry.getKey();
-            List<Path> snippetFiles = entry.getValue();
-            Path outputDir = Files.createTempDirectory(guruId + "_frames");
-            Path visemeFrameDir = Files.createDirectories(outputDir.resolve(visemeId));
-            logger.info("Extracting frames for viseme {} from {} snippet(s)", visemeId, snippetFiles.size());
-            int snippetIndex = 0;
-            int successfulExtractions = 0;
-            for (Path file : snippetFiles) {
-                ProcessBuilder processBuilder = new ProcessBuilder(
-                        "ffmpeg", "-y", "-i", file.toAbsolutePath().toString(), "-vf", "fps=10", "-q:v", "2",
-                        visemeFrameDir + "/snippet" + snippetIndex + "_frame_%04d.jpg"
-                ).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD);
-                Process process = processBuilder.start();
-                int exitCode = process.waitFor();
-                if (exitCode == 0) {
-                    successfulExtractions++;
-                    final int currentSnippetIndex = snippetIndex;
-                    try {
-                        long frameCount = Files.list(visemeFrameDir)
-                            .filter(Files::isRegularFile)
-                            .filter(p -> p.getFileName().toString().startsWith("snippet" + currentSnippetIndex + "_frame_"))
-                            .count();
-                        logger.debug("Extracted {} frame(s) from snippet {} for viseme {}", frameCount, currentSnippetIndex, visemeId);
-                    } catch (IOException e) {
-                        logger.debug("Could not count frames for snippet {} of viseme {}", currentSnippetIndex, visemeId);
-                    }
-                } else {
-                    logger.warn("Frame extraction from snippet {} for viseme {} failed with exit code {}", 
-                        snippetIndex, visemeId, exitCode);
+        java.io.File undistortLogFile = new java.io.File(visemeWorkspaceDir.toFile(), "image_undistortion.log");
+        String undistortKey = cacheKey(sparseKey, "undistort", undistortBuilder);
+        int undistortExitCode = runCachedColmapStage("undistort", undistortKey, densePath, undistortBuilder,
+                undistortLogFile.toPath(), checkpoint);
+        
+        if (undistortExitCode != 0) {
+            String errorDetails = "";
+            try {
+                if (Files.exists(undistortLogFile.toPath())) {
+                    errorDetails = new String(Files.readAllBytes(undistortLogFile.toPath()));
+                    logger.error("Colmap image undistortion log:\n{}", errorDetails);
                 }
-                snippetIndex++;
+            } catch (IOException e) {
+                logger.warn("Could not read undistortion log", e);
             }
-            if (successfulExtractions == 0) {
-                logger.error("Failed to extract frames from any snippet for viseme {}", visemeId);
-            } else {
-                try {
-                    long totalFrames = Files.list(visemeFrameDir)
-                        .filter(Files::isRegularFile)
-                        .filter(p -> {
-                            String name = p.getFileName().toString().toLowerCase();
-                            return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png");
-                        })
-                        .count();
-                    logger.info("Extracted {} total frame(s) for viseme {} from {} successful snippet(s)", 
-                        totalFrames, visemeId, successfulExtractions);
-                } catch (IOException e) {
-                    logger.warn("Could not count total frames for viseme {}", visemeId, e);
+
+            if (undistortExitCode == 134) {
+                logger.error("Colmap image undistortion crashed with segmentation fault (exit code 134) for viseme {}. " +
+                    "This may indicate: invalid sparse model, memory issues, or corrupted images.", visemeId);
+                logger.warn("Attempting fallback to sparse point cloud export...");
+
+                Path sparsePointCloud = exportSparsePointCloud(visemeId, sparseModelPath, workspaceBaseDir, checkpoint);
+                if (sparsePointCloud != null) {
+                    logger.info("Successfully exported sparse point cloud as fallback after undistortion crash for viseme {}", visemeId);
+                    return sparsePointCloud;
                 }
             }
-            visemeFrameDirMap.put(visemeId, visemeFrameDir);
+            
+            logger.error("Colmap image undistortion failed for viseme {} with exit code: {}", visemeId, undistortExitCode);
+            return null;
         }
-        logger.info("Frame extraction completed for {} viseme(s)", visemeFrameDirMap.size());
-        return visemeFrameDirMap;
-    }
 
-    private void createAndPublishPcdFromFrames(String guruId, Map<String, Path> visemeFrameDirMap) throws IOException, InterruptedException {
-        Path workspaceBaseDir = Paths.get(System.getProperty("java.io.tmpdir"), guruId);
-        try {
-            Files.createDirectories(workspaceBaseDir);
-            List<String> extractedVisemeIds = new ArrayList<>();
-            List<String> skippedVisemeIds = new ArrayList<>();
-            logger.info("Starting PCD creation for {} unique viseme(s): {}", 
-                visemeFrameDirMap.size(), visemeFrameDirMap.keySet());
+        // Step 3: Patch match stereo - attempt CPU-based dense reconstruction
+        String executionMode = cudaAvailable ? "GPU (CUDA)" : "CPU";
+        logger.info("Step 3: Running patch match stereo using {} (this may take a while on CPU)...", executionMode);
+        Path dense0Path = densePath.resolve("0");
+        ProcessBuilder stereoBuilder = colmapProcess("patch_match_stereo",
+                "--workspace_path", dense0Path.toAbsolutePath().toString());
+        // Software rendering is only kept for CPU mode; with CUDA the flags are removed to allow GPU usage
+        if (cudaAvailable) {
+            stereoBuilder.environment().remove("LIBGL_ALWAYS_SOFTWARE");
+            stereoBuilder.environment().remove("GALLIUM_DRIVER");
+        }
+        
+        // Redirect output to log file for CPU mode (since it will take longer)
+        java.io.File stereoLogFile = new java.io.File(visemeWorkspaceDir.toFile(), "patch_match_stereo.log");
+        logger.info("Starting patch_match_stereo for viseme {} (mode: {})...", visemeId, executionMode);
+        if (!cudaAvailable) {
+            logger.info("CPU-based dense reconstruction in progress - this step can take 30 minutes to several hours depending on image count and resolution");
+        }
+        
+        // GPU and CPU patch match do not produce identical depth maps. Patch match only writes below stereo/, so that
+        // is all its entry holds; it is restored on top of the undistorted images and model already in place.
+        String stereoKey = cacheKey(undistortKey, "stereo-" + (cudaAvailable ? "gpu" : "cpu"), stereoBuilder);
+        int stereoExitCode = runCachedColmapStage("stereo", stereoKey, dense0Path.resolve("stereo"), stereoBuilder,
+                stereoLogFile.toPath(), checkpoint);
+        
+        if (stereoExitCode != 0) {
+            String errorDetails = "";
+            try {
+                if (Files.exists(stereoLogFile.toPath())) {
+                    errorDetails = new String(Files.readAllBytes(stereoLogFile.toPath()));
+                    logger.error("Colmap patch_match_stereo log (last 1000 chars):\n{}", 
+                        errorDetails.length() > 1000 ? errorDetails.substring(errorDetails.length() - 1000) : errorDetails);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read patch_match_stereo log", e);
+            }
+            
+            logger.error("Patch match stereo failed for viseme {} with exit code: {} (mode: {})", 
+                visemeId, stereoExitCode, executionMode);
+            logger.warn("Falling back to sparse point cloud export...");
             
-            // Check CUDA availability for informational purposes
-            boolean cudaAvailable = isCudaAvailable();
-            if (cudaAvailable) {
-                logger.info("CUDA detected - Dense reconstruction will use GPU acceleration");
+            // Fallback: Export sparse reconstruction as PLY
+            Path sparsePointCloud = exportSparsePointCloud(visemeId, sparseModelPath, workspaceBaseDir, checkpoint);
+            if (sparsePointCloud != null) {
+                logger.info("Successfully created PCD file from sparse reconstruction for viseme {}: {}", visemeId, sparsePointCloud);
             } else {
-                logger.info("CUDA not available - Dense reconstruction will use CPU (slower but will produce detailed point clouds)");
+                logger.error("Both dense reconstruction and sparse export failed for viseme {}", visemeId);
             }
-            
-            for (Map.Entry<String, Path> entry : visemeFrameDirMap.entrySet()) {
-                String visemeId = entry.getKey();
-                Path visemeFrameDir = entry.getValue();
-                Path visemeWorkspaceDir = workspaceBaseDir.resolve(visemeId);
-                Files.createDirectories(visemeWorkspaceDir);
-                
-                String workspacePath = visemeWorkspaceDir.toAbsolutePath().toString();
-                logger.info("Processing viseme {} - Running colmap with workspace: {}", visemeId, workspacePath);
-
-                long imageCount = 0;
-                try {
-                    imageCount = Files.list(visemeFrameDir)
-                        .filter(Files::isRegularFile)
-                        .filter(p -> {
-                            String name = p.getFileName().toString().toLowerCase();
-                            return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png");
-                        })
-                        .count();
-                } catch (IOException e) {
-                    logger.warn("Could not count images in {} for viseme {}", visemeFrameDir, visemeId, e);
-                }
-                
-                if (imageCount < 3) {
-                    logger.warn("Skipping viseme {}: Not enough images ({}) for Colmap reconstruction. " +
-                        "Colmap requires at least 3 images. This viseme may have had too few or too short mouthCue occurrences.", 
-                        visemeId, imageCount);
-                    skippedVisemeIds.add(visemeId);
-                    continue;
-                }
-                logger.info("Viseme {} has {} images, proceeding with PCD creation", visemeId, imageCount);
-                logger.info("Step 1: Running sparse reconstruction with {} images...", imageCount);
-                ProcessBuilder sparseBuilder = new ProcessBuilder(
-                        "xvfb-run", "-a", "-s", "-screen 0 1024x768x24",
-                        "colmap", "automatic_reconstructor",
-                        "--workspace_path", workspacePath,
-                        "--image_path", visemeFrameDir.toAbsolutePath().toString()
-                );
-                sparseBuilder.environment().put("QT_QPA_PLATFORM", "offscreen");
-                sparseBuilder.environment().put("LIBGL_ALWAYS_SOFTWARE", "1");
-                sparseBuilder.environment().put("GALLIUM_DRIVER", "llvmpipe");
-                java.io.File sparseLogFile = new java.io.File(visemeWorkspaceDir.toFile(), "sparse_reconstruction.log");
-                sparseBuilder.redirectErrorStream(true);
-                sparseBuilder.redirectOutput(sparseLogFile);
-                Process sparseProcess = sparseBuilder.start();
-                int sparseExitCode = sparseProcess.waitFor();
-                if (sparseExitCode != 0) {
-                    String errorDetails = "";
-                    try {
-                        errorDetails = new String(Files.readAllBytes(sparseLogFile.toPath()));
-                        logger.error("Colmap sparse reconstruction log:\n{}", errorDetails);
-                    } catch (IOException e) {
-                        logger.warn("Could not read sparse reconstruction log", e);
-                    }
-                    logger.error("Colmap sparse reconstruction failed for viseme {} with exit code: {}", visemeId, sparseExitCode);
-                    throw new RuntimeException("Colmap sparse reconstruction failed with exit code: " + sparseExitCode);
-                }
-                logger.info("Step 2: Validating sparse reconstruction output...");
-                Path sparseModelPath = visemeWorkspaceDir.resolve("sparse").resolve("0");
-                if (!Files.exists(sparseModelPath)) {
-                    logger.error("Sparse model directory does not exist: {}", sparseModelPath);
-                    continue;
-                }
-                Path camerasBin = sparseModelPath.resolve("cameras.bin");
-                Path imagesBin = sparseModelPath.resolve("images.bin");
-                Path points3DBin = sparseModelPath.resolve("points3D.bin");
-                
-                boolean hasRequiredFiles = Files.exists(camerasBin) && Files.exists(imagesBin) && Files.exists(points3DBin);
-                if (!hasRequiredFiles) {
-                    logger.warn("Sparse model missing required files. Found: cameras.bin={}, images.bin={}, points3D.bin={}", 
-                        Files.exists(camerasBin), Files.exists(imagesBin), Files.exists(points3DBin));
-                    logger.warn("Sparse reconstruction may have failed. Attempting to export sparse point cloud as fallback...");
-                    
-                    // Fallback to sparse export
-                    Path sparsePlyPath = visemeWorkspaceDir.resolve("sparse_points.ply");
-                    ProcessBuilder exportBuilder = new ProcessBuilder(
-                            "xvfb-run", "-a", "-s", "-screen 0 1024x768x24",
-                            "colmap", "model_converter",
-                            "--input_path", sparseModelPath.toAbsolutePath().toString(),
-                            "--output_path", sparsePlyPath.toAbsolutePath().toString(),
-                            "--output_type", "PLY"
-                    );
-                    exportBuilder.environment().put("QT_QPA_PLATFORM", "offscreen");
-                    exportBuilder.environment().put("LIBGL_ALWAYS_SOFTWARE", "1");
-                    exportBuilder.environment().put("GALLIUM_DRIVER", "llvmpipe");
-                    exportBuilder.inheritIO();
-                    Process exportProcess = exportBuilder.start();
-                    int exportExitCode = exportProcess.waitFor();
-                    
-                    if (exportExitCode == 0 && Files.exists(sparsePlyPath)) {
-                        Path s3FinalPcFile = workspaceBaseDir.resolve(visemeId + ".ply");
-                        Files.move(sparsePlyPath, s3FinalPcFile, StandardCopyOption.REPLACE_EXISTING);
-                        logger.info("Successfully exported sparse point cloud as fallback for viseme {}", visemeId);
-                        extractedVisemeIds.add(visemeId);
-                        objectStoreClient.updateGuruAssetInventory(guruId, s3FinalPcFile);
-                        continue;
-                    } else {
-                        logger.error("Sparse reconstruction incomplete and sparse export also failed for viseme {}.", visemeId);
-                        continue;
-                    }
+            return sparsePointCloud;
+        } else {
+            logger.info("Patch match stereo completed successfully for viseme {} (mode: {})", visemeId, executionMode);
+        }
+        
+        // Step 4: Stereo fusion (creates the fused point cloud)
+        logger.info("Step 4: Running stereo fusion...");
+        ProcessBuilder fusionBuilder = colmapProcess("stereo_fusion",
+                "--workspace_path", dense0Path.toAbsolutePath().toString(),
+                "--workspace_format", "COLMAP",
+                "--input_type", "geometric",
+                "--output_path", dense0Path.resolve("fused.ply").toAbsolutePath().toString());
+        
+        java.io.File fusionLogFile = new java.io.File(visemeWorkspaceDir.toFile(), "stereo_fusion.log");
+        int fusionExitCode = runColmapStage("fusion", fusionBuilder, fusionLogFile.toPath(), checkpoint);
+        
+        if (fusionExitCode != 0) {
+            String errorDetails = "";
+            try {
+                if (Files.exists(fusionLogFile.toPath())) {
+                    errorDetails = new String(Files.readAllBytes(fusionLogFile.toPath()));
+                    logger.error("Colmap stereo fusion log:\n{}", errorDetails);
                 }
-                
-                logger.info("Step 2: Running image undistortion...");
-                Path densePath = visemeWorkspaceDir.resolve("dense");
-                ProcessBuilder undistortBuilder = new ProcessBuilder(
-                        "xvfb-run", "-a", "-s", "-screen 0 1024x768x24",
-                        "colmap", "image_undistorter",
-                        "--image_path", visemeFrameDir.toAbsolutePath().toString(),
-                        "--input_path", sparseModelPath.toAbsolutePath().toString(),
-                        "--output_path", densePath.toAbsolutePath().toString()
-                );
-                undistortBuilder.environment().put("QT_QPA_PLATFORM", "offscreen");
-                undistortBuilder.environment().put("LIBGL_ALWAYS_SOFTWARE", "1");
-                undistortBuilder.environment().put("GALLIUM_DRIVER", "llvmpipe");
-
-                java.io.File undistortLogFile = new java.io.File(visemeWorkspaceDir.toFile(), "image_undistortion.log");
-                undistortBuilder.redirectErrorStream(true);
-                undistortBuilder.redirectOutput(undistortLogFile);
-                
-                Process undistortProcess = undistortBuilder.start();
-                int undistortExitCode = undistortProcess.waitFor();
-                
-                if (undistortExitCode != 0) {
-                    String errorDetails = "";
-                    try {
-                        if (Files.exists(undistortLogFile.toPath())) {
-                            errorDetails = new String(Files.readAllBytes(undistortLogFile.toPath()));
-                            logger.error("Colmap image undistortion log:\n{}", errorDetails);
-                        }
-                    } catch (IOException e) {
-                        logger.warn("Could not read undistortion log", e);
-                    }
+            } catch (IOException e) {
+                logger.warn("Could not read stereo fusion log", e);
+            }
+            logger.error("Colmap stereo fusion failed for viseme {} with exit code: {}", visemeId, fusionExitCode);
+            return null;
+        }
 
-                    if (undistortExitCode == 134) {
-                        logger.error("Colmap image undistortion crashed with segmentation fault (exit code 134) for viseme {}. " +
-                            "This may indicate: invalid sparse model, memory issues, or corrupted images.", visemeId);
-                        logger.warn("Attempting fallback to sparse point cloud export...");
-
-                        Path sparsePlyPath = visemeWorkspaceDir.resolve("sparse_points.ply");
-                        ProcessBuilder exportBuilder = new ProcessBuilder(
-                                "xvfb-run", "-a", "-s", "-screen 0 1024x768x24",
-                                "colmap", "model_converter",
-                                "--input_path", sparseModelPath.toAbsolutePath().toString(),
-                                "--output_path", sparsePlyPath.toAbsolutePath().toString(),
-                                "--output_type", "PLY"
-                        );
-                        exportBuilder.environment().put("QT_QPA_PLATFORM", "offscreen");
-                        exportBuilder.environment().put("LIBGL_ALWAYS_SOFTWARE", "1");
-                        exportBuilder.environment().put("GALLIUM_DRIVER", "llvmpipe");
-                        exportBuilder.inheritIO();
-                        Process exportProcess = exportBuilder.start();
-                        int exportExitCode = exportProcess.waitFor();
-                        
-                        if (exportExitCode == 0 && Files.exists(sparsePlyPath)) {
-                            Path s3FinalPcFile = workspaceBaseDir.resolve(visemeId + ".ply");
-                            Files.move(sparsePlyPath, s3FinalPcFile, StandardCopyOption.REPLACE_EXISTING);
-                            logger.info("Successfully exported sparse point cloud as fallback after undistortion crash for viseme {}", visemeId);
-                            extractedVisemeIds.add(visemeId);
-                            objectStoreClient.updateGuruAssetInventory(guruId, s3FinalPcFile);
-                            continue;
-                        }
-                    }
-                    
-                    logger.error("Colmap image undistortion failed for viseme {} with exit code: {}", visemeId, undistortExitCode);
-                    continue;
-                }
+        Path movedPointCloud = workspaceBaseDir.resolve(visemeId + ".ply");
+        if (Files.exists(movedPointCloud) && !Files.exists(dense0Path.resolve("fused.ply"))) {
+            logger.info("Fused point cloud of viseme {} was moved into place by a previous attempt", visemeId);
+            return movedPointCloud;
+        }
 
-                // Step 3: Patch match stereo - attempt CPU-based dense reconstruction
-                String executionMode = cudaAvailable ? "GPU (CUDA)" : "CPU";
-                logger.info("Step 3: Running patch match stereo using {} (this may take a while on CPU)...", executionMode);
-                Path dense0Path = densePath.resolve("0");
-                ProcessBuilder stereoBuilder = new ProcessBuilder(
-                        "xvfb-run", "-a", "-s", "-screen 0 1024x768x24",
-                        "colmap", "patch_match_stereo",
-                        "--workspace_path", dense0Path.toAbsolutePath().toString()
-                );
-                stereoBuilder.environment().put("QT_QPA_PLATFORM", "offscreen");
-                // Keep software rendering flags for CPU mode, remove them if CUDA is available to allow GPU usage
-                if (cudaAvailable) {
-                    // Remove software rendering flags to allow GPU usage
-                    stereoBuilder.environment().remove("LIBGL_ALWAYS_SOFTWARE");
-                    stereoBuilder.environment().remove("GALLIUM_DRIVER");
-                } else {
-                    // Keep software rendering for CPU mode
-                    stereoBuilder.environment().put("LIBGL_ALWAYS_SOFTWARE", "1");
-                    stereoBuilder.environment().put("GALLIUM_DRIVER", "llvmpipe");
-                }
-                
-                // Redirect output to log file for CPU mode (since it will take longer)
-                java.io.File stereoLogFile = new java.io.File(visemeWorkspaceDir.toFile(), "patch_match_stereo.log");
-                stereoBuilder.redirectErrorStream(true);
-                stereoBuilder.redirectOutput(stereoLogFile);
-                
-                logger.info("Starting patch_match_stereo for viseme {} (mode: {})...", visemeId, executionMode);
-                if (!cudaAvailable) {
-                    logger.info("CPU-based dense reconstruction in progress - this step can take 30 minutes to several hours depending on image count and resolution");
-                }
-                
-                Process stereoProcess = stereoBuilder.start();
-                int stereoExitCode = stereoProcess.waitFor();
-                
-                if (stereoExitCode != 0) {
-                    String errorDetails = "";
-                    try {
-                        if (Files.exists(stereoLogFile.toPath())) {
-                            errorDetails = new String(Files.readAllBytes(stereoLogFile.toPath()));
-                            logger.error("Colmap patch_match_stereo log (last 1000 chars):\n{}", 
-                                errorDetails.length() > 1000 ? errorDetails.substring(errorDetails.length() - 1000) : errorDetails);
-                        }
-                    } catch (IOException e) {
-                        logger.warn("Could not read patch_match_stereo log", e);
-                    }
-                    
-                    logger.error("Patch match stereo failed for viseme {} with exit code: {} (mode: {})", 
-                        visemeId, stereoExitCode, executionMode);
-                    logger.warn("Falling back to sparse point cloud export...");
-                    
-                    // Fallback: Export sparse reconstruction as PLY
-                    Path sparsePlyPath = visemeWorkspaceDir.resolve("sparse_points.ply");
-                    ProcessBuilder exportBuilder = new ProcessBuilder(
-                            "xvfb-run", "-a", "-s", "-screen 0 1024x768x24",
-                            "colmap", "model_converter",
-                            "--input_path", sparseModelPath.toAbsolutePath().toString(),
-                            "--output_path", sparsePlyPath.toAbsolutePath().toString(),
-                            "--output_type", "PLY"
-                    );
-                    exportBuilder.environment().put("QT_QPA_PLATFORM", "offscreen");
-                    exportBuilder.environment().put("LIBGL_ALWAYS_SOFTWARE", "1");
-                    exportBuilder.environment().put("GALLIUM_DRIVER", "llvmpipe");
-                    exportBuilder.inheritIO();
-                    Process exportProcess = exportBuilder.start();
-                    int exportExitCode = exportProcess.waitFor();
-                    
-                    if (exportExitCode == 0 && Files.exists(sparsePlyPath)) {
-                        logger.info("Successfully exported sparse point cloud as fallback");
-                        Path s3FinalPcFile = workspaceBaseDir.resolve(visemeId + ".ply");
-                        Files.move(sparsePlyPath, s3FinalPcFile, StandardCopyOption.REPLACE_EXISTING);
-                        logger.info("Successfully created PCD file from sparse reconstruction for viseme {}: {}", visemeId, s3FinalPcFile);
-                        extractedVisemeIds.add(visemeId);
-                        objectStoreClient.updateGuruAssetInventory(guruId, s3FinalPcFile);
-                        continue; // Skip to next viseme
-                    } else {
-                        logger.error("Both dense reconstruction and sparse export failed for viseme {}", visemeId);
-                        continue;
+        // Log workspace structure to help debug
+        logger.info("Checking workspace structure for viseme {}: {}", visemeId, workspacePath);
+        if (Files.exists(visemeWorkspaceDir)) {
+            try {
+                Files.walk(visemeWorkspaceDir, 3).forEach(path -> {
+                    if (Files.isRegularFile(path)) {
+                        logger.info("Found file: {}", path);
+                    } else if (Files.isDirectory(path)) {
+                        logger.info("Found directory: {}", path);
                     }
+                });
+            } catch (IOException e) {
+                logger.warn("Could not walk workspace directory", e);
+            }
+        }
+
+        // Try multiple possible locations for fused.ply
+        // Priority: dense/0/fused.ply (where we create it) first
+        Path finalFusedPlyFile = null;
+        Path expectedFusedPath = visemeWorkspaceDir.resolve("dense").resolve("0").resolve("fused.ply");
+        List<Path> possibleLocations = List.of(
+            expectedFusedPath,  // Primary location where we create it
+            visemeWorkspaceDir.resolve("dense").resolve("fused.ply"),
+            visemeWorkspaceDir.resolve("dense").resolve("stereo").resolve("fused.ply"),
+            visemeWorkspaceDir.resolve("fused.ply"),
+            visemeWorkspaceDir.resolve("sparse").resolve("fused.ply")
+        );
+        
+        for (Path possiblePath : possibleLocations) {
+            if (Files.exists(possiblePath)) {
+                logger.info("Found fused.ply at: {}", possiblePath);
+                finalFusedPlyFile = possiblePath;
+                break;
+            }
+        }
+        
+        // If still not found, search recursively
+        if (finalFusedPlyFile == null) {
+            logger.warn("fused.ply not found in expected locations, searching recursively...");
+            try {
+                java.util.Optional<Path> foundFile = Files.walk(visemeWorkspaceDir)
+                    .filter(path -> path.getFileName() != null && 
+                           path.getFileName().toString().equals("fused.ply"))
+                    .findFirst();
+                if (foundFile.isPresent()) {
+                    finalFusedPlyFile = foundFile.get();
+                    logger.info("Found fused.ply recursively at: {}", finalFusedPlyFile);
                 } else {
-                    logger.info("Patch match stereo completed successfully for viseme {} (mode: {})", visemeId, executionMode);
-                }
-                
-                // Step 4: Stereo fusion (creates the fused point cloud)
-                logger.info("Step 4: Running stereo fusion...");
-                ProcessBuilder fusionBuilder = new ProcessBuilder(
-                        "xvfb-run", "-a", "-s", "-screen 0 1024x768x24",
-                        "colmap", "stereo_fusion",
-                        "--workspace_path", dense0Path.toAbsolutePath().toString(),
-                        "--workspace_format", "COLMAP",
-                        "--input_type", "geometric",
-                        "--output_path", dense0Path.resolve("fused.ply").toAbsolutePath().toString()
-                );
-                fusionBuilder.environment().put("QT_QPA_PLATFORM", "offscreen");
-                fusionBuilder.environment().put("LIBGL_ALWAYS_SOFTWARE", "1");
-                fusionBuilder.environment().put("GALLIUM_DRIVER", "llvmpipe");
-                
-                java.io.File fusionLogFile = new java.io.File(visemeWorkspaceDir.toFile(), "stereo_fusion.log");
-                fusionBuilder.redirectErrorStream(true);
-                fusionBuilder.redirectOutput(fusionLogFile);
-                
-                Process fusionProcess = fusionBuilder.start();
-                int fusionExitCode = fusionProcess.waitFor();
-                
-                if (fusionExitCode != 0) {
-                    String errorDetails = "";
-                    try {
-                        if (Files.exists(fusionLogFile.toPath())) {
-                            errorDetails = new String(Files.readAllBytes(fusionLogFile.toPath()));
-                            logger.error("Colmap stereo fusion log:\n{}", errorDetails);
-                        }
-                    } catch (IOException e) {
-                        logger.warn("Could not read stereo fusion log", e);
-                    }
-                    logger.error("Colmap stereo fusion failed for viseme {} with exit code: {}", visemeId, fusionExitCode);
-                    continue;
+                    logger.error("fused.ply not found anywhere in workspace");
                 }
+            } catch (IOException e) {
+                logger.error("Error searching for fused.ply", e);
+            }
+        }
+        
+        if (finalFusedPlyFile == null || !Files.exists(finalFusedPlyFile)) {
+            throw new RuntimeException("Colmap output file (fused.ply) not found. " +
+                "Colmap may have completed but dense reconstruction failed. " +
+                "Check colmap logs above for details. Workspace: " + workspacePath);
+        }
 
-                // Log workspace structure to help debug
-                logger.info("Checking workspace structure for viseme {}: {}", visemeId, workspacePath);
-                if (Files.exists(visemeWorkspaceDir)) {
-                    try {
-                        Files.walk(visemeWorkspaceDir, 3).forEach(path -> {
-                            if (Files.isRegularFile(path)) {
-                                logger.info("Found file: {}", path);
-                            } else if (Files.isDirectory(path)) {
-                                logger.info("Found directory: {}", path);
-                            }
-                        });
-                    } catch (IOException e) {
-                        logger.warn("Could not walk workspace directory", e);
-                    }
-                }
+        Path s3FinalPcFile = workspaceBaseDir.resolve(visemeId + ".ply");
+        Files.move(finalFusedPlyFile, s3FinalPcFile, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Successfully created dense PCD file for viseme {}: {}", visemeId, s3FinalPcFile);
+        
+        return s3FinalPcFile;
+    }
 
-                // Try multiple possible locations for fused.ply
-                // Priority: dense/0/fused.ply (where we create it) first
-                Path finalFusedPlyFile = null;
-                Path expectedFusedPath = visemeWorkspaceDir.resolve("dense").resolve("0").resolve("fused.ply");
-                List<Path> possibleLocations = List.of(
-                    expectedFusedPath,  // Primary location where we create it
-                    visemeWorkspaceDir.resolve("dense").resolve("fused.ply"),
-                    visemeWorkspaceDir.resolve("dense").resolve("stereo").resolve("fused.ply"),
-                    visemeWorkspaceDir.resolve("fused.ply"),
-                    visemeWorkspaceDir.resolve("sparse").resolve("fused.ply")
-                );
-                
-                for (Path possiblePath : possibleLocations) {
-                    if (Files.exists(possiblePath)) {
-                        logger.info("Found fused.ply at: {}", possiblePath);
-                        finalFusedPlyFile = possiblePath;
-                        break;
-                    }
-                }
-                
-                // If still not found, search recursively
-                if (finalFusedPlyFile == null) {
-                    logger.warn("fused.ply not found in expected locations, searching recursively...");
-                    try {
-                        java.util.Optional<Path> foundFile = Files.walk(visemeWorkspaceDir)
-                            .filter(path -> path.getFileName() != null && 
-                                   path.getFileName().toString().equals("fused.ply"))
-                            .findFirst();
-                        if (foundFile.isPresent()) {
-                            finalFusedPlyFile = foundFile.get();
-                            logger.info("Found fused.ply recursively at: {}", finalFusedPlyFile);
-                        } else {
-                            logger.error("fused.ply not found anywhere in workspace");
-                        }
-                    } catch (IOException e) {
-                        logger.error("Error searching for fused.ply", e);
-                    }
-                }
-                
-                if (finalFusedPlyFile == null || !Files.exists(finalFusedPlyFile)) {
-                    throw new RuntimeException("Colmap output file (fused.ply) not found. " +
-                        "Colmap may have completed but dense reconstruction failed. " +
-                        "Check colmap logs above for details. Workspace: " + workspacePath);
-                }
+    /**
+     * Exports the viseme's sparse model as its point cloud, the fallback when no dense cloud can be made.
+     *
+     * @return the point cloud file, or {@code null} if the export failed
+     */
+    private Path exportSparsePointCloud(String visemeId, Path sparseModelPath, Path workspaceBaseDir,
+                                        ReconstructionCheckpoint checkpoint) throws IOException, InterruptedException {
+        Path visemeWorkspaceDir = workspaceBaseDir.resolve(visemeId);
+        Path sparsePlyPath = visemeWorkspaceDir.resolve("sparse_points.ply");
+        Path s3FinalPcFile = workspaceBaseDir.resolve(visemeId + ".ply");
+        if (checkpoint.isCompleted("sparse-export") && !Files.exists(sparsePlyPath) && Files.exists(s3FinalPcFile)) {
+            logger.info("Sparse point cloud of viseme {} was moved into place by a previous attempt", visemeId);
+            return s3FinalPcFile;
+        }
+        ProcessBuilder exportBuilder = colmapProcess("model_converter",
+                "--input_path", sparseModelPath.toAbsolutePath().toString(),
+                "--output_path", sparsePlyPath.toAbsolutePath().toString(),
+                "--output_type", "PLY");
+        int exportExitCode = runColmapStage("sparse-export", exportBuilder,
+                visemeWorkspaceDir.resolve("sparse_export.log"), checkpoint);
+        if (exportExitCode != 0 || !Files.exists(sparsePlyPath)) {
+            logger.error("Sparse point cloud export failed for viseme {} with exit code: {}", visemeId, exportExitCode);
+            return null;
+        }
+        Files.move(sparsePlyPath, s3FinalPcFile, StandardCopyOption.REPLACE_EXISTING);
+        return s3FinalPcFile;
+    }
 
-                Path s3FinalPcFile = workspaceBaseDir.resolve(visemeId + ".ply");
-                Files.move(finalFusedPlyFile, s3FinalPcFile, StandardCopyOption.REPLACE_EXISTING);
-                logger.info("Successfully created dense PCD file for viseme {}: {}", visemeId, s3FinalPcFile);
-                
-                extractedVisemeIds.add(visemeId);
-                objectStoreClient.updateGuruAssetInventory(guruId, s3FinalPcFile);
-            }
-            logger.info("PCD creation summary:");
-            logger.info("  - Successfully created PCDs for {} viseme(s): {}", 
-                extractedVisemeIds.size(), extractedVisemeIds);
-            if (!skippedVisemeIds.isEmpty()) {
-                logger.warn("  - Skipped {} viseme(s) due to insufficient frames (<3 images): {}", 
-                    skippedVisemeIds.size(), skippedVisemeIds);
-            }
-            logger.info("  - Total visemes processed: {} out of {} that had frame directories", 
-                extractedVisemeIds.size() + skippedVisemeIds.size(), visemeFrameDirMap.size());
-            objectStoreClient.updateGuruAssetInventory(guruId, extractedVisemeIds);
-        } catch (Exception e) {
-            logger.error("Error in createAndPublishPcdFromFrames for guruId: {}", guruId, e);
-        } finally {
+    /**
+     * Heartbeat details of {@link #reconstructViseme}: where the attempt works, on what, and which stages it has
+     * finished. A retry of the same activity for the same viseme on the same worker resumes in that workspace;
+     * otherwise it starts over.
+     */
+    public static class ReconstructionCheckpoint {
+        public String host;
+        public String workspace;
+        public String activity;
+        /** {@code null} for the shared sparse model. */
+        public String visemeId;
+        public List<String> completedStages = new ArrayList<>();
+        public String progress;
+
+        public ReconstructionCheckpoint() {
+        }
+
+        ReconstructionCheckpoint(Path workspace, String activity, String visemeId) {
+            this.host = hostName();
+            this.workspace = workspace.toAbsolutePath().toString();
+            this.activity = activity;
+            this.visemeId = visemeId;
+        }
+
+        boolean belongsTo(String activity, String visemeId) {
+            return java.util.Objects.equals(this.activity, activity) && java.util.Objects.equals(this.visemeId, visemeId);
+        }
+
+        boolean isCompleted(String stage) {
+            return completedStages.contains(stage);
+        }
+
+        void complete(String stage) {
+            completedStages.add(stage);
+        }
+
+        boolean isResumableHere() {
+            return hostName().equals(host) && workspace != null && Files.isDirectory(Paths.get(workspace));
+        }
+
+        private static String hostName() {
             try {
-                deleteRecursively(workspaceBaseDir);
-            } catch (Exception ignore) {
-                logger.warn("Failed to cleanup workspace directory: {}", workspaceBaseDir, ignore);
+                return java.net.InetAddress.getLocalHost().getHostName();
+            } catch (java.net.UnknownHostException e) {
+                return "unknown";
             }
         }
     }
@@ -0,0 +1,207 @@
+package com.arvatar.vortex.temporal.activities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Hands out per-job workspaces on the scratch volume, typically a fast local disk. A workspace is only created when
+ * the volume keeps {@code minFreeBytes} free after every workspace in use on this worker has grown to
+ * {@code workspaceBytes}, and a cache sharing the volume to its budget; until then the caller waits, heartbeating, for
+ * other jobs to finish. What a workspace or the cache has already written is off the usable space, so only the part of
+ * its reservation still to be written is held back. Workspaces are named {@code pcd-<jobId>-...} and hold nothing
+ * shared, so any number of jobs, also of the same guru, can run side by side.
+ */
+final class ScratchSpace {
+
+    static final String WORKSPACE_PREFIX = "pcd-";
+    private static final long POLL_MILLIS = 5_000;
+
+    private final Logger logger = LoggerFactory.getLogger(ScratchSpace.class);
+    private final Path root;
+    private final long minFreeBytes;
+    private final long workspaceBytes;
+    private final Duration admissionTimeout;
+    private final Path cacheDirectory;
+    private final long cacheBytes;
+    /** Space promised to the workspaces in use, which may not have been written yet. */
+    private final Map<Path, Long> reservations = new HashMap<>();
+
+    /**
+     * @param minFreeBytes     free space the volume keeps for everything else
+     * @param workspaceBytes   space reserved per workspace until it is released
+     * @param admissionTimeout how long {@link #allocate} waits for space before failing
+     * @param cacheDirectory   a cache that may grow to {@code cacheBytes}, counted only if it is on the same volume
+     */
+    ScratchSpace(Path root, long minFreeBytes, long workspaceBytes, Duration admissionTimeout, Path cacheDirectory,
+                 long cacheBytes) {
+        this.root = root;
+        this.minFreeBytes = minFreeBytes;
+        this.workspaceBytes = workspaceBytes;
+        this.admissionTimeout = admissionTimeout;
+        this.cacheDirectory = cacheDirectory;
+        this.cacheBytes = cacheBytes;
+    }
+
+    /**
+     * Creates a workspace {@code pcd-<name>-<random>} once there is room for it. It must be {@link #release released}
+     * when the activity ends, whether or not its directory is kept.
+     *
+     * @throws IOException if the volume stays too full for {@code admissionTimeout}
+     */
+    Path allocate(String name, Consumer<String> heartbeat) throws IOException, InterruptedException {
+        Files.createDirectories(root);
+        Instant deadline = Instant.now().plus(admissionTimeout);
+        while (true) {
+            long usable = Files.getFileStore(root).getUsableSpace();
+            long reserved = unwrittenCacheBytes();
+            Map<Path, Long> unwritten = new HashMap<>();
+            for (Map.Entry<Path, Long> reservation : reservations().entrySet()) {
+                unwritten.put(reservation.getKey(), Math.max(0, reservation.getValue() - sizeOf(reservation.getKey())));
+            }
+            synchronized (this) {
+                for (Map.Entry<Path, Long> reservation : reservations.entrySet()) {
+                    // A workspace allocated while the others were measured has written nothing yet.
+                    reserved += unwritten.getOrDefault(reservation.getKey(), reservation.getValue());
+                }
+                if (usable - reserved - workspaceBytes >= minFreeBytes) {
+                    Path workspace = Files.createTempDirectory(root, WORKSPACE_PREFIX + name + "-");
+                    reservations.put(workspace, workspaceBytes);
+                    return workspace;
+                }
+            }
+            if (Instant.now().isAfter(deadline)) {
+                throw new IOException("Scratch volume " + root + " has " + usable + " bytes usable, too few for another "
+                        + "workspace after " + admissionTimeout);
+            }
+            logger.info("Waiting for scratch space for {}: {} bytes usable, {} still to be written by running jobs "
+                    + "and the cache", name, usable, reserved);
+            heartbeat.accept("waiting for scratch space");
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    /** Gives back the reservation of a workspace from {@link #allocate}; unknown paths are ignored. */
+    synchronized void release(Path workspace) {
+        reservations.remove(workspace);
+    }
+
+    private synchronized Map<Path, Long> reservations() {
+        return new HashMap<>(reservations);
+    }
+
+    /** What the cache may still grow by, if it shares the scratch volume. */
+    private long unwrittenCacheBytes() throws IOException {
+        if (cacheDirectory == null || cacheBytes <= 0) {
+            return 0;
+        }
+        Path existing = cacheDirectory.toAbsolutePath();
+        while (existing != null && Files.notExists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing == null || !Files.getFileStore(existing).equals(Files.getFileStore(root))) {
+            return 0;
+        }
+        return Math.max(0, cacheBytes - sizeOf(cacheDirectory));
+    }
+
+    /** Bytes of the regular files under {@code dir}; files deleted while it is walked are skipped. */
+    private static long sizeOf(Path dir) {
+        if (Files.notExists(dir)) {
+            return 0;
+        }
+        long[] size = {0};
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    size[0] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // Counts what could be walked; the reservation covers the rest.
+        }
+        return size[0];
+    }
+
+    /**
+     * Deletes the workspaces under the scratch root not modified for {@code maxAge}. A younger one may still be
+     * resumed by a retry of its activity on this worker, so it is left alone, as is one in use on this worker.
+     */
+    void cleanUpOrphans(Duration maxAge) {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(maxAge);
+        try (Stream<Path> listing = Files.list(root)) {
+            for (Path workspace : (Iterable<Path>) listing::iterator) {
+                if (!workspace.getFileName().toString().startsWith(WORKSPACE_PREFIX) || !Files.isDirectory(workspace)
+                        || isReserved(workspace)) {
+                    continue;
+                }
+                try {
+                    if (lastModified(workspace).isBefore(cutoff)) {
+                        deleteRecursively(workspace);
+                        logger.info("Deleted orphaned workspace {}", workspace);
+                    }
+                } catch (IOException e) {
+                    logger.warn("Failed to delete orphaned workspace {}", workspace, e);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list scratch root {}", root, e);
+        }
+    }
+
+    private synchronized boolean isReserved(Path workspace) {
+        return reservations.containsKey(workspace);
+    }
+
+    /** The latest modification of anything in the tree; a directory's own time misses writes deeper down. */
+    private static Instant lastModified(Path workspace) throws IOException {
+        Instant latest = Instant.EPOCH;
+        try (Stream<Path> walk = Files.walk(workspace)) {
+            for (Path path : (Iterable<Path>) walk::iterator) {
+                Instant modified = Files.getLastModifiedTime(path).toInstant();
+                if (modified.isAfter(latest)) {
+                    latest = modified;
+                }
+            }
+        }
+        return latest;
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package com.arvatar.vortex.temporal.activities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs external tools side by side on a bounded number of threads. At most {@link #size()} processes run at once,
+ * across all activities of the worker, and each is told to use {@link #threadsPerProcess()} threads, so together they
+ * fill the machine's cores without oversubscribing it.
+ */
+final class SubprocessPool implements AutoCloseable {
+
+    /** One process's worth of work; {@code threads} is the CPU thread hint to pass to the tool. */
+    interface Task<T> {
+        T run(int threads) throws Exception;
+    }
+
+    /** The result of one task, or why it failed. */
+    static final class Outcome<T> {
+        final T value;
+        final Exception failure;
+
+        private Outcome(T value, Exception failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+
+        boolean succeeded() {
+            return failure == null;
+        }
+    }
+
+    private final int size;
+    private final int threadsPerProcess;
+    private final ExecutorService executor;
+
+    /** @param size processes run at once; 0 or less picks one per two cores */
+    SubprocessPool(int size) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.size = size > 0 ? size : Math.max(1, cores / 2);
+        this.threadsPerProcess = Math.max(1, cores / this.size);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.size, runnable -> {
+            Thread thread = new Thread(runnable, "subprocess-pool-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    int size() {
+        return size;
+    }
+
+    int threadsPerProcess() {
+        return threadsPerProcess;
+    }
+
+    /**
+     * Runs every task and waits for all of them. A failing task does not affect the others; its outcome carries the
+     * failure. Outcomes are in task order. If the caller is interrupted, the remaining tasks are cancelled, which
+     * kills their processes.
+     */
+    <T> List<Outcome<T>> invokeAll(List<Task<T>> tasks) throws InterruptedException {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Task<T> task : tasks) {
+            futures.add(executor.submit(() -> task.run(threadsPerProcess)));
+        }
+        List<Outcome<T>> outcomes = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : futures) {
+                try {
+                    outcomes.add(new Outcome<>(future.get(), null));
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    outcomes.add(new Outcome<>(null, cause instanceof Exception ? (Exception) cause : e));
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+        return outcomes;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,142 @@
+package com.arvatar.vortex.temporal.activities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a long external tool (COLMAP, ffmpeg) with its output redirected to a log file, tailing that file while the
+ * process runs. Every {@link #HEARTBEAT_INTERVAL_SECONDS} the latest progress parsed from the new log lines is passed
+ * to the heartbeat callback, even when the tool printed nothing, so a live process keeps its activity alive and a
+ * dead worker is noticed within the heartbeat timeout. When the callback throws, because the activity was cancelled or
+ * timed out, the process is killed.
+ */
+final class SubprocessRunner {
+
+    static final long HEARTBEAT_INTERVAL_SECONDS = 5;
+
+    /** Turns one log line into a progress description, or returns {@code null} if the line carries none. */
+    interface ProgressParser {
+        String parse(String line);
+    }
+
+    // "Processing view 12 / 40", "Processed file [12/40]", "Matching block [3/10, 1/1]", "Fusing image [7/40]"
+    private static final Pattern COLMAP_FRACTION =
+            Pattern.compile("(view|file|image|block)\\D*?(\\d+)\\s*/\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
+    // "frame=  120 fps= 30 q=2.0 size=N/A time=00:00:04.00 bitrate=N/A speed=1.9x"
+    private static final Pattern FFMPEG_TIME = Pattern.compile("time=\\s*(\\d+:\\d{2}:\\d{2}(?:\\.\\d+)?)");
+
+    static final ProgressParser COLMAP_PROGRESS = line -> {
+        Matcher matcher = COLMAP_FRACTION.matcher(line);
+        return matcher.find() ? matcher.group(1).toLowerCase() + " " + matcher.group(2) + "/" + matcher.group(3) : null;
+    };
+
+    static final ProgressParser FFMPEG_PROGRESS = line -> {
+        Matcher matcher = FFMPEG_TIME.matcher(line);
+        return matcher.find() ? "time " + matcher.group(1) : null;
+    };
+
+    private SubprocessRunner() {
+    }
+
+    /**
+     * Starts {@code builder} with stdout and stderr appended to {@code logFile} and waits for it to exit.
+     *
+     * @param label     names the step in heartbeats, e.g. {@code "patch_match_stereo"}
+     * @param heartbeat receives the latest progress, or the elapsed time when none has been parsed yet
+     * @return the process exit code
+     */
+    static int run(String label, ProcessBuilder builder, Path logFile, ProgressParser parser,
+                   Consumer<String> heartbeat) throws IOException, InterruptedException {
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile.toFile()));
+        // Only tail what this run writes; a resumed attempt appends to the log of the previous one.
+        long logStart = Files.exists(logFile) ? Files.size(logFile) : 0;
+        long started = System.nanoTime();
+        Process process = builder.start();
+        try (LogTail tail = new LogTail(logFile, logStart)) {
+            String progress = null;
+            while (true) {
+                boolean exited = process.waitFor(HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+                String line;
+                while ((line = tail.nextLine()) != null) {
+                    String parsed = parser.parse(line);
+                    if (parsed != null) {
+                        progress = parsed;
+                    }
+                }
+                if (exited) {
+                    return process.exitValue();
+                }
+                long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started);
+                heartbeat.accept(label + (progress != null ? " " + progress : "") + " after " + elapsed + "s");
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    /** Reads the lines appended to a file since the last call; ffmpeg's carriage-return progress counts as lines. */
+    private static final class LogTail implements AutoCloseable {
+        private final Path file;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private final StringBuilder pending = new StringBuilder();
+        private FileChannel channel;
+        private long position;
+
+        LogTail(Path file, long position) {
+            this.file = file;
+            this.position = position;
+        }
+
+        String nextLine() throws IOException {
+            while (true) {
+                for (int i = 0; i < pending.length(); i++) {
+                    char c = pending.charAt(i);
+                    if (c == '\n' || c == '\r') {
+                        String line = pending.substring(0, i);
+                        pending.delete(0, i + 1);
+                        return line;
+                    }
+                }
+                if (!fill()) {
+                    return null;
+                }
+            }
+        }
+
+        private boolean fill() throws IOException {
+            if (channel == null) {
+                if (!Files.exists(file)) {
+                    return false;
+                }
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return false;
+            }
+            position += read;
+            buffer.flip();
+            // Log lines are ASCII; a multi-byte character split across reads only garbles that one line.
+            pending.append(StandardCharsets.UTF_8.decode(buffer));
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+}
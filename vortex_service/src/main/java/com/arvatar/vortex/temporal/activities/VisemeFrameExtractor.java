@@ -0,0 +1,218 @@
+package com.arvatar.vortex.temporal.activities;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Extracts the frames of every viseme from the source video, decoding each part of it once. The cues are cut into
+ * time slices that run as separate ffmpeg processes on a {@link SubprocessPool}. Within a slice the decoded stream is
+ * split into one branch per viseme; each branch keeps the frames inside that viseme's mouth cues and writes them as
+ * JPEGs into the viseme's directory.
+ * <p>
+ * Sampling is frame-accurate: within a cue {@code [start, end)} the first frame at or after each
+ * {@code start + k / FRAMES_PER_SECOND} is kept, so every cue contributes frames on its own grid no matter where the
+ * keyframes are. Files are named by their presentation time in milliseconds ({@code 00012340.jpg} is the frame shown
+ * at 12.34s), which is on the same clock as the mouth cues because both count from the start of the file.
+ */
+final class VisemeFrameExtractor {
+
+    static final int FRAMES_PER_SECOND = 10;
+    /** Cues shorter than this hold no usable frame. */
+    static final double MIN_CUE_SECONDS = 0.025;
+    /** Shortest stretch of video worth its own ffmpeg process. */
+    static final double MIN_SLICE_SECONDS = 20;
+
+    private static final Logger logger = LoggerFactory.getLogger(VisemeFrameExtractor.class);
+
+    private VisemeFrameExtractor() {
+    }
+
+    /**
+     * @param visemeBounds per viseme, the {@code start}/{@code end} seconds of its mouth cues
+     * @return the frame directory of every viseme that had at least one usable cue
+     */
+    static Map<String, Path> extract(Path video, Map<String, List<JsonNode>> visemeBounds, Path outputDir,
+                                     SubprocessPool pool, Consumer<String> heartbeat)
+            throws IOException, InterruptedException {
+        Map<String, List<JsonNode>> usable = new LinkedHashMap<>();
+        for (Map.Entry<String, List<JsonNode>> entry : visemeBounds.entrySet()) {
+            List<JsonNode> cues = new ArrayList<>();
+            for (JsonNode cue : entry.getValue()) {
+                if (cue.get("end").doubleValue() - cue.get("start").doubleValue() >= MIN_CUE_SECONDS) {
+                    cues.add(cue);
+                }
+            }
+            int skipped = entry.getValue().size() - cues.size();
+            if (skipped > 0) {
+                logger.info("Skipped {} cue(s) shorter than {}s for viseme {}", skipped, MIN_CUE_SECONDS, entry.getKey());
+            }
+            if (cues.isEmpty()) {
+                logger.warn("Viseme {} has no usable cues. All {} occurrence(s) were too short.",
+                        entry.getKey(), entry.getValue().size());
+                continue;
+            }
+            usable.put(entry.getKey(), cues);
+        }
+        Map<String, Path> frameDirs = new LinkedHashMap<>();
+        if (usable.isEmpty()) {
+            return frameDirs;
+        }
+        for (String visemeId : usable.keySet()) {
+            frameDirs.put(visemeId, Files.createDirectories(outputDir.resolve(visemeId)));
+        }
+        List<Slice> slices = slices(usable, pool.size());
+        List<SubprocessPool.Task<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < slices.size(); i++) {
+            Slice slice = slices.get(i);
+            Path sliceDir = outputDir.resolve("slice-" + i);
+            tasks.add(threads -> {
+                extractSlice(video, slice, frameDirs, sliceDir, threads, heartbeat);
+                return null;
+            });
+        }
+        heartbeat.accept("extracting frames of " + usable.size() + " viseme(s) in " + slices.size() + " slice(s)");
+        List<SubprocessPool.Outcome<Void>> outcomes = pool.invokeAll(tasks);
+        int failed = 0;
+        for (int i = 0; i < outcomes.size(); i++) {
+            if (!outcomes.get(i).succeeded()) {
+                failed++;
+                logger.warn("Frame extraction of {}s-{}s failed, its cues contribute no frames",
+                        slices.get(i).start, slices.get(i).end, outcomes.get(i).failure);
+            }
+        }
+        if (failed == slices.size()) {
+            throw new IOException("Frame extraction failed for every slice", outcomes.get(0).failure);
+        }
+        logger.info("Extracted frames of {} viseme(s) from {} of {} slice(s), {} process(es) of {} thread(s)",
+                frameDirs.size(), slices.size() - failed, slices.size(), pool.size(), pool.threadsPerProcess());
+        return frameDirs;
+    }
+
+    /** A stretch of the video and the cues inside it, extracted by one ffmpeg process. */
+    private static final class Slice {
+        final double start;
+        final double end;
+        final Map<String, List<JsonNode>> visemeCues;
+
+        Slice(double start, double end, Map<String, List<JsonNode>> visemeCues) {
+            this.start = start;
+            this.end = end;
+            this.visemeCues = visemeCues;
+        }
+    }
+
+    /**
+     * Cuts the cues, in time order, into up to {@code maxSlices} slices of about the same number of cues. Rhubarb's
+     * cues do not overlap, so neither do the slices. Short videos stay in one slice, where seeking would cost more
+     * than it saves.
+     */
+    private static List<Slice> slices(Map<String, List<JsonNode>> visemeCues, int maxSlices) {
+        List<Map.Entry<String, JsonNode>> cues = new ArrayList<>();
+        for (Map.Entry<String, List<JsonNode>> entry : visemeCues.entrySet()) {
+            for (JsonNode cue : entry.getValue()) {
+                cues.add(Map.entry(entry.getKey(), cue));
+            }
+        }
+        cues.sort(Comparator.comparingDouble(cue -> cue.getValue().get("start").doubleValue()));
+        double span = cues.get(cues.size() - 1).getValue().get("end").doubleValue()
+                - cues.get(0).getValue().get("start").doubleValue();
+        int sliceCount = (int) Math.max(1, Math.min(maxSlices, Math.min(cues.size(), span / MIN_SLICE_SECONDS)));
+        int perSlice = (cues.size() + sliceCount - 1) / sliceCount;
+        List<Slice> slices = new ArrayList<>();
+        for (int from = 0; from < cues.size(); from += perSlice) {
+            List<Map.Entry<String, JsonNode>> sliceCues = cues.subList(from, Math.min(cues.size(), from + perSlice));
+            Map<String, List<JsonNode>> byViseme = new LinkedHashMap<>();
+            double start = Double.MAX_VALUE;
+            double end = 0;
+            for (Map.Entry<String, JsonNode> cue : sliceCues) {
+                byViseme.computeIfAbsent(cue.getKey(), key -> new ArrayList<>()).add(cue.getValue());
+                start = Math.min(start, cue.getValue().get("start").doubleValue());
+                end = Math.max(end, cue.getValue().get("end").doubleValue());
+            }
+            slices.add(new Slice(start, end, byViseme));
+        }
+        return slices;
+    }
+
+    private static void extractSlice(Path video, Slice slice, Map<String, Path> frameDirs, Path sliceDir, int threads,
+                                     Consumer<String> heartbeat) throws IOException, InterruptedException {
+        Files.createDirectories(sliceDir);
+        // Thousands of cues make a filter graph far longer than a command line may be.
+        Path filterScript = sliceDir.resolve("visemes.filter");
+        Files.writeString(filterScript, filterGraph(slice), StandardCharsets.UTF_8);
+        List<String> command = new ArrayList<>(List.of(
+                "ffmpeg", "-y", "-threads", Integer.toString(threads),
+                // Input seeking decodes from the preceding keyframe and drops the frames before the position, so the
+                // slice starts on the exact frame; decoding stops after the slice's last cue.
+                "-ss", String.format(Locale.ROOT, "%.3f", slice.start),
+                "-to", String.format(Locale.ROOT, "%.3f", slice.end + 1.0 / FRAMES_PER_SECOND),
+                "-i", video.toAbsolutePath().toString(),
+                "-filter_complex_threads", Integer.toString(threads),
+                "-filter_complex_script", filterScript.toAbsolutePath().toString()));
+        int branch = 0;
+        for (String visemeId : slice.visemeCues.keySet()) {
+            // settb only sets the filter's time base; the encoder, and so the muxer whose packet timestamps
+            // -frame_pts writes into the file name, needs its own 1/1000 for the names to be milliseconds.
+            command.addAll(List.of("-map", "[out" + branch++ + "]", "-an", "-vsync", "vfr",
+                    "-enc_time_base", "1:1000", "-frame_pts", "1",
+                    "-q:v", "2", frameDirs.get(visemeId).resolve("%08d.jpg").toString()));
+        }
+        String label = String.format(Locale.ROOT, "ffmpeg frames %.1fs-%.1fs", slice.start, slice.end);
+        Path logFile = sliceDir.resolve("ffmpeg.log");
+        int exitCode = SubprocessRunner.run(label, new ProcessBuilder(command), logFile,
+                SubprocessRunner.FFMPEG_PROGRESS, heartbeat);
+        if (exitCode != 0) {
+            throw new IOException("ffmpeg frame extraction failed with exit code " + exitCode + ", see " + logFile);
+        }
+    }
+
+    /**
+     * {@code [0:v]split=N[in0]...;[in0]select='cue+cue+...',settb=1/1000,setpts=PTS+offset[out0];...} where a cue
+     * {@code [s, e)} at 10 fps reads
+     * {@code gte(t,s)*lt(t,e)*(isnan(prev_t)+lt(prev_t,s)+gt(floor((t-s)*10),floor((prev_t-s)*10)))}: inside the
+     * cue, and either its first frame or the first frame past another tick. After the seek {@code t} counts from the
+     * slice start, so cue times are shifted by it, and the timestamps are shifted back before the files are named.
+     */
+    private static String filterGraph(Slice slice) {
+        StringBuilder graph = new StringBuilder("[0:v]split=").append(slice.visemeCues.size());
+        for (int i = 0; i < slice.visemeCues.size(); i++) {
+            graph.append("[in").append(i).append(']');
+        }
+        long offsetMillis = Math.round(slice.start * 1000);
+        double offset = offsetMillis / 1000.0;
+        int branch = 0;
+        for (List<JsonNode> cues : slice.visemeCues.values()) {
+            graph.append(";\n[in").append(branch).append("]select='");
+            for (int i = 0; i < cues.size(); i++) {
+                if (i > 0) {
+                    graph.append('+');
+                }
+                graph.append(cueExpression(cues.get(i).get("start").doubleValue() - offset,
+                        cues.get(i).get("end").doubleValue() - offset));
+            }
+            graph.append("',settb=1/1000,setpts=PTS+").append(offsetMillis)
+                    .append("[out").append(branch++).append(']');
+        }
+        return graph.toString();
+    }
+
+    private static String cueExpression(double start, double end) {
+        return String.format(Locale.ROOT,
+                "gte(t,%1$.3f)*lt(t,%2$.3f)*(isnan(prev_t)+lt(prev_t,%1$.3f)"
+                        + "+gt(floor((t-%1$.3f)*%3$d),floor((prev_t-%1$.3f)*%3$d)))",
+                start, end, FRAMES_PER_SECOND);
+    }
+}
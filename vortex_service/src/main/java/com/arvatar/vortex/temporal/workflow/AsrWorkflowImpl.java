@@ -3,10 +3,21 @@ package com.arvatar.vortex.temporal.workflow;
 import com.arvatar.vortex.models.AsrPcdJob;
 import com.arvatar.vortex.temporal.activities.AsrActivities;
 import io.temporal.activity.ActivityOptions;
+import io.temporal.api.enums.v1.WorkflowIdReusePolicy;
+import io.temporal.common.RetryOptions;
+import io.temporal.failure.ActivityFailure;
+import io.temporal.workflow.Async;
+import io.temporal.workflow.ChildWorkflowOptions;
+import io.temporal.workflow.Promise;
 import io.temporal.workflow.Workflow;
 
 import java.time.Duration;
 
+/**
+ * Runs the ASR stage as separate steps: audio extraction, then rhubarb and Vosk (followed by embedding) as parallel
+ * branches, then persistence. Steps checkpoint their output to the object store and heartbeat, so a stuck step is
+ * failed within the heartbeat timeout and a retry only repeats that step.
+ */
 public class AsrWorkflowImpl implements AsrWorkflow {
 
     private final AsrActivities activities = Workflow.newActivityStub(
@@ -15,10 +26,48 @@ public class AsrWorkflowImpl implements AsrWorkflow {
                     .setStartToCloseTimeout(Duration.ofHours(1))
                     .build()
     );
+    private final AsrActivities stepActivities = Workflow.newActivityStub(
+            AsrActivities.class,
+            ActivityOptions.newBuilder()
+                    .setStartToCloseTimeout(Duration.ofHours(1))
+                    .setHeartbeatTimeout(Duration.ofSeconds(30))
+                    .setRetryOptions(RetryOptions.newBuilder()
+                            .setMaximumAttempts(5)
+                            .build())
+                    .build()
+    );
+    private final String pcdTaskQueue;
+
+    public AsrWorkflowImpl(String pcdTaskQueue) {
+        this.pcdTaskQueue = pcdTaskQueue;
+    }
 
     @Override
     public void run(AsrPcdJob job) {
-        activities.executeAsrJob(job);
+        AsrPcdJob transcribed;
+        int version = Workflow.getVersion("asr-steps", Workflow.DEFAULT_VERSION, 1);
+        if (version == Workflow.DEFAULT_VERSION) {
+            transcribed = activities.executeAsrJob(job);
+        } else {
+            try {
+                String audioKey = stepActivities.extractAudio(job);
+                Promise<String> lipSyncKey = Async.function(stepActivities::generateLipSync, job, audioKey);
+                Promise<String> embeddingsKey = Async.function(stepActivities::transcribe, job, audioKey)
+                        .thenCompose(transcriptKey -> Async.function(stepActivities::embedTranscript, job, transcriptKey));
+                transcribed = stepActivities.persistAsrResult(job, lipSyncKey.get(), embeddingsKey.get());
+            } catch (ActivityFailure failure) {
+                activities.markAsrJobFailed(job);
+                throw failure;
+            }
+        }
+        if (job.directDispatch) {
+            // Chain straight into PCD instead of round-tripping through the pcd_jobs stream.
+            PcdWorkflow pcd = Workflow.newChildWorkflowStub(PcdWorkflow.class, ChildWorkflowOptions.newBuilder()
+                    .setWorkflowId("pcd-" + job.jobId)
+                    .setTaskQueue(pcdTaskQueue)
+                    .setWorkflowIdReusePolicy(WorkflowIdReusePolicy.WORKFLOW_ID_REUSE_POLICY_REJECT_DUPLICATE)
+                    .build());
+            pcd.run(transcribed);
+        }
     }
 }
-
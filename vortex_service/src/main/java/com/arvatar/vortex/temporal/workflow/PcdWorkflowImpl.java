@@ -3,22 +3,127 @@ package com.arvatar.vortex.temporal.workflow;
 import com.arvatar.vortex.models.AsrPcdJob;
 import com.arvatar.vortex.temporal.activities.PcdActivities;
 import io.temporal.activity.ActivityOptions;
+import io.temporal.common.RetryOptions;
+import io.temporal.failure.ActivityFailure;
+import io.temporal.failure.ApplicationFailure;
+import io.temporal.workflow.Async;
+import io.temporal.workflow.Promise;
 import io.temporal.workflow.Workflow;
+import org.slf4j.Logger;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Fans the PCD stage out per viseme: frames are prepared once, every viseme is reconstructed by its own activity in
+ * parallel (so the visemes of one guru spread over all PCD workers and a failure only retries that viseme), and the
+ * published visemes are recorded once all reconstructions have finished. Each reconstruction first takes one of its
+ * guru's fair-share slots, so a guru with many uploads in flight cannot occupy every PCD worker. The camera poses of
+ * all visemes are solved once in a shared sparse model that every reconstruction starts from; if that model cannot be
+ * built, each viseme runs its own sparse reconstruction. The shared model takes a fair-share slot of its own, as it
+ * keeps a worker busy as long as a reconstruction does.
+ */
 public class PcdWorkflowImpl implements PcdWorkflow {
 
+    private static final Logger logger = Workflow.getLogger(PcdWorkflowImpl.class);
+
     private final PcdActivities activities = Workflow.newActivityStub(
             PcdActivities.class,
             ActivityOptions.newBuilder()
                     .setStartToCloseTimeout(Duration.ofHours(4))
+                    .setHeartbeatTimeout(Duration.ofMinutes(1))
+                    .build()
+    );
+    private final PcdActivities reconstructionActivities = Workflow.newActivityStub(
+            PcdActivities.class,
+            ActivityOptions.newBuilder()
+                    .setStartToCloseTimeout(Duration.ofHours(4))
+                    .setHeartbeatTimeout(Duration.ofMinutes(1))
+                    .setRetryOptions(RetryOptions.newBuilder()
+                            .setMaximumAttempts(PcdActivities.RECONSTRUCTION_ATTEMPTS)
+                            .build())
+                    .build()
+    );
+    // Waiting for a fair-share slot is a retry loop on the server; it holds no worker slot while it waits.
+    private final PcdActivities fairShareActivities = Workflow.newActivityStub(
+            PcdActivities.class,
+            ActivityOptions.newBuilder()
+                    .setStartToCloseTimeout(Duration.ofSeconds(30))
+                    .setRetryOptions(RetryOptions.newBuilder()
+                            .setInitialInterval(Duration.ofSeconds(15))
+                            .setBackoffCoefficient(1.5)
+                            .setMaximumInterval(Duration.ofMinutes(2))
+                            .build())
                     .build()
     );
 
     @Override
     public void run(AsrPcdJob job) {
-        activities.executePcdJob(job);
+        int version = Workflow.getVersion("viseme-fan-out", Workflow.DEFAULT_VERSION, 1);
+        if (version == Workflow.DEFAULT_VERSION) {
+            activities.executePcdJob(job);
+            return;
+        }
+        try {
+            List<String> visemeIds = activities.prepareVisemeFrames(job);
+            boolean sharedModel = buildSharedSparseModel(job, visemeIds);
+            List<Promise<Boolean>> reconstructions = new ArrayList<>();
+            for (String visemeId : visemeIds) {
+                reconstructions.add(Async.function(() -> reconstructWithinFairShare(job, visemeId, sharedModel)));
+            }
+            Promise.allOf(reconstructions).exceptionally(failure -> null).get();
+
+            List<String> published = new ArrayList<>();
+            for (int i = 0; i < visemeIds.size(); i++) {
+                try {
+                    if (reconstructions.get(i).get()) {
+                        published.add(visemeIds.get(i));
+                    }
+                } catch (ActivityFailure failure) {
+                    logger.error("Viseme {} of job {} failed after retries", visemeIds.get(i), job.jobId, failure);
+                }
+            }
+            if (published.isEmpty() && !visemeIds.isEmpty()) {
+                throw ApplicationFailure.newNonRetryableFailure(
+                        "No viseme point cloud could be reconstructed for job " + job.jobId, "PcdReconstructionFailed");
+            }
+            activities.finalizePcdJob(job, published);
+        } catch (ActivityFailure | ApplicationFailure failure) {
+            activities.markPcdJobFailed(job);
+            throw failure;
+        }
+    }
+
+    private boolean buildSharedSparseModel(AsrPcdJob job, List<String> visemeIds) {
+        fairShareActivities.acquireReconstructionSlot(job, PcdActivities.SHARED_SPARSE_MODEL_SLOT);
+        try {
+            return tryBuildSharedSparseModel(job, visemeIds);
+        } finally {
+            Workflow.newDetachedCancellationScope(() -> fairShareActivities.releaseReconstructionSlot(
+                    job, PcdActivities.SHARED_SPARSE_MODEL_SLOT)).run();
+        }
     }
-}
 
+    private boolean tryBuildSharedSparseModel(AsrPcdJob job, List<String> visemeIds) {
+        try {
+            return reconstructionActivities.buildSharedSparseModel(job, visemeIds);
+        } catch (ActivityFailure failure) {
+            logger.warn("Shared sparse model of job {} failed, reconstructing visemes separately", job.jobId, failure);
+            return false;
+        }
+    }
+
+    private boolean reconstructWithinFairShare(AsrPcdJob job, String visemeId, boolean sharedModel) {
+        fairShareActivities.acquireReconstructionSlot(job, visemeId);
+        try {
+            return sharedModel
+                    ? reconstructionActivities.reconstructVisemeInSharedModel(job, visemeId)
+                    : reconstructionActivities.reconstructViseme(job, visemeId);
+        } finally {
+            // Also when the workflow is cancelled or fails otherwise; the slot would stay taken until its lease lapses.
+            Workflow.newDetachedCancellationScope(
+                    () -> fairShareActivities.releaseReconstructionSlot(job, visemeId)).run();
+        }
+    }
+}